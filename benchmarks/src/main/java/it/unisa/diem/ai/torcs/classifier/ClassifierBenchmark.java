@@ -0,0 +1,83 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.jmh.BenchmarkData;
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.Label;
+import it.unisa.diem.ai.torcs.model.Sample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo delle query k-NN sul dataset distribuito con il progetto, al variare di k: ricerca dei
+ * vicini nel {@link KDTree} e classificazione con {@link NearestNeighbor}, sia con l'heap del
+ * chiamante (ciclo di controllo) sia con un {@link Sample}.
+ * <p>
+ * Sta nel pacchetto del classificatore perché {@link KDTree} non è pubblico.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Param({"1", "3", "5", "7"})
+    public int k;
+
+    @Param(BenchmarkData.DEFAULT_DATASET)
+    public String datasetPath;
+
+    private KDTree kdtree;
+    private NearestNeighbor classifier;
+    private NeighborHeap heap;
+    private double[][] queries;
+    private Sample[] samples;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Dataset dataset = BenchmarkData.dataset(datasetPath);
+        kdtree = new KDTree(dataset, new EuclideanMetric());
+        classifier = new NearestNeighbor(dataset);
+        heap = new NeighborHeap(k);
+        queries = BenchmarkData.queries(dataset);
+        samples = new Sample[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            samples[i] = new Sample(new FeatureVector(queries[i].clone()), Label.values()[0]);
+        }
+    }
+
+    @Benchmark
+    public NeighborHeap kdtreeQuery() {
+        kdtree.kNearestNeighbors(queries[nextIndex()], k, heap);
+        return heap;
+    }
+
+    @Benchmark
+    public int classify() {
+        return classifier.classify(queries[nextIndex()], k, heap);
+    }
+
+    @Benchmark
+    public int classifySample() {
+        return classifier.classify(samples[nextIndex()], k);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkData.COUNT - 1);
+        return next;
+    }
+}
@@ -0,0 +1,47 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.jmh.BenchmarkData;
+import it.unisa.diem.ai.torcs.model.Dataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo della costruzione del {@link KDTree} sul dataset distribuito con il progetto, come
+ * all'avvio di {@code AutonomousDriver}. Separato da {@link ClassifierBenchmark} per non
+ * ripeterlo per ogni valore di k.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KDTreeBuildBenchmark {
+
+    @Param(BenchmarkData.DEFAULT_DATASET)
+    public String datasetPath;
+
+    private Dataset dataset;
+
+    @Setup
+    public void setup() {
+        dataset = BenchmarkData.dataset(datasetPath);
+    }
+
+    /** Il tipo di ritorno è Object perché il codice generato da JMH sta in un altro pacchetto. */
+    @Benchmark
+    public Object build() {
+        return new KDTree(dataset, new EuclideanMetric());
+    }
+}
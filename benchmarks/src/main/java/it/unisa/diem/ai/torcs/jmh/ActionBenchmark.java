@@ -0,0 +1,62 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import it.unisa.diem.ai.torcs.model.Action;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo della serializzazione delle azioni inviate al server: {@link Action#toString()} e, per
+ * confronto, {@link Action#writeTo(byte[], int)} in un buffer riutilizzato.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionBenchmark {
+
+    private final Action[] actions = new Action[BenchmarkData.COUNT];
+    private final byte[] wire = new byte[Action.MAX_WIRE_LENGTH];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < actions.length; i++) {
+            Action action = new Action();
+            action.accelerate = random.nextDouble();
+            action.brake = random.nextInt(4) == 0 ? random.nextDouble() : 0;
+            action.clutch = random.nextInt(10) == 0 ? random.nextDouble() : 0;
+            action.gear = random.nextInt(7);
+            action.steering = random.nextDouble() * 2 - 1;
+            actions[i] = action;
+        }
+    }
+
+    @Benchmark
+    public String toStringAction() {
+        return actions[nextIndex()].toString();
+    }
+
+    @Benchmark
+    public int writeTo() {
+        return actions[nextIndex()].writeTo(wire, 0);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkData.COUNT - 1);
+        return next;
+    }
+}
@@ -0,0 +1,58 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.utils.benchmark.KnnBenchmark;
+import it.unisa.diem.ai.torcs.utils.benchmark.ParserBenchmark;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dati di ingresso condivisi dai benchmark: messaggi dei sensori sintetici, con lo stesso
+ * formato numerico del server TORCS, e il dataset distribuito con il progetto.
+ * Tutti i dati sono generati con un seme fisso, quindi identici tra un'esecuzione e l'altra.
+ */
+public final class BenchmarkData {
+
+    /** Dataset usato di default (i benchmark vengono lanciati dalla cartella benchmarks) */
+    public static final String DEFAULT_DATASET = "../data/recovery_dataset.csv";
+
+    /** Numero di messaggi e di query generati (potenza di 2, per scorrerli con una maschera) */
+    public static final int COUNT = 1024;
+
+    /** Seme dei generatori pseudo-casuali */
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return {@link #COUNT} messaggi dei sensori sintetici
+     */
+    public static String[] messages() {
+        List<String> messages = ParserBenchmark.generateMessages(COUNT, new Random(SEED));
+        return messages.toArray(new String[0]);
+    }
+
+    /**
+     * Carica un dataset, interrompendo il benchmark con un messaggio chiaro se il file manca.
+     *
+     * @param path percorso del file CSV
+     * @return dataset caricato
+     */
+    public static Dataset dataset(String path) {
+        Dataset dataset = Dataset.loadFromCSV(path);
+        if (dataset.size() == 0) {
+            throw new IllegalStateException("Dataset vuoto o non trovato: " + path + " (usare -p datasetPath=...)");
+        }
+        return dataset;
+    }
+
+    /**
+     * @param dataset dataset di riferimento
+     * @return {@link #COUNT} query, metà vicine ai campioni del dataset e metà uniformi
+     */
+    public static double[][] queries(Dataset dataset) {
+        return KnnBenchmark.generateQueries(dataset, COUNT, new Random(SEED));
+    }
+}
@@ -0,0 +1,34 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto di ingresso di {@code benchmarks.jar}: accetta le stesse opzioni di JMH
+ * ({@code -h} per l'elenco) e aggiunge sempre il profiler delle allocazioni ({@link GCProfiler}),
+ * così che ogni risultato riporti anche i byte allocati per operazione
+ * ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Esempio: {@code java -jar target/benchmarks.jar Classifier -p k=1,5}
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Esegue i benchmark selezionati.
+     *
+     * @param args opzioni di JMH (espressione regolare dei benchmark, {@code -p}, {@code -f}, ...)
+     * @throws CommandLineOptionException se le opzioni non sono valide
+     * @throws RunnerException se l'esecuzione dei benchmark fallisce
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,78 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo del caricamento del dataset all'avvio del controller autonomo
+ * ({@link Dataset#loadFromCSV(String)}), confrontato con il caricamento parallelo dello stesso
+ * CSV ({@link Dataset#loadFromCSVParallel(String)}) e con l'apertura dello stesso dataset
+ * convertito nel formato binario ({@link Dataset#loadFromBinary(String)}); la costruzione
+ * del KD-Tree è misurata da {@code KDTreeBuildBenchmark}. Misura anche l'esportazione del
+ * dataset normalizzato in CSV ({@link Dataset#datasetNormalizer(String)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatasetBenchmark {
+
+    @Param(BenchmarkData.DEFAULT_DATASET)
+    public String datasetPath;
+
+    private Path binaryPath;
+    private Path normalizedPath;
+    private Dataset dataset;
+
+    @Setup
+    public void setup() throws IOException {
+        binaryPath = Files.createTempFile("dataset", ".dsb");
+        normalizedPath = Files.createTempFile("dataset", ".csv");
+        dataset = Dataset.loadFromCSV(datasetPath);
+        dataset.saveToBinary(binaryPath.toString(), false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binaryPath);
+        Files.deleteIfExists(normalizedPath);
+    }
+
+    @Benchmark
+    public Dataset loadFromCSV() {
+        return Dataset.loadFromCSV(datasetPath);
+    }
+
+    @Benchmark
+    public Dataset loadFromCSVParallel() {
+        return Dataset.loadFromCSVParallel(datasetPath);
+    }
+
+    @Benchmark
+    public Dataset loadFromBinary() throws IOException {
+        return Dataset.loadFromBinary(binaryPath.toString());
+    }
+
+    @Benchmark
+    public void datasetNormalizer() {
+        dataset.datasetNormalizer(normalizedPath.toString());
+    }
+}
@@ -0,0 +1,81 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.MessageBasedSensorModel;
+import it.unisa.diem.ai.torcs.model.SensorFeature;
+import it.unisa.diem.ai.torcs.utils.FeatureExtractor;
+import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo della pipeline delle feature: {@link FeatureExtractor#extractFeatures} e
+ * {@link FeatureNormalizer#normalize}, sia nella forma che crea un {@link FeatureVector} sia in
+ * quella senza allocazioni usata dal ciclo di controllo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeaturePipelineBenchmark {
+
+    private final FeatureExtractor extractor = new FeatureExtractor();
+    private final FeatureNormalizer normalizer = new FeatureNormalizer();
+    private final double[] buffer = new double[SensorFeature.values().length];
+
+    private MessageBasedSensorModel[] sensors;
+    private FeatureVector[] features;
+    private int next;
+
+    @Setup
+    public void setup() {
+        String[] messages = BenchmarkData.messages();
+        sensors = new MessageBasedSensorModel[messages.length];
+        features = new FeatureVector[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            sensors[i] = new MessageBasedSensorModel(messages[i]);
+            features[i] = extractor.extractFeatures(sensors[i]);
+        }
+    }
+
+    @Benchmark
+    public FeatureVector extractFeatures() {
+        return extractor.extractFeatures(sensors[nextIndex()]);
+    }
+
+    @Benchmark
+    public double[] extractFeaturesInto() {
+        extractor.extractFeatures(sensors[nextIndex()], buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public FeatureVector normalize() {
+        return normalizer.normalize(features[nextIndex()]);
+    }
+
+    /** Estrazione e normalizzazione sul posto, come in {@code AutonomousDriver}. */
+    @Benchmark
+    public double[] extractAndNormalizeInto() {
+        extractor.extractFeatures(sensors[nextIndex()], buffer);
+        normalizer.normalize(buffer, buffer);
+        return buffer;
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkData.COUNT - 1);
+        return next;
+    }
+}
@@ -0,0 +1,69 @@
+package it.unisa.diem.ai.torcs.jmh;
+
+import it.unisa.diem.ai.torcs.io.MessageParser;
+import it.unisa.diem.ai.torcs.model.MessageBasedSensorModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo della decodifica dei messaggi del server: costruzione di {@link MessageParser} e
+ * lettura tramite i getter di {@link MessageBasedSensorModel}, su messaggi sintetici con tutte
+ * le letture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParserBenchmark {
+
+    private String[] messages;
+    private MessageBasedSensorModel[] models;
+    private int next;
+
+    @Setup
+    public void setup() {
+        messages = BenchmarkData.messages();
+        models = new MessageBasedSensorModel[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            models[i] = new MessageBasedSensorModel(messages[i]);
+        }
+    }
+
+    /** Decodifica completa di un messaggio (una mappa di letture per messaggio). */
+    @Benchmark
+    public MessageParser parse() {
+        return new MessageParser(messages[nextIndex()]);
+    }
+
+    /** Letture usate a ogni passo dal controller su un messaggio già decodificato. */
+    @Benchmark
+    public void getters(Blackhole blackhole) {
+        MessageBasedSensorModel sensors = models[nextIndex()];
+        blackhole.consume(sensors.getSpeed());
+        blackhole.consume(sensors.getLateralSpeed());
+        blackhole.consume(sensors.getAngleToTrackAxis());
+        blackhole.consume(sensors.getTrackPosition());
+        blackhole.consume(sensors.getTrackEdgeSensors());
+        blackhole.consume(sensors.getGear());
+        blackhole.consume(sensors.getRPM());
+        blackhole.consume(sensors.getWheelSpinVelocity());
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkData.COUNT - 1);
+        return next;
+    }
+}
@@ -8,5 +8,5 @@ cd "$(dirname "$0")/.."
 echo "Eseguo il client di guida autonoma per TORCS..."
 
 # Esegui il programma Java
-java -cp src/classes it.unisa.diem.ai.torcs.io.Client it.unisa.diem.ai.torcs.agent.AutonomousDriver host:localhost port:3001
+java -cp src/classes it.unisa.diem.ai.torcs.io.Client it.unisa.diem.ai.torcs.agent.AutonomousDriver host:localhost port:3001 "$@"
 
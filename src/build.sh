@@ -10,6 +10,6 @@ mkdir -p classes
 rm -rf classes/*
 
 # Compila tutti i file .java ricorsivamente da main/java
-javac -d classes $(find main/java -name "*.java")
+javac --add-modules jdk.incubator.vector -d classes $(find main/java -name "*.java")
 
 echo "Compilazione completata. I file .class sono stati salvati nella cartella 'classes'."
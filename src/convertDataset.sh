@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script converte un dataset CSV nel formato binario a colonne, che il client carica mappandolo in memoria.
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Converto il dataset in formato binario..."
+
+# Esegui il programma Java (es. data/driver_dataset.csv data/driver_dataset.dsb)
+java -cp src/classes it.unisa.diem.ai.torcs.utils.DatasetConverter "$@"
@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script confronta le prestazioni del classificatore KD-Tree con quelle della scansione vettorizzata (Vector API).
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Eseguo il benchmark dei classificatori KNN..."
+
+# Esegui il programma Java (dataset e numero di query sono opzionali)
+java --add-modules jdk.incubator.vector -cp src/classes it.unisa.diem.ai.torcs.utils.benchmark.KnnBenchmark "$@"
@@ -3,38 +3,67 @@ package it.unisa.diem.ai.torcs.agent;
 import it.unisa.diem.ai.torcs.model.*;
 import it.unisa.diem.ai.torcs.utils.*;
 import it.unisa.diem.ai.torcs.classifier.NearestNeighbor;
+import it.unisa.diem.ai.torcs.classifier.NeighborHeap;
+import it.unisa.diem.ai.torcs.utils.logging.AsyncLogger;
+import it.unisa.diem.ai.torcs.utils.metrics.PipelineStage;
+import it.unisa.diem.ai.torcs.utils.metrics.TickProfiler;
 
 /**
  * AutonomousDriver è un agente di guida autonoma per TORCS.
  * Utilizza due classificatori KNN distinti: uno per la guida normale,
  * e uno per la modalità di recupero da situazioni critiche (fuori pista o stallo).
+ * <p>
+ * I classificatori sono in sola lettura e vengono caricati una sola volta per JVM, condivisi
+ * da tutte le istanze: più auto guidate dallo stesso processo (vedi
+ * {@link it.unisa.diem.ai.torcs.io.MultiClient}) non duplicano dataset e indici. Lo stato di
+ * guida (buffer delle feature, stuck, frizione, azione) resta invece per istanza.
  */
 public class AutonomousDriver extends BaseDriver {
 
+    /**
+     * Log delle predizioni, asincrono per non bloccare il tick: la recovery è rara e interessante
+     * (al più 20 righe al secondo), la guida normale viene campionata (una riga ogni 50 tick,
+     * circa una al secondo a 50 Hz).
+     */
+    private static final AsyncLogger RECOVERY_LOG = AsyncLogger.get("agent.recovery").rateLimit(20);
+    private static final AsyncLogger NORMAL_LOG = AsyncLogger.get("agent.normal").sample(50);
+
     private final FeatureExtractor extractor;
     private final FeatureNormalizer normalizer;
     private final NearestNeighbor driverKNN;
     private final NearestNeighbor recoveryKNN;
-    private final Dataset recoveryDataset;
-    private final Dataset driverDataset;
 
+    /** Buffer delle feature del tick corrente (grezze, poi normalizzate sul posto) */
+    private final double[] features = new double[SensorFeature.values().length];
+
+    /** Heap dei vicini riutilizzato a ogni classificazione */
+    private final NeighborHeap neighbors = new NeighborHeap(1);
 
     Action action = new Action();
 
     /**
-     * Costruttore: carica i dataset, li normalizza e inizializza i classificatori.
+     * Classificatori condivisi, caricati alla prima istanza (idioma "holder": l'inizializzazione
+     * della classe è eseguita una sola volta dalla JVM, anche con più thread concorrenti).
+     */
+    private static final class Models {
+
+        /**
+         * Se disponibili e aggiornati, gli indici KNN vengono riaperti dagli snapshot binari
+         * ({@code .knn}); altrimenti vengono costruiti dai dataset CSV e salvati.
+         */
+        static final NearestNeighbor DRIVER = NearestNeighbor.openOrBuild("data/driver_dataset.csv", "data/driver_dataset.knn");
+        static final NearestNeighbor RECOVERY = NearestNeighbor.openOrBuild("data/recovery_dataset.csv", "data/recovery_dataset.knn");
+    }
+
+    /**
+     * Costruttore: inizializza i classificatori (condivisi fra tutte le istanze).
      */
     public AutonomousDriver() {
         normalizer = new FeatureNormalizer();
         extractor = new FeatureExtractor();
 
-        driverDataset = Dataset.loadFromCSV("data/driver_dataset.csv");
-        recoveryDataset = Dataset.loadFromCSV("data/recovery_dataset.csv");
-        driverDataset.shuffle();
-        recoveryDataset.shuffle();
-
-        driverKNN = new NearestNeighbor(driverDataset);
-        recoveryKNN = new NearestNeighbor(recoveryDataset);
+        driverKNN = Models.DRIVER;
+        recoveryKNN = Models.RECOVERY;
     }
 
     /**
@@ -47,23 +76,29 @@ public class AutonomousDriver extends BaseDriver {
      */
     @Override
     public Action control(SensorModel sensors) {
+        // Tempi delle fasi, se il client li misura (vedi TickProfiler)
+        TickProfiler profiler = getProfiler();
+        long mark = profiler != null ? System.nanoTime() : 0;
+
         boolean isRecovery = stuck > stuckAngle
                 || Math.abs(sensors.getAngleToTrackAxis()) > 0.5
                 || Math.abs(sensors.getTrackPosition()) > 0.9
                 || Math.abs(sensors.getLateralSpeed()) > 15;
 
-        // Estrai feature e normalizzale
-        FeatureVector rawFeatures = extractor.extractFeatures(sensors);
-        FeatureVector normalizedFeatures = normalizer.normalize(rawFeatures);
-        Sample testSample = new Sample(normalizedFeatures, null);
+        // Estrai feature e normalizzale (sul posto, senza allocazioni)
+        extractor.extractFeatures(sensors, features);
+        if (profiler != null) mark = profiler.record(PipelineStage.FEATURES, mark);
+        normalizer.normalize(features, features);
+        if (profiler != null) mark = profiler.record(PipelineStage.NORMALIZE, mark);
 
         // Modalità recovery: auto considerata bloccata
         if (isRecovery) {
             int k = 1;
-            int predictedClass = recoveryKNN.classify(testSample, k);
+            int predictedClass = recoveryKNN.classify(features, k, neighbors);
+            if (profiler != null) mark = profiler.record(PipelineStage.KNN, mark);
             Label predictedLabel = Label.fromCode(predictedClass);
 
-            System.out.println("🛟 [RECOVERY] Predicted: " + predictedLabel);
+            RECOVERY_LOG.info("🛟 [RECOVERY] Predicted: ", predictedLabel);
 
             // Applica l’azione in base alla label
             action.reset();
@@ -79,9 +114,10 @@ public class AutonomousDriver extends BaseDriver {
         } else {
             // Guida normale: predizione tramite KNN
             int k = 1;
-            int predictedClass = driverKNN.classify(testSample, k);
+            int predictedClass = driverKNN.classify(features, k, neighbors);
+            if (profiler != null) mark = profiler.record(PipelineStage.KNN, mark);
             Label predictedLabel = Label.fromCode(predictedClass);
-            System.out.println("\uD83D\uDFE2 [NORMAL] Predicted: " + predictedLabel);
+            NORMAL_LOG.info("\uD83D\uDFE2 [NORMAL] Predicted: ", predictedLabel);
 
             // Conversione da label ad azione
             action.reset();
@@ -106,6 +142,7 @@ public class AutonomousDriver extends BaseDriver {
                     break;
             }
         }
+        if (profiler != null) profiler.record(PipelineStage.ACTION, mark);
 
         return action;
     }
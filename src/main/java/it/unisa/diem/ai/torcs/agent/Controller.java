@@ -2,6 +2,7 @@ package it.unisa.diem.ai.torcs.agent;
 
 import it.unisa.diem.ai.torcs.model.Action;
 import it.unisa.diem.ai.torcs.model.SensorModel;
+import it.unisa.diem.ai.torcs.utils.metrics.TickProfiler;
 
 /**
  * Classe astratta base per l'implementazione di un controller per TORCS.
@@ -44,6 +45,7 @@ public abstract class Controller {
 
     private Stage stage;
 	private String trackName;
+	private TickProfiler profiler;
 
 	/**
 	 * Inizializza gli angoli dei sensori di distanza (range finder) utilizzati per percepire la pista.
@@ -93,6 +95,25 @@ public abstract class Controller {
 		this.trackName = trackName;
 	}
 
+	/**
+	 * Restituisce il profiler delle fasi del tick, in cui le sottoclassi possono registrare
+	 * i tempi delle proprie fasi (feature, KNN, ...).
+	 *
+	 * @return il profiler, oppure null se la misura dei tempi è disattivata
+	 */
+	public TickProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Imposta il profiler delle fasi del tick.
+	 *
+	 * @param profiler il profiler, oppure null per disattivare la misura dei tempi
+	 */
+	public void setProfiler(TickProfiler profiler) {
+		this.profiler = profiler;
+	}
+
 	/**
 	 * Metodo principale di controllo da implementare nelle sottoclassi.
 	 * Definisce il comportamento del veicolo dato l'input dei sensori.
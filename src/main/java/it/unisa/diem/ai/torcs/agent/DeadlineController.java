@@ -0,0 +1,292 @@
+package it.unisa.diem.ai.torcs.agent;
+
+import it.unisa.diem.ai.torcs.model.Action;
+import it.unisa.diem.ai.torcs.model.LazySensorModel;
+import it.unisa.diem.ai.torcs.model.SensorModel;
+import it.unisa.diem.ai.torcs.utils.metrics.TickProfiler;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Controller che esegue un altro controller entro una scadenza per ogni tick.
+ * <p>
+ * Il server TORCS attende la risposta solo per la durata del passo di simulazione: se il
+ * controller si blocca (garbage collection, query KNN lenta, output su console) l'auto mantiene
+ * il comando precedente o il server va in timeout. Qui il controller delegato viene eseguito su
+ * un thread dedicato; se non risponde entro la scadenza viene restituita un'azione di riserva
+ * economica, calcolata sul thread del client:
+ * <ul>
+ *     <li>{@link Fallback#HEURISTIC}: sterzo, acceleratore/freno, marcia e frizione dalle
+ *     euristiche di {@link BaseDriver} (come {@link SimpleDriver} senza recovery);</li>
+ *     <li>{@link Fallback#LAST_ACTION}: l'ultima azione completata dal delegato.</li>
+ * </ul>
+ * Un'inferenza in ritardo non viene interrotta: il suo risultato diventa l'ultima azione nota e
+ * finché non termina i tick successivi usano direttamente la riserva, così il delegato non viene
+ * mai eseguito in parallelo con sé stesso. Ogni tick servito dalla riserva è contato come
+ * sforamento; alla chiusura vengono stampati sforamenti e latenza peggiore del delegato.
+ */
+public class DeadlineController extends BaseDriver {
+
+    /** Azione restituita quando il delegato sfora la scadenza. */
+    public enum Fallback {
+
+        /** Euristiche di {@link BaseDriver} sui sensori correnti */
+        HEURISTIC,
+
+        /** Ultima azione calcolata dal delegato */
+        LAST_ACTION
+    }
+
+    /** Scadenza predefinita (ms): sotto i 10 ms che il server SCR attende per ogni passo. */
+    public static final int DEFAULT_DEADLINE_MS = 8;
+
+    private final Controller delegate;
+    private final long deadlineNanos;
+    private final Fallback fallback;
+
+    /** Thread che esegue il delegato (demone: non impedisce la chiusura della JVM) */
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "deadline-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Inferenza riutilizzata a ogni tick: c'è al più un'inferenza in corso */
+    private final Inference inference = new Inference();
+
+    /** Risultato dell'inferenza in corso, {@code null} se il thread è libero */
+    private Future<Action> inFlight;
+
+    /** Copia dell'ultima azione completata dal delegato, {@code null} prima della prima */
+    private Action lastAction;
+
+    /** Azione restituita a ogni tick (del delegato o di riserva), riutilizzata come in {@link AutonomousDriver} */
+    private final Action output = new Action();
+
+    private long ticks;
+    private long overruns;
+    private long worstLatencyNanos;
+
+    /**
+     * Costruttore con scadenza e riserva predefinite ({@link #DEFAULT_DEADLINE_MS}, euristiche).
+     *
+     * @param delegate controller da eseguire entro la scadenza
+     */
+    public DeadlineController(Controller delegate) {
+        this(delegate, DEFAULT_DEADLINE_MS, Fallback.HEURISTIC);
+    }
+
+    /**
+     * Costruttore.
+     *
+     * @param delegate controller da eseguire entro la scadenza
+     * @param deadlineMillis scadenza per tick (ms)
+     * @param fallback azione di riserva in caso di sforamento
+     */
+    public DeadlineController(Controller delegate, int deadlineMillis, Fallback fallback) {
+        if (deadlineMillis <= 0) {
+            throw new IllegalArgumentException("La scadenza deve essere positiva: " + deadlineMillis);
+        }
+        this.delegate = delegate;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Esecuzione del delegato su una copia dei sensori, che resta valida anche quando il client
+     * riutilizza il proprio modello per il messaggio successivo.
+     */
+    private final class Inference implements Callable<Action> {
+        private final LazySensorModel copy = new LazySensorModel();
+        private SensorModel sensors;
+        private long latencyNanos;
+
+        void prepare(SensorModel current) {
+            // Un LazySensorModel viene riutilizzato (e decodificato su richiesta) dal client:
+            // il delegato lavora su una copia. Gli altri modelli sono immutabili dopo la creazione.
+            sensors = current instanceof LazySensorModel lazy ? copy.copyFrom(lazy) : current;
+        }
+
+        @Override
+        public Action call() {
+            long start = System.nanoTime();
+            Action action = delegate.control(sensors);
+            latencyNanos = System.nanoTime() - start;
+            return action;
+        }
+    }
+
+    /**
+     * Esegue il delegato e ne attende il risultato fino alla scadenza; in caso di sforamento
+     * restituisce l'azione di riserva.
+     *
+     * @param sensors letture correnti dei sensori
+     * @return azione del delegato, oppure di riserva; l'oggetto viene riutilizzato al tick successivo
+     */
+    @Override
+    public Action control(SensorModel sensors) {
+        long deadline = System.nanoTime() + deadlineNanos;
+        ticks++;
+
+        // Un'inferenza precedente ancora in corso occupa il thread: si usa subito la riserva
+        if (inFlight != null && !harvest()) {
+            overruns++;
+            return fallback(sensors);
+        }
+
+        inference.prepare(sensors);
+        inFlight = worker.submit(inference);
+        try {
+            inFlight.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            overruns++;
+            return fallback(sensors);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback(sensors);
+        } catch (ExecutionException e) {
+            harvest(); // segnala l'errore del delegato e libera il thread
+            return fallback(sensors);
+        }
+        harvest();
+        return lastAction != null ? output.copyFrom(lastAction) : fallback(sensors);
+    }
+
+    /**
+     * Raccoglie il risultato dell'inferenza in corso se è terminata.
+     *
+     * @return true se il thread è libero
+     */
+    private boolean harvest() {
+        if (!inFlight.isDone()) {
+            return false;
+        }
+        try {
+            Action action = inFlight.get();
+            worstLatencyNanos = Math.max(worstLatencyNanos, inference.latencyNanos);
+            if (action != null) {
+                // copia: il delegato può riutilizzare l'oggetto restituito (come AutonomousDriver)
+                lastAction = (lastAction == null ? new Action() : lastAction).copyFrom(action);
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight = null;
+        return true;
+    }
+
+    /**
+     * Calcola l'azione di riserva sul thread chiamante, in {@link #output}.
+     *
+     * @param sensors letture correnti dei sensori
+     * @return azione di riserva
+     */
+    private Action fallback(SensorModel sensors) {
+        Action action = output;
+        action.reset();
+        if (fallback == Fallback.LAST_ACTION && lastAction != null) {
+            return action.copyFrom(lastAction);
+        }
+        float accelAndBrake = getAccel(sensors);
+        action.steering = Math.max(-1, Math.min(1, getSteer(sensors)));
+        action.gear = getGear(sensors);
+        if (accelAndBrake > 0) {
+            action.accelerate = accelAndBrake;
+        } else {
+            action.brake = filterABS(sensors, -accelAndBrake);
+        }
+        clutch = clutching(sensors, clutch);
+        action.clutch = clutch;
+        return action;
+    }
+
+    /** @return numero di tick serviti */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** @return numero di tick serviti dall'azione di riserva */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /** @return latenza peggiore (ns) di un'inferenza completata del delegato */
+    public long getWorstLatencyNanos() {
+        return worstLatencyNanos;
+    }
+
+    /**
+     * Attende l'eventuale inferenza in corso e reimposta il delegato.
+     */
+    @Override
+    public void reset() {
+        awaitInFlight();
+        lastAction = null;
+        stuck = 0;
+        clutch = 0;
+        delegate.reset();
+    }
+
+    /**
+     * Attende l'eventuale inferenza in corso, chiude il delegato e stampa le statistiche.
+     */
+    @Override
+    public void shutdown() {
+        awaitInFlight();
+        worker.shutdown();
+        System.out.printf(Locale.US, "Deadline %.1f ms: %d overruns out of %d ticks, worst latency %.3f ms%n",
+                deadlineNanos / 1e6, overruns, ticks, worstLatencyNanos / 1e6);
+        delegate.shutdown();
+    }
+
+    /**
+     * Attende la fine dell'inferenza in corso, per non eseguire il delegato in parallelo
+     * con {@code reset} o {@code shutdown}.
+     */
+    private void awaitInFlight() {
+        if (inFlight == null) {
+            return;
+        }
+        try {
+            inFlight.get();
+        } catch (ExecutionException e) {
+            // già segnalato da harvest() oppure irrilevante alla chiusura
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        harvest();
+    }
+
+    @Override
+    public float[] initAngles() {
+        return delegate.initAngles();
+    }
+
+    @Override
+    public void setStage(Stage stage) {
+        super.setStage(stage);
+        delegate.setStage(stage);
+    }
+
+    @Override
+    public void setTrackName(String trackName) {
+        super.setTrackName(trackName);
+        delegate.setTrackName(trackName);
+    }
+
+    @Override
+    public void setProfiler(TickProfiler profiler) {
+        super.setProfiler(profiler);
+        delegate.setProfiler(profiler);
+    }
+}
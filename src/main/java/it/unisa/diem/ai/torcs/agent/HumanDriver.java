@@ -8,12 +8,21 @@ import it.unisa.diem.ai.torcs.model.KeyInput;
 import it.unisa.diem.ai.torcs.io.ContinuousCharReaderUI;
 import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
 import it.unisa.diem.ai.torcs.utils.debugging.RadarVisualizer;
+import it.unisa.diem.ai.torcs.utils.recording.DatasetRecorder;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * Controller che consente di guidare l'auto in TORCS tramite input da tastiera.
  * Registra anche i dati di guida in tempo reale per la generazione di dataset supervisionati.
+ * <p>
+ * I campioni vengono consegnati a un {@link DatasetRecorder}, che li scrive in background in
+ * segmenti CSV sotto {@code data/recordings}: la memoria resta costante per tutta la sessione e
+ * un'interruzione improvvisa non perde quanto già registrato. Alla chiusura i segmenti dei
+ * dataset grezzo, normalizzato e di guida vengono accodati ai rispettivi CSV in {@code data};
+ * quelli di recovery restano nella cartella delle registrazioni.
  */
 public class HumanDriver extends BaseDriver {
 
@@ -29,17 +38,23 @@ public class HumanDriver extends BaseDriver {
         SwingUtilities.invokeLater(() -> RadarVisualizer.showRadar(radar));
     }
 
-    /** Dataset grezzo con feature non normalizzate. */
-    private final Dataset rawDataset;
+    /** Cartella dei segmenti registrati durante la sessione. */
+    private static final Path RECORDINGS = Path.of("data", "recordings");
 
-    /** Dataset normalizzato. */
-    private final Dataset datasetNormalizzato;
+    /** Flusso del dataset grezzo con feature non normalizzate. */
+    private static final int RAW = 0;
 
-    /** Dataset contenente esempi di recovery (fuori traiettoria). */
-    private final Dataset recoveryDataset;
+    /** Flusso del dataset normalizzato. */
+    private static final int NORMALIZZATO = 1;
 
-    /** Dataset contenente esempi di guida corretta. */
-    private final Dataset driverDataset;
+    /** Flusso degli esempi di guida corretta. */
+    private static final int DRIVER = 2;
+
+    /** Flusso degli esempi di recovery (fuori traiettoria). */
+    private static final int RECOVERY = 3;
+
+    /** Registratore dei campioni, null se la cartella delle registrazioni non è disponibile. */
+    private final DatasetRecorder recorder;
 
     /** Estrattore di feature dai sensori. */
     private final FeatureExtractor extractor;
@@ -48,13 +63,10 @@ public class HumanDriver extends BaseDriver {
     private final FeatureNormalizer normalizer;
 
     /**
-     * Costruttore che inizializza i dataset e i moduli di estrazione/normalizzazione.
+     * Costruttore che avvia la registrazione e inizializza i moduli di estrazione/normalizzazione.
      */
     public HumanDriver() {
-        rawDataset = new Dataset();
-        datasetNormalizzato = new Dataset();
-        recoveryDataset = new Dataset();
-        driverDataset = new Dataset();
+        recorder = openRecorder();
         extractor = new FeatureExtractor();
         normalizer = new FeatureNormalizer();
     }
@@ -127,20 +139,12 @@ public class HumanDriver extends BaseDriver {
 
         boolean isDriving = Math.abs(trackPos) <= 0.9 && Math.abs(angle) <= 0.5 && Math.abs(speedY) <= 15;
 
-        Sample rawSample = new Sample(rawFeatures, label);
-        Sample sampleNormalizzato = new Sample(featuresNormalizzate, label);
-
         // Registra solo se la UI lo consente (checkbox attiva)
         ContinuousCharReaderUI ui = ContinuousCharReaderUI.getInstance();
-        if (ui != null && ui.isDatasetRecordingEnabled()) {
-            rawDataset.addSample(rawSample);
-            datasetNormalizzato.addSample(sampleNormalizzato);
-
-            if (isDriving) {
-                driverDataset.addSample(sampleNormalizzato);
-            } else {
-                recoveryDataset.addSample(sampleNormalizzato);
-            }
+        if (recorder != null && ui != null && ui.isDatasetRecordingEnabled()) {
+            recorder.record(RAW, rawFeatures, label);
+            recorder.record(NORMALIZZATO, featuresNormalizzate, label);
+            recorder.record(isDriving ? DRIVER : RECOVERY, featuresNormalizzate, label);
         }
 
         return action;
@@ -148,14 +152,46 @@ public class HumanDriver extends BaseDriver {
 
     /**
      * Metodo chiamato alla chiusura della simulazione.
-     * Salva i dataset raccolti su file CSV.
+     * Completa la registrazione e accoda i segmenti ai dataset CSV.
      */
     @Override
     public void shutdown() {
-        rawDataset.saveToCSV("data/raw_dataset.csv");
-        datasetNormalizzato.saveToCSV("data/dataset_normalizzato.csv");
-        driverDataset.saveToCSV("data/driver_dataset.csv");
-        // recoveryDataset.saveToCSV("data/recovery_dataset.csv");
+        if (recorder == null) {
+            return;
+        }
+        recorder.close();
+        save(RAW, "data/raw_dataset.csv");
+        save(NORMALIZZATO, "data/dataset_normalizzato.csv");
+        save(DRIVER, "data/driver_dataset.csv");
+        // I segmenti di recovery restano in data/recordings
+    }
+
+    /**
+     * Crea il registratore dei flussi, nell'ordine delle costanti {@link #RAW}, {@link #NORMALIZZATO},
+     * {@link #DRIVER} e {@link #RECOVERY}.
+     *
+     * @return registratore, oppure null se la cartella delle registrazioni non può essere creata
+     */
+    private static DatasetRecorder openRecorder() {
+        try {
+            return new DatasetRecorder(RECORDINGS, "raw_dataset", "dataset_normalizzato", "driver_dataset", "recovery_dataset");
+        } catch (IOException e) {
+            System.out.println("Cannot create recording directory " + RECORDINGS + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Accoda i segmenti di un flusso a un dataset CSV; in caso di errore i segmenti restano
+     * nella cartella delle registrazioni.
+     */
+    private void save(int stream, String csvPath) {
+        try {
+            recorder.appendTo(stream, Path.of(csvPath));
+        } catch (IOException e) {
+            System.out.println("Cannot append recording to " + csvPath + ": " + e.getMessage()
+                    + " (segments kept in " + RECORDINGS + ")");
+        }
     }
 
     /**
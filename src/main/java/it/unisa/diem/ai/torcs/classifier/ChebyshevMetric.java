@@ -0,0 +1,17 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+/**
+ * Distanza di Chebyshev (norma L∞): massimo dei valori assoluti delle differenze.
+ */
+public class ChebyshevMetric implements DistanceMetric {
+
+    @Override
+    public double accumulate(double partial, double diff, int axis) {
+        return Math.max(partial, Math.abs(diff));
+    }
+
+    @Override
+    public double toDistance(double reduced) {
+        return reduced;
+    }
+}
@@ -0,0 +1,58 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.model.Label;
+import it.unisa.diem.ai.torcs.model.Sample;
+
+/**
+ * Contratto comune ai classificatori k-NN del progetto.
+ * Le implementazioni differiscono solo per la struttura usata nella ricerca dei vicini
+ * (KD-Tree, scansione lineare vettorizzata, ...), ma restituiscono le stesse classi.
+ */
+public interface Classifier {
+
+    /**
+     * Classifica un punto di test usando la maggioranza tra i k vicini più prossimi.
+     * Usa buffer interni al classificatore, quindi non è thread-safe.
+     *
+     * @param testPoint il punto da classificare
+     * @param k numero di vicini da considerare
+     * @return codice numerico della classe predetta (int corrispondente a {@link Label#getCode()})
+     */
+    int classify(Sample testPoint, int k);
+
+    /**
+     * Classifica un punto di test appoggiandosi all'heap fornito dal chiamante.
+     * Non alloca memoria e può essere invocato da più thread, ciascuno con il proprio heap.
+     *
+     * @param query coordinate (normalizzate) del punto di test
+     * @param k numero di vicini da considerare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     * @return codice numerico della classe predetta (int corrispondente a {@link Label#getCode()})
+     */
+    int classify(double[] query, int k, NeighborHeap heap);
+
+    /**
+     * Trova i k vicini più prossimi scrivendoli nell'heap del chiamante.
+     *
+     * @param query coordinate (normalizzate) del punto di test
+     * @param k numero di vicini da considerare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     */
+    void findKNearestNeighbors(double[] query, int k, NeighborHeap heap);
+
+    /**
+     * Restituisce la label del vicino con l'indice indicato (come riportato in un {@link NeighborHeap}).
+     *
+     * @param index indice del vicino
+     * @return codice della label del vicino
+     */
+    int labelOf(int index);
+
+    /**
+     * Restituisce il dataset di addestramento usato dal classificatore.
+     *
+     * @return il dataset con i campioni etichettati
+     */
+    Dataset getTrainingData();
+}
@@ -0,0 +1,44 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+/**
+ * Metrica di distanza usata dalla ricerca dei k-nearest neighbors.
+ * <p>
+ * Le metriche lavorano su una <i>distanza ridotta</i>, cioè una funzione monotona
+ * della distanza vera che si può accumulare coordinata per coordinata senza operazioni
+ * costose (per la distanza euclidea è il quadrato, senza {@code Math.sqrt}).
+ * L'accumulo deve essere non decrescente: in questo modo la ricerca può interrompere
+ * il calcolo appena la somma parziale supera il k-esimo vicino migliore e confrontare
+ * direttamente la distanza dal piano di split con quella soglia.
+ */
+public interface DistanceMetric {
+
+    /**
+     * Aggiunge alla distanza ridotta parziale il contributo di una coordinata.
+     *
+     * @param partial distanza ridotta accumulata finora (0 all'inizio)
+     * @param diff differenza tra le coordinate dei due punti sull'asse
+     * @param axis indice dell'asse (feature)
+     * @return nuova distanza ridotta parziale, mai minore di {@code partial}
+     */
+    double accumulate(double partial, double diff, int axis);
+
+    /**
+     * Restituisce la distanza ridotta minima tra un punto e un piano di split
+     * perpendicolare all'asse indicato.
+     *
+     * @param diff distanza del punto dal piano lungo l'asse
+     * @param axis indice dell'asse (feature)
+     * @return limite inferiore della distanza ridotta dai punti oltre il piano
+     */
+    default double axisDistance(double diff, int axis) {
+        return accumulate(0.0, diff, axis);
+    }
+
+    /**
+     * Converte una distanza ridotta nella distanza vera.
+     *
+     * @param reduced distanza ridotta
+     * @return distanza secondo la metrica
+     */
+    double toDistance(double reduced);
+}
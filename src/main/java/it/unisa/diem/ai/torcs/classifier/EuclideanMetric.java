@@ -0,0 +1,18 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+/**
+ * Distanza euclidea. La distanza ridotta è la somma dei quadrati delle differenze,
+ * quindi la radice viene calcolata solo in {@link #toDistance(double)}.
+ */
+public class EuclideanMetric implements DistanceMetric {
+
+    @Override
+    public double accumulate(double partial, double diff, int axis) {
+        return partial + diff * diff;
+    }
+
+    @Override
+    public double toDistance(double reduced) {
+        return Math.sqrt(reduced);
+    }
+}
@@ -1,132 +1,409 @@
 package it.unisa.diem.ai.torcs.classifier;
 
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.Label;
 import it.unisa.diem.ai.torcs.model.Sample;
 
+import java.lang.foreign.MemorySegment;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
 
 /**
- * Implementazione di un KD-Tree per la ricerca dei k-nearest neighbors
- * su un insieme di punti rappresentati da oggetti {@link Sample}.
+ * Implementazione di un KD-Tree implicito per la ricerca dei k-nearest neighbors
+ * sui punti (righe) di un {@link Dataset}.
+ * <p>
+ * L'albero non usa nodi collegati: tutte le coordinate sono memorizzate in un unico
+ * blocco contiguo di {@code double} (row-major, {@code n × dimensions}) e le label in un
+ * blocco parallelo di {@code int}. I blocchi sono {@link MemorySegment}: un albero costruito
+ * in memoria li appoggia su array Java, uno riaperto da file ({@link KnnIndexFile}) li legge
+ * direttamente dalla mappatura del file, senza copiarli nell'heap. Il nodo radice del sottoalbero che copre l'intervallo
+ * {@code [lo, hi)} si trova in posizione {@code mid = (lo + hi) / 2}; i figli coprono
+ * rispettivamente {@code [lo, mid)} e {@code [mid + 1, hi)}. In questo modo la visita
+ * avviene con sola aritmetica sugli indici, senza inseguire puntatori.
+ * <p>
+ * Le distanze sono calcolate da una {@link DistanceMetric} in forma ridotta (per la
+ * distanza euclidea, al quadrato) e il loro accumulo si interrompe non appena supera
+ * il k-esimo vicino migliore trovato finora.
  * <p>
- * Il KD-Tree consente ricerche efficienti in spazi multidimensionali.
+ * La costruzione lavora su un array primitivo di indici: a ogni livello il mediano viene
+ * collocato con una selezione (quickselect) invece di un ordinamento completo, per un costo
+ * complessivo O(n log n), e i sottoalberi indipendenti vengono costruiti in parallelo sul
+ * {@link ForkJoinPool#commonPool() pool comune}.
  */
 class KDTree {
 
-    /** Nodo radice dell'albero KD */
-    private final KDNode root;
+    /** Dimensione minima di un sottoalbero perché valga la pena costruirlo in un task separato */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /** Numero di punti memorizzati nell'albero */
+    private final int size;
 
     /** Numero di dimensioni dei punti (feature) */
-    private int dimensions;
+    private final int dimensions;
+
+    /** Coordinate dei punti ({@code double}), row-major, nell'ordine implicito dell'albero */
+    private final MemorySegment points;
+
+    /** Codici delle label ({@code int}), allineati con {@link #points} */
+    private final MemorySegment labels;
+
+    /** Metrica usata per le distanze */
+    private final DistanceMetric metric;
 
     /**
-     * Costruttore che costruisce un KD-Tree a partire da una lista di Sample.
+     * Costruttore che costruisce un KD-Tree a partire dalle righe di un dataset.
+     * Il dataset passato non viene modificato.
      *
-     * @param points lista dei punti su cui costruire il KD-Tree
-     * @throws IllegalArgumentException se la lista è vuota
+     * @param dataset dataset dei punti su cui costruire il KD-Tree
+     * @param metric metrica di distanza da usare nelle ricerche
+     * @throws IllegalArgumentException se il dataset è vuoto
      */
-    public KDTree(List<Sample> points) {
-        if (points.isEmpty()) {
+    public KDTree(Dataset dataset, DistanceMetric metric) {
+        if (dataset.size() == 0) {
             throw new IllegalArgumentException("Points list cannot be empty");
         }
-        // Determina il numero di dimensioni da un campione
-        this.dimensions = points.get(0).getFeature().size();
-        root = buildTree(points, 0);
+        this.size = dataset.size();
+        this.dimensions = dataset.dimensions();
+        this.metric = metric;
+
+        // Copia le colonne del dataset in un buffer temporaneo row-major, nell'ordine delle righe
+        double[] source = new double[size * dimensions];
+        int[] sourceLabels = new int[size];
+        for (int d = 0; d < dimensions; d++) {
+            MemorySegment column = dataset.column(d);
+            for (int i = 0; i < size; i++) {
+                source[i * dimensions + d] = column.getAtIndex(JAVA_DOUBLE, i);
+            }
+        }
+        MemorySegment labelColumn = dataset.labelColumn();
+        for (int i = 0; i < size; i++) {
+            sourceLabels[i] = labelColumn.get(JAVA_BYTE, i);
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        ForkJoinPool.commonPool().invoke(new BuildTask(order, source, 0, size, 0));
+
+        // Dispone i punti secondo l'ordine implicito calcolato
+        double[] treePoints = new double[size * dimensions];
+        int[] treeLabels = new int[size];
+        for (int i = 0; i < size; i++) {
+            int src = order[i];
+            System.arraycopy(source, src * dimensions, treePoints, i * dimensions, dimensions);
+            treeLabels[i] = sourceLabels[src];
+        }
+        this.points = MemorySegment.ofArray(treePoints);
+        this.labels = MemorySegment.ofArray(treeLabels);
     }
 
     /**
-     * Classe interna che rappresenta un nodo del KD-Tree.
+     * Costruttore che riapre un albero già costruito, ad esempio mappato da file.
+     * I segmenti devono rispettare il layout implicito descritto nella documentazione della classe.
+     *
+     * @param size numero di punti
+     * @param dimensions numero di dimensioni dei punti
+     * @param points coordinate ({@code size × dimensions} double, row-major)
+     * @param labels codici delle label ({@code size} int)
+     * @param metric metrica di distanza da usare nelle ricerche
      */
-    private static class KDNode {
-        Sample point;
-        KDNode left, right;
+    KDTree(int size, int dimensions, MemorySegment points, MemorySegment labels, DistanceMetric metric) {
+        this.size = size;
+        this.dimensions = dimensions;
+        this.points = points;
+        this.labels = labels;
+        this.metric = metric;
+    }
+
+    /**
+     * Task che costruisce l'albero KD sull'intervallo {@code [lo, hi)} dell'ordinamento.
+     * Al termine, in posizione mediana si trova il nodo del sottoalbero, a sinistra i punti
+     * con coordinata minore o uguale e a destra quelli con coordinata maggiore o uguale.
+     */
+    @SuppressWarnings("serial")
+    private final class BuildTask extends RecursiveAction {
+
+        private final int[] order;
+        private final double[] source;
+        private final int lo;
+        private final int hi;
+        private final int depth;
+
+        /**
+         * @param order permutazione degli indici dei punti
+         * @param source coordinate originali (row-major)
+         * @param lo inizio dell'intervallo (incluso)
+         * @param hi fine dell'intervallo (escluso)
+         * @param depth profondità attuale dell'albero (serve per scegliere l'asse)
+         */
+        BuildTask(int[] order, double[] source, int lo, int hi, int depth) {
+            this.order = order;
+            this.source = source;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+        }
 
-        KDNode(Sample point) {
-            this.point = point;
+        @Override
+        protected void compute() {
+            if (hi - lo < PARALLEL_THRESHOLD) {
+                buildTree(order, source, lo, hi, depth);
+                return;
+            }
+            int mid = split(order, source, lo, hi, depth);
+            invokeAll(new BuildTask(order, source, lo, mid, depth + 1),
+                    new BuildTask(order, source, mid + 1, hi, depth + 1));
         }
     }
 
     /**
-     * Metodo ricorsivo per costruire l'albero KD.
+     * Metodo ricorsivo (sequenziale) per costruire l'albero KD sull'intervallo {@code [lo, hi)}.
      *
-     * @param points lista di punti da cui costruire il sottoalbero
-     * @param depth profondità attuale dell'albero (serve per scegliere l'asse)
-     * @return il nodo radice del sottoalbero
+     * @param order permutazione degli indici dei punti
+     * @param source coordinate originali (row-major)
+     * @param lo inizio dell'intervallo (incluso)
+     * @param hi fine dell'intervallo (escluso)
+     * @param depth profondità attuale dell'albero
      */
-    private KDNode buildTree(List<Sample> points, int depth) {
-        if (points.isEmpty()) {
-            return null;
+    private void buildTree(int[] order, double[] source, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
         }
+        int mid = split(order, source, lo, hi, depth);
+        buildTree(order, source, lo, mid, depth + 1);
+        buildTree(order, source, mid + 1, hi, depth + 1);
+    }
 
+    /**
+     * Colloca in posizione mediana il punto mediano dell'intervallo rispetto all'asse
+     * corrente, partizionando gli altri attorno ad esso.
+     *
+     * @return posizione del mediano
+     */
+    private int split(int[] order, double[] source, int lo, int hi, int depth) {
         // Seleziona l'asse su cui effettuare lo split (ciclico)
         int axis = depth % dimensions;
+        int mid = lo + (hi - lo) / 2;
+        select(order, source, axis, lo, hi - 1, mid);
+        return mid;
+    }
 
-        // Ordina i punti secondo la coordinata dell'asse corrente
-        points.sort(Comparator.comparingDouble(p -> p.getFeature().get(axis)));
+    /**
+     * Quickselect (partizione di Hoare con pivot mediano di tre): riordina
+     * {@code order[left..right]} in modo che in posizione {@code nth} si trovi l'elemento
+     * che vi starebbe dopo un ordinamento completo secondo la coordinata {@code axis}.
+     *
+     * @param order permutazione degli indici dei punti
+     * @param source coordinate originali (row-major)
+     * @param axis asse di confronto
+     * @param left inizio dell'intervallo (incluso)
+     * @param right fine dell'intervallo (incluso)
+     * @param nth posizione da fissare
+     */
+    private void select(int[] order, double[] source, int axis, int left, int right, int nth) {
+        while (right > left) {
+            double pivot = medianOfThree(
+                    key(order, source, left, axis),
+                    key(order, source, left + (right - left) / 2, axis),
+                    key(order, source, right, axis));
 
-        // Trova il punto mediano
-        int medianIndex = points.size() / 2;
-        KDNode node = new KDNode(points.get(medianIndex));
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (key(order, source, i, axis) < pivot) {
+                    i++;
+                }
+                while (key(order, source, j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
 
-        // Ricorsione per i sottoalberi sinistro e destro
-        node.left = buildTree(points.subList(0, medianIndex), depth + 1);
-        node.right = buildTree(points.subList(medianIndex + 1, points.size()), depth + 1);
+            // Prosegue solo nella parte che contiene la posizione cercata
+            if (nth <= j) {
+                right = j;
+            } else if (nth >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double key(int[] order, double[] source, int position, int axis) {
+        return source[order[position] * dimensions + axis];
+    }
 
-        return node;
+    private static double medianOfThree(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
     }
 
     /**
      * Restituisce i k-nearest neighbors del target all'interno dell'albero.
+     * Metodo di comodo che alloca i buffer a ogni chiamata; per il percorso critico
+     * usare {@link #kNearestNeighbors(double[], int, NeighborHeap)}.
      *
      * @param target punto target da cui calcolare le distanze
      * @param k numero di vicini da trovare
      * @return lista dei k campioni più vicini
      */
     public List<Sample> kNearestNeighbors(Sample target, int k) {
-        // Coda con massimo k elementi, ordinati per distanza decrescente
-        PriorityQueue<Sample> pq = new PriorityQueue<>(k, Comparator.comparingDouble(target::distanzaEuclidea).reversed());
-        kNearestNeighbors(root, target, k, 0, pq);
-        return new ArrayList<>(pq);
+        double[] query = target.feature().toArray();
+
+        NeighborHeap heap = new NeighborHeap(k);
+        kNearestNeighbors(query, k, heap);
+
+        List<Sample> result = new ArrayList<>(heap.size());
+        for (int i = 0; i < heap.size(); i++) {
+            result.add(sampleAt(heap.index(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Cerca i k-nearest neighbors del punto {@code query} scrivendo il risultato nell'heap fornito
+     * (coppie distanza ridotta, posizione nell'albero). Non alloca memoria.
+     *
+     * @param query coordinate del punto target (lunghezza pari a {@link #dimensions()})
+     * @param k numero di vicini da trovare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     */
+    public void kNearestNeighbors(double[] query, int k, NeighborHeap heap) {
+        heap.reset(k);
+        kNearestNeighbors(query, 0, size, 0, heap);
     }
 
     /**
      * Metodo ricorsivo che attraversa il KD-Tree per trovare i k-nearest neighbors.
+     * Lavora sulle distanze ridotte della metrica, che preservano l'ordinamento.
      *
-     * @param node nodo corrente dell'albero
-     * @param target punto target
-     * @param k numero di vicini desiderati
+     * @param query coordinate del punto target
+     * @param lo inizio dell'intervallo del sottoalbero (incluso)
+     * @param hi fine dell'intervallo del sottoalbero (escluso)
      * @param depth profondità attuale dell'albero
-     * @param pq coda prioritaria che mantiene i k vicini migliori trovati
+     * @param heap heap che mantiene i k vicini migliori trovati
      */
-    private void kNearestNeighbors(KDNode node, Sample target, int k, int depth, PriorityQueue<Sample> pq) {
-        if (node == null) {
+    private void kNearestNeighbors(double[] query, int lo, int hi, int depth, NeighborHeap heap) {
+        if (hi - lo <= 0) {
             return;
         }
 
-        double distance = target.distanzaEuclidea(node.point);
-
-        // Se la coda non è piena o si trova un punto più vicino, aggiorna la coda
-        if (pq.size() < k) {
-            pq.offer(node.point);
-        } else if (distance < target.distanzaEuclidea(pq.peek())) {
-            pq.poll();
-            pq.offer(node.point);
-        }
+        // Se l'heap non è pieno o si trova un punto più vicino, viene aggiornato
+        int node = lo + (hi - lo) / 2;
+        heap.offer(distance(query, node, heap.worstDistance()), node);
 
         int axis = depth % dimensions;
-
-        // Decidi se andare a sinistra o destra nell'albero
-        KDNode nearNode = (target.getFeature().get(axis) < node.point.getFeature().get(axis)) ? node.left : node.right;
-        KDNode farNode = (nearNode == node.left) ? node.right : node.left;
+        double diff = query[axis] - coordinate(node, axis);
 
         // Esplora prima il sottoalbero più vicino
-        kNearestNeighbors(nearNode, target, k, depth + 1, pq);
+        if (diff < 0) {
+            kNearestNeighbors(query, lo, node, depth + 1, heap);
+        } else {
+            kNearestNeighbors(query, node + 1, hi, depth + 1, heap);
+        }
 
         // Verifica se è necessario esplorare anche l'altro ramo
-        if (pq.size() < k || Math.abs(target.getFeature().get(axis) - node.point.getFeature().get(axis)) < target.distanzaEuclidea(pq.peek())) {
-            kNearestNeighbors(farNode, target, k, depth + 1, pq);
+        if (metric.axisDistance(diff, axis) < heap.worstDistance()) {
+            if (diff < 0) {
+                kNearestNeighbors(query, node + 1, hi, depth + 1, heap);
+            } else {
+                kNearestNeighbors(query, lo, node, depth + 1, heap);
+            }
+        }
+    }
+
+    /**
+     * Calcola la distanza ridotta tra il punto target e il punto in posizione {@code index}.
+     * L'accumulo si interrompe appena la somma parziale raggiunge {@code bound}: in quel caso
+     * il valore restituito è solo un limite inferiore, sufficiente a scartare il punto.
+     *
+     * @param query coordinate del punto target
+     * @param index posizione del punto nell'albero
+     * @param bound distanza ridotta del k-esimo vicino corrente
+     * @return distanza ridotta, oppure un valore non minore di {@code bound}
+     */
+    private double distance(double[] query, int index, double bound) {
+        long base = (long) index * dimensions;
+        double partial = 0.0;
+        for (int d = 0; d < dimensions; d++) {
+            partial = metric.accumulate(partial, query[d] - points.getAtIndex(JAVA_DOUBLE, base + d), d);
+            if (partial >= bound) {
+                break;
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * @param index posizione del punto nell'albero
+     * @return codice della label del punto
+     */
+    public int labelAt(int index) {
+        return labels.getAtIndex(JAVA_INT, index);
+    }
+
+    /**
+     * @param index posizione del punto nell'albero
+     * @param axis indice della coordinata
+     * @return coordinata del punto sull'asse indicato
+     */
+    double coordinate(int index, int axis) {
+        return points.getAtIndex(JAVA_DOUBLE, (long) index * dimensions + axis);
+    }
+
+    /**
+     * Ricostruisce il {@link Sample} memorizzato in una posizione dell'albero.
+     *
+     * @param index posizione del punto nell'albero
+     * @return campione con le coordinate e la label del punto
+     */
+    Sample sampleAt(int index) {
+        FeatureVector values = new FeatureVector(dimensions);
+        for (int d = 0; d < dimensions; d++) {
+            values.set(d, coordinate(index, d));
         }
+        return new Sample(values, Label.fromCode(labelAt(index)));
+    }
+
+    /**
+     * @return numero di punti memorizzati nell'albero
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return numero di dimensioni dei punti
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return segmento con le coordinate dei punti, nell'ordine dell'albero
+     */
+    MemorySegment points() {
+        return points;
+    }
+
+    /**
+     * @return segmento con i codici delle label, nell'ordine dell'albero
+     */
+    MemorySegment labels() {
+        return labels;
     }
 }
@@ -0,0 +1,204 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.model.SensorFeature;
+import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.CRC32C;
+
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Formato binario degli snapshot di un indice k-NN ({@link KDTree}), pensato per essere
+ * riaperto con {@link FileChannel#map} senza copiare i dati nell'heap.
+ * <p>
+ * Layout del file (ordine dei byte nativo della piattaforma che lo ha scritto):
+ * <pre>
+ *  0  int    magic ("KNNI")
+ *  4  int    versione del formato
+ *  8  int    numero di punti n
+ * 12  int    numero di dimensioni d
+ * 16  long   checksum CRC32C di tutto ciò che segue l'intestazione
+ * 24  long   riservato
+ * 32  double[d × 2]  range (min, max) del FeatureNormalizer usati per i dati
+ *     double[n × d]  coordinate dei punti, row-major, nell'ordine implicito dell'albero
+ *     int[n]         codici delle label
+ * </pre>
+ * Tutte le sezioni iniziano a offset multipli di 8, così che la mappatura possa essere
+ * letta direttamente con accessi allineati. Più processi che aprono lo stesso file
+ * condividono le stesse pagine della page cache del sistema operativo.
+ */
+final class KnnIndexFile {
+
+    /** Numero magico ("KNNI") */
+    private static final int MAGIC = 0x4B4E4E49;
+
+    /** Versione corrente del formato */
+    private static final int VERSION = 1;
+
+    /** Dimensione dell'intestazione in byte */
+    private static final long HEADER_SIZE = 32;
+
+    private KnnIndexFile() {
+    }
+
+    /**
+     * Scrive lo snapshot di un albero. Il file viene prima scritto accanto alla destinazione
+     * e poi rinominato atomicamente, così che un lettore concorrente non veda mai un file parziale.
+     *
+     * @param path percorso del file da scrivere
+     * @param tree albero da salvare
+     * @throws IOException in caso di errore di scrittura
+     * @throws IllegalArgumentException se le dimensioni dell'albero non corrispondono a {@link SensorFeature}
+     */
+    static void write(Path path, KDTree tree) throws IOException {
+        SensorFeature[] features = SensorFeature.values();
+        int dimensions = tree.dimensions();
+        if (dimensions != features.length) {
+            throw new IllegalArgumentException("L'albero ha " + dimensions + " dimensioni, attese " + features.length);
+        }
+
+        long rangesOffset = HEADER_SIZE;
+        long pointsOffset = rangesOffset + 2L * dimensions * Double.BYTES;
+        long labelsOffset = pointsOffset + tree.points().byteSize();
+        long total = labelsOffset + tree.labels().byteSize();
+
+        // Nome univoco: più processi possono ricostruire lo stesso indice insieme, e nessuno deve
+        // troncare o rinominare il file temporaneo che un altro sta ancora scrivendo
+        Path tmp = createTempFile(path);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 Arena arena = Arena.ofConfined()) {
+                MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, total, arena);
+
+                file.set(JAVA_INT, 0, MAGIC);
+                file.set(JAVA_INT, 4, VERSION);
+                file.set(JAVA_INT, 8, tree.size());
+                file.set(JAVA_INT, 12, dimensions);
+                file.set(JAVA_LONG, 24, 0L);
+
+                for (int d = 0; d < dimensions; d++) {
+                    file.setAtIndex(JAVA_DOUBLE, rangesOffset / Double.BYTES + 2L * d, FeatureNormalizer.getMin(features[d]));
+                    file.setAtIndex(JAVA_DOUBLE, rangesOffset / Double.BYTES + 2L * d + 1, FeatureNormalizer.getMax(features[d]));
+                }
+                MemorySegment.copy(tree.points(), 0, file, pointsOffset, tree.points().byteSize());
+                MemorySegment.copy(tree.labels(), 0, file, labelsOffset, tree.labels().byteSize());
+
+                file.set(JAVA_LONG, 16, checksum(file.asSlice(HEADER_SIZE)));
+                file.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Crea il file temporaneo univoco da cui viene pubblicato {@code path}. Sui file system POSIX
+     * ha permessi {@code rw-r--r--} (ridotti dalla umask) come un file creato direttamente, e non
+     * i {@code rw-------} di {@link Files#createTempFile}: lo snapshot rinominato deve poter essere
+     * mappato anche dai processi di altri utenti.
+     */
+    private static Path createTempFile(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName().toString();
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempFile(directory, prefix, ".tmp");
+        }
+        FileAttribute<?> permissions = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-r--r--"));
+        return Files.createTempFile(directory, prefix, ".tmp", permissions);
+    }
+
+    /**
+     * Riapre uno snapshot mappandolo in memoria. I dati restano nella mappatura del file,
+     * che viene rilasciata quando l'albero non è più raggiungibile.
+     *
+     * @param path percorso dello snapshot
+     * @param metric metrica di distanza da usare nelle ricerche
+     * @return albero che legge i punti direttamente dal file
+     * @throws IOException se il file non è leggibile, è corrotto o è stato creato con range di
+     *                     normalizzazione diversi da quelli correnti
+     */
+    static KDTree open(Path path, DistanceMetric metric) throws IOException {
+        MemorySegment file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Indice KNN troncato: " + path);
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, Arena.ofAuto());
+        }
+
+        int magic = file.get(JAVA_INT, 0);
+        if (magic != MAGIC) {
+            throw new IOException(Integer.reverseBytes(magic) == MAGIC
+                    ? "Indice KNN scritto con un ordine dei byte diverso: " + path
+                    : "Il file non è un indice KNN: " + path);
+        }
+        int version = file.get(JAVA_INT, 4);
+        if (version != VERSION) {
+            throw new IOException("Versione dell'indice KNN non supportata (" + version + "): " + path);
+        }
+
+        int size = file.get(JAVA_INT, 8);
+        int dimensions = file.get(JAVA_INT, 12);
+        SensorFeature[] features = SensorFeature.values();
+        if (size <= 0 || dimensions != features.length) {
+            throw new IOException("Intestazione dell'indice KNN non valida (n=" + size + ", d=" + dimensions + "): " + path);
+        }
+
+        long rangesOffset = HEADER_SIZE;
+        long pointsOffset = rangesOffset + 2L * dimensions * Double.BYTES;
+        long pointsBytes = (long) size * dimensions * Double.BYTES;
+        long labelsOffset = pointsOffset + pointsBytes;
+        long labelsBytes = (long) size * Integer.BYTES;
+        if (file.byteSize() != labelsOffset + labelsBytes) {
+            throw new IOException("Dimensione dell'indice KNN non coerente con l'intestazione: " + path);
+        }
+
+        if (file.get(JAVA_LONG, 16) != checksum(file.asSlice(HEADER_SIZE))) {
+            throw new IOException("Checksum dell'indice KNN non valido: " + path);
+        }
+
+        for (int d = 0; d < dimensions; d++) {
+            double min = file.getAtIndex(JAVA_DOUBLE, rangesOffset / Double.BYTES + 2L * d);
+            double max = file.getAtIndex(JAVA_DOUBLE, rangesOffset / Double.BYTES + 2L * d + 1);
+            if (min != FeatureNormalizer.getMin(features[d]) || max != FeatureNormalizer.getMax(features[d])) {
+                throw new IOException("L'indice KNN usa range di normalizzazione diversi per " + features[d].name() + ": " + path);
+            }
+        }
+
+        return new KDTree(size, dimensions,
+                file.asSlice(pointsOffset, pointsBytes),
+                file.asSlice(labelsOffset, labelsBytes),
+                metric);
+    }
+
+    /**
+     * Calcola il CRC32C di un segmento (mappato) senza copiarlo.
+     *
+     * @param segment dati da controllare
+     * @return valore del checksum
+     */
+    private static long checksum(MemorySegment segment) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.asByteBuffer());
+        return crc.getValue();
+    }
+}
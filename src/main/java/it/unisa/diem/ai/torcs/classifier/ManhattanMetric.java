@@ -0,0 +1,17 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+/**
+ * Distanza di Manhattan (norma L1): somma dei valori assoluti delle differenze.
+ */
+public class ManhattanMetric implements DistanceMetric {
+
+    @Override
+    public double accumulate(double partial, double diff, int axis) {
+        return partial + Math.abs(diff);
+    }
+
+    @Override
+    public double toDistance(double reduced) {
+        return reduced;
+    }
+}
@@ -1,6 +1,8 @@
 package it.unisa.diem.ai.torcs.classifier;
 
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 import it.unisa.diem.ai.torcs.model.Dataset;
@@ -10,27 +12,123 @@ import it.unisa.diem.ai.torcs.model.Sample;
 /**
  * Implementazione semplice dell'algoritmo Nearest Neighbor (KNN)
  * utilizzando un KD-Tree per una ricerca efficiente dei vicini.
+ * <p>
+ * Il percorso di query senza allocazioni ({@link #classify(double[], int, NeighborHeap)})
+ * lavora su buffer forniti dal chiamante e non modifica lo stato del classificatore,
+ * quindi può essere usato da più thread contemporaneamente, ciascuno con il proprio heap.
+ * <p>
+ * L'indice può essere salvato in uno snapshot binario ({@link #saveIndex(Path)}) e riaperto
+ * tramite mappatura in memoria ({@link #openIndex(Path)}), evitando di rileggere il CSV e
+ * ricostruire l'albero a ogni avvio.
  */
-public class NearestNeighbor {
+public class NearestNeighbor implements Classifier {
 
-    /** Dataset di addestramento */
-    private final Dataset trainingData;
+    /** Dataset di addestramento (ricostruito su richiesta se l'indice è stato aperto da file) */
+    private Dataset trainingData;
 
     /** Struttura KD-Tree costruita a partire dal dataset */
     private final KDTree kdtree;
 
-    /** Contatore per le classi durante la classificazione */
-    private final int[] classCounts;
+    /** Buffer della query usato da {@link #classify(Sample, int)} */
+    private final double[] queryBuffer;
+
+    /** Heap riutilizzato da {@link #classify(Sample, int)} */
+    private NeighborHeap heap;
 
     /**
-     * Costruttore che inizializza il classificatore con il dataset di addestramento.
+     * Costruttore che inizializza il classificatore con il dataset di addestramento,
+     * usando la distanza euclidea.
      *
      * @param trainingData dataset contenente i campioni noti (labeled)
      */
     public NearestNeighbor(Dataset trainingData) {
+        this(trainingData, new EuclideanMetric());
+    }
+
+    /**
+     * Costruttore che inizializza il classificatore con il dataset di addestramento
+     * e la metrica di distanza indicata.
+     *
+     * @param trainingData dataset contenente i campioni noti (labeled)
+     * @param metric metrica di distanza tra i campioni
+     */
+    public NearestNeighbor(Dataset trainingData, DistanceMetric metric) {
+        this(trainingData, new KDTree(trainingData, metric));
+    }
+
+    /**
+     * Costruttore interno a partire da un albero già pronto.
+     *
+     * @param trainingData dataset di addestramento, oppure {@code null} se non disponibile
+     * @param kdtree albero su cui effettuare le ricerche
+     */
+    private NearestNeighbor(Dataset trainingData, KDTree kdtree) {
         this.trainingData = trainingData;
-        this.kdtree = new KDTree(trainingData.getSamples());
-        this.classCounts = new int[Label.values().length];
+        this.kdtree = kdtree;
+        this.queryBuffer = new double[kdtree.dimensions()];
+        this.heap = new NeighborHeap(1);
+    }
+
+    /**
+     * Riapre un indice salvato con {@link #saveIndex(Path)}, usando la distanza euclidea.
+     *
+     * @param path percorso dello snapshot
+     * @return classificatore che legge i punti direttamente dal file mappato
+     * @throws IOException se il file non è leggibile, è corrotto o non è compatibile
+     */
+    public static NearestNeighbor openIndex(Path path) throws IOException {
+        return openIndex(path, new EuclideanMetric());
+    }
+
+    /**
+     * Riapre un indice salvato con {@link #saveIndex(Path)}.
+     * L'apertura non copia i dati nell'heap: il file viene mappato in memoria.
+     *
+     * @param path percorso dello snapshot
+     * @param metric metrica di distanza tra i campioni
+     * @return classificatore che legge i punti direttamente dal file mappato
+     * @throws IOException se il file non è leggibile, è corrotto o non è compatibile
+     */
+    public static NearestNeighbor openIndex(Path path, DistanceMetric metric) throws IOException {
+        return new NearestNeighbor(null, KnnIndexFile.open(path, metric));
+    }
+
+    /**
+     * Salva l'indice in uno snapshot binario riapribile con {@link #openIndex(Path)}.
+     *
+     * @param path percorso del file da scrivere
+     * @throws IOException in caso di errore di scrittura
+     */
+    public void saveIndex(Path path) throws IOException {
+        KnnIndexFile.write(path, kdtree);
+    }
+
+    /**
+     * Apre lo snapshot dell'indice se esiste ed è più recente del CSV; altrimenti carica il CSV,
+     * costruisce l'indice e prova a salvarne lo snapshot per gli avvii successivi.
+     *
+     * @param csvPath percorso del dataset CSV
+     * @param indexPath percorso dello snapshot dell'indice
+     * @return classificatore pronto all'uso
+     */
+    public static NearestNeighbor openOrBuild(String csvPath, String indexPath) {
+        File csv = new File(csvPath);
+        File index = new File(indexPath);
+        if (index.isFile() && index.lastModified() >= csv.lastModified()) {
+            try {
+                return openIndex(index.toPath());
+            } catch (IOException e) {
+                System.err.println("Warning: " + e.getMessage() + ", rebuilding index");
+            }
+        }
+
+        NearestNeighbor classifier = new NearestNeighbor(Dataset.loadFromCSVParallel(csvPath));
+        try {
+            classifier.saveIndex(index.toPath());
+        } catch (IOException e) {
+            System.err.println("Warning: cannot save index " + indexPath + ": " + e.getMessage());
+        }
+        return classifier;
     }
 
     /**
@@ -44,44 +142,78 @@ public class NearestNeighbor {
         return kdtree.kNearestNeighbors(testPoint, k);
     }
 
+    /**
+     * Trova i k vicini più prossimi scrivendoli nell'heap del chiamante.
+     * Gli indici presenti nell'heap vanno interpretati con {@link #labelOf(int)}.
+     *
+     * @param query coordinate (normalizzate) del punto di test
+     * @param k numero di vicini da considerare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     */
+    @Override
+    public void findKNearestNeighbors(double[] query, int k, NeighborHeap heap) {
+        kdtree.kNearestNeighbors(query, k, heap);
+    }
+
     /**
      * Classifica un punto di test usando la maggioranza tra i k vicini più prossimi.
+     * Usa buffer interni: a regime non alloca memoria, ma non è thread-safe.
      *
      * @param testPoint il punto da classificare
      * @param k numero di vicini da considerare
      * @return codice numerico della classe predetta (int corrispondente a {@link Label#getCode()})
      */
+    @Override
     public int classify(Sample testPoint, int k) {
-        List<Sample> kNearestNeighbors = findKNearestNeighbors(testPoint, k);
-
-        // Azzeramento dei conteggi
-        Arrays.fill(classCounts, 0);
-
-        // Conta le occorrenze di ciascuna classe tra i vicini
-        for (Sample neighbor : kNearestNeighbors) {
-            int classCode = neighbor.getLabel().getCode();
-            classCounts[classCode]++;
+        testPoint.feature().copyTo(queryBuffer, 0);
+        if (heap.capacity() < k) {
+            heap = new NeighborHeap(k);
         }
+        return classify(queryBuffer, k, heap);
+    }
 
-        // Seleziona la classe con il maggior numero di occorrenze
-        int maxCount = -1;
-        int predictedClass = -1;
-        for (int i = 0; i < classCounts.length; i++) {
-            if (classCounts[i] > maxCount) {
-                maxCount = classCounts[i];
-                predictedClass = i;
-            }
-        }
+    /**
+     * Classifica un punto di test usando la maggioranza tra i k vicini più prossimi,
+     * appoggiandosi all'heap fornito dal chiamante. Non alloca memoria.
+     *
+     * @param query coordinate (normalizzate) del punto di test
+     * @param k numero di vicini da considerare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     * @return codice numerico della classe predetta (int corrispondente a {@link Label#getCode()})
+     */
+    @Override
+    public int classify(double[] query, int k, NeighborHeap heap) {
+        kdtree.kNearestNeighbors(query, k, heap);
+        return Votes.majority(this, heap);
+    }
 
-        return predictedClass;
+    /**
+     * Restituisce la label del vicino con l'indice indicato (come riportato in un {@link NeighborHeap}).
+     *
+     * @param index indice del vicino
+     * @return codice della label del vicino
+     */
+    @Override
+    public int labelOf(int index) {
+        return kdtree.labelAt(index);
     }
 
     /**
      * Restituisce il dataset di addestramento usato dal classificatore.
+     * Se l'indice è stato aperto da file, il dataset viene ricostruito dai punti
+     * dell'indice alla prima chiamata (nell'ordine dell'albero).
      *
      * @return il dataset con i campioni etichettati
      */
+    @Override
     public Dataset getTrainingData() {
+        if (trainingData == null) {
+            Dataset dataset = new Dataset();
+            for (int i = 0; i < kdtree.size(); i++) {
+                dataset.addSample(kdtree.sampleAt(i));
+            }
+            trainingData = dataset;
+        }
         return trainingData;
     }
 }
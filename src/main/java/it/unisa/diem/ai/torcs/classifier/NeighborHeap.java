@@ -0,0 +1,169 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+/**
+ * Max-heap primitivo e a capacità limitata di coppie (distanza, indice),
+ * usato come buffer di lavoro riutilizzabile nelle ricerche k-NN.
+ * Le distanze sono quelle ridotte della {@link DistanceMetric} in uso.
+ * <p>
+ * In testa si trova sempre il vicino peggiore fra quelli trovati finora, così che
+ * il confronto con un nuovo candidato costi un solo accesso all'array.
+ * L'oggetto va allocato una volta dal chiamante e riutilizzato a ogni query:
+ * nessuna operazione alloca memoria. Non è thread-safe.
+ */
+public final class NeighborHeap {
+
+    /** Distanze dei vicini, organizzate come max-heap */
+    private final double[] distances;
+
+    /** Indici dei vicini (posizioni nell'indice k-NN), allineati con {@link #distances} */
+    private final int[] indices;
+
+    /** Numero massimo di vicini per la query corrente */
+    private int limit;
+
+    /** Numero di vicini attualmente presenti */
+    private int size;
+
+    /** Buffer di appoggio per i motori di ricerca (vedi {@link #scratch(int)}) */
+    private double[] scratch = new double[0];
+
+    /**
+     * Crea un heap in grado di contenere fino a {@code capacity} vicini.
+     *
+     * @param capacity numero massimo di vicini (k massimo supportato)
+     * @throws IllegalArgumentException se la capacità non è positiva
+     */
+    public NeighborHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.distances = new double[capacity];
+        this.indices = new int[capacity];
+        this.limit = capacity;
+    }
+
+    /**
+     * Svuota l'heap e fissa il numero di vicini da mantenere per la prossima query.
+     *
+     * @param k numero di vicini desiderati
+     * @throws IllegalArgumentException se k non è positivo o supera la capacità
+     */
+    public void reset(int k) {
+        if (k <= 0 || k > distances.length) {
+            throw new IllegalArgumentException("k must be in [1, " + distances.length + "]: " + k);
+        }
+        this.limit = k;
+        this.size = 0;
+    }
+
+    /**
+     * @return capacità massima dell'heap
+     */
+    public int capacity() {
+        return distances.length;
+    }
+
+    /**
+     * @return numero di vicini attualmente presenti
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} se l'heap contiene già k vicini
+     */
+    public boolean isFull() {
+        return size == limit;
+    }
+
+    /**
+     * Restituisce la distanza del vicino peggiore, cioè la soglia che un nuovo
+     * candidato deve battere. Se l'heap non è pieno la soglia è infinita.
+     *
+     * @return distanza del k-esimo vicino, oppure {@link Double#POSITIVE_INFINITY}
+     */
+    public double worstDistance() {
+        return size < limit ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Propone un candidato. Se l'heap non è pieno viene inserito; altrimenti sostituisce
+     * il vicino peggiore solo se strettamente più vicino.
+     *
+     * @param distance distanza del candidato
+     * @param index indice del candidato
+     */
+    public void offer(double distance, int index) {
+        if (size < limit) {
+            siftUp(size++, distance, index);
+        } else if (distance < distances[0]) {
+            siftDown(0, distance, index);
+        }
+    }
+
+    /**
+     * Restituisce un buffer di appoggio che il motore di ricerca può usare durante la query,
+     * ad esempio per copiare le corsie di un vettore di distanze. Come l'heap appartiene al
+     * chiamante, quindi query concorrenti con heap diversi non lo condividono; viene allocato
+     * solo alla prima richiesta di una data lunghezza.
+     *
+     * @param length lunghezza minima richiesta
+     * @return buffer lungo almeno {@code length}, con contenuto indefinito
+     */
+    public double[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new double[length];
+        }
+        return scratch;
+    }
+
+    /**
+     * @param i posizione nell'heap, in {@code [0, size())}
+     * @return distanza del vicino in posizione i
+     */
+    public double distance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * @param i posizione nell'heap, in {@code [0, size())}
+     * @return indice del vicino in posizione i
+     */
+    public int index(int i) {
+        return indices[i];
+    }
+
+    private void siftUp(int pos, double distance, int index) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (distances[parent] >= distance) {
+                break;
+            }
+            distances[pos] = distances[parent];
+            indices[pos] = indices[parent];
+            pos = parent;
+        }
+        distances[pos] = distance;
+        indices[pos] = index;
+    }
+
+    private void siftDown(int pos, double distance, int index) {
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && distances[right] > distances[child]) {
+                child = right;
+            }
+            if (distance >= distances[child]) {
+                break;
+            }
+            distances[pos] = distances[child];
+            indices[pos] = indices[child];
+            pos = child;
+        }
+        distances[pos] = distance;
+        indices[pos] = index;
+    }
+}
@@ -0,0 +1,158 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.model.Sample;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+
+/**
+ * Classificatore k-NN a scansione lineare, vettorizzato con la Vector API del JDK
+ * ({@code jdk.incubator.vector}, da abilitare con {@code --add-modules jdk.incubator.vector}).
+ * <p>
+ * Con poche dimensioni (11 feature) una scansione completa ben vettorizzata è spesso più
+ * veloce di un KD-Tree, le cui potature perdono efficacia al crescere delle dimensioni.
+ * Il dataset è memorizzato in forma colonnare (structure-of-arrays): una colonna
+ * {@code double[]} per ogni {@link it.unisa.diem.ai.torcs.model.SensorFeature}, così che
+ * ogni istruzione SIMD calcoli la distanza di più campioni contemporaneamente.
+ * <p>
+ * La selezione dei k migliori confronta l'intero vettore di distanze con la soglia del
+ * k-esimo vicino e scende al dettaglio delle singole corsie solo quando qualcuna la batte,
+ * evento raro dopo i primi campioni. Usa la distanza euclidea (al quadrato, come
+ * {@link EuclideanMetric}) e trova i vicini alle stesse distanze di {@link NearestNeighbor}.
+ * <p>
+ * I vicini possono invece differire quando più campioni sono alla stessa distanza del k-esimo:
+ * qui, come in {@link NeighborHeap#offer(double, int)}, resta il primo nell'ordine del dataset,
+ * mentre il KD-Tree tiene il primo visitato. In questi casi anche la predizione può differire
+ * (le rare "predizioni diverse" di {@link it.unisa.diem.ai.torcs.utils.benchmark.KnnBenchmark}).
+ */
+public class VectorNearestNeighbor implements Classifier {
+
+    /** Specie vettoriale preferita dalla piattaforma */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** Dataset di addestramento */
+    private final Dataset trainingData;
+
+    /** Numero di campioni */
+    private final int size;
+
+    /** Colonne delle feature: {@code columns[d][i]} è la feature d del campione i */
+    private final double[][] columns;
+
+    /** Codici delle label, nell'ordine dei campioni */
+    private final int[] labels;
+
+    /** Buffer della query usato da {@link #classify(Sample, int)} */
+    private final double[] queryBuffer;
+
+    /** Heap riutilizzato da {@link #classify(Sample, int)} */
+    private NeighborHeap heap;
+
+    /**
+     * Costruttore che copia il dataset di addestramento in forma colonnare.
+     *
+     * @param trainingData dataset contenente i campioni noti (labeled)
+     * @throws IllegalArgumentException se il dataset è vuoto
+     */
+    public VectorNearestNeighbor(Dataset trainingData) {
+        if (trainingData.size() == 0) {
+            throw new IllegalArgumentException("Points list cannot be empty");
+        }
+        this.trainingData = trainingData;
+        this.size = trainingData.size();
+        int dimensions = trainingData.dimensions();
+
+        this.columns = new double[dimensions][size];
+        this.labels = new int[size];
+        for (int d = 0; d < dimensions; d++) {
+            MemorySegment.copy(trainingData.column(d), JAVA_DOUBLE, 0, columns[d], 0, size);
+        }
+        MemorySegment labelColumn = trainingData.labelColumn();
+        for (int i = 0; i < size; i++) {
+            labels[i] = labelColumn.get(JAVA_BYTE, i);
+        }
+        this.queryBuffer = new double[dimensions];
+        this.heap = new NeighborHeap(1);
+    }
+
+    @Override
+    public int classify(Sample testPoint, int k) {
+        testPoint.feature().copyTo(queryBuffer, 0);
+        if (heap.capacity() < k) {
+            heap = new NeighborHeap(k);
+        }
+        return classify(queryBuffer, k, heap);
+    }
+
+    @Override
+    public int classify(double[] query, int k, NeighborHeap heap) {
+        findKNearestNeighbors(query, k, heap);
+        return Votes.majority(this, heap);
+    }
+
+    /**
+     * Trova i k vicini più prossimi scrivendoli nell'heap del chiamante
+     * (distanze euclidee al quadrato). A regime non alloca memoria: le corsie vengono lette
+     * da un array ({@link NeighborHeap#scratch(int)}) e non con {@code lane(int)}, che con un
+     * indice variabile non è intrinsificato e alloca a ogni chiamata.
+     *
+     * @param query coordinate (normalizzate) del punto di test
+     * @param k numero di vicini da considerare
+     * @param heap buffer di lavoro del chiamante, con capacità almeno k
+     */
+    @Override
+    public void findKNearestNeighbors(double[] query, int k, NeighborHeap heap) {
+        heap.reset(k);
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(size);
+        double[] distances = heap.scratch(lanes);
+        int i = 0;
+
+        for (; i < upper; i += lanes) {
+            // Distanze di 'lanes' campioni consecutivi, accumulate colonna per colonna
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            for (int d = 0; d < columns.length; d++) {
+                DoubleVector diff = DoubleVector.fromArray(SPECIES, columns[d], i).sub(query[d]);
+                acc = diff.mul(diff).add(acc);
+            }
+
+            // Si scende sulle singole corsie solo se qualcuna batte il k-esimo vicino
+            VectorMask<Double> better = acc.lt(heap.worstDistance());
+            if (better.anyTrue()) {
+                acc.intoArray(distances, 0);
+                long bits = better.toLong();
+                while (bits != 0) {
+                    int lane = Long.numberOfTrailingZeros(bits);
+                    heap.offer(distances[lane], i + lane);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        // Coda scalare per i campioni che non riempiono un vettore
+        for (; i < size; i++) {
+            double somma = 0.0;
+            for (int d = 0; d < columns.length; d++) {
+                double diff = columns[d][i] - query[d];
+                somma = diff * diff + somma;
+            }
+            heap.offer(somma, i);
+        }
+    }
+
+    @Override
+    public int labelOf(int index) {
+        return labels[index];
+    }
+
+    @Override
+    public Dataset getTrainingData() {
+        return trainingData;
+    }
+}
@@ -0,0 +1,41 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.model.Label;
+
+/**
+ * Conteggio dei voti dei vicini, condiviso dalle implementazioni di {@link Classifier}.
+ */
+final class Votes {
+
+    /** Numero di classi possibili */
+    private static final int NUM_CLASSES = Label.values().length;
+
+    private Votes() {
+    }
+
+    /**
+     * Seleziona la classe con il maggior numero di occorrenze tra i vicini presenti nell'heap.
+     * A parità di voti prevale la classe con codice minore. Non alloca memoria.
+     *
+     * @param classifier classificatore che ha prodotto i vicini
+     * @param heap heap contenente i vicini trovati
+     * @return codice della classe più votata
+     */
+    static int majority(Classifier classifier, NeighborHeap heap) {
+        int maxCount = -1;
+        int predictedClass = -1;
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            int count = 0;
+            for (int i = 0; i < heap.size(); i++) {
+                if (classifier.labelOf(heap.index(i)) == c) {
+                    count++;
+                }
+            }
+            if (count > maxCount) {
+                maxCount = count;
+                predictedClass = c;
+            }
+        }
+        return predictedClass;
+    }
+}
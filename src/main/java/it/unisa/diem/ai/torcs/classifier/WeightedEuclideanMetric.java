@@ -0,0 +1,43 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import java.util.Arrays;
+
+/**
+ * Distanza euclidea pesata: ogni feature contribuisce con {@code peso * diff²}.
+ * Utile per dare più importanza, ad esempio, ai sensori di bordo pista frontali.
+ */
+public class WeightedEuclideanMetric implements DistanceMetric {
+
+    /** Pesi per ciascuna feature, nell'ordine di {@link it.unisa.diem.ai.torcs.model.SensorFeature} */
+    private final double[] weights;
+
+    /**
+     * @param weights pesi per ciascuna feature (copiati)
+     * @throws IllegalArgumentException se un peso è negativo o non finito
+     */
+    public WeightedEuclideanMetric(double[] weights) {
+        for (double w : weights) {
+            if (!(w >= 0) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException("I pesi devono essere finiti e non negativi: " + Arrays.toString(weights));
+            }
+        }
+        this.weights = weights.clone();
+    }
+
+    @Override
+    public double accumulate(double partial, double diff, int axis) {
+        return partial + weights[axis] * diff * diff;
+    }
+
+    @Override
+    public double toDistance(double reduced) {
+        return Math.sqrt(reduced);
+    }
+
+    /**
+     * @return copia dei pesi usati dalla metrica
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+}
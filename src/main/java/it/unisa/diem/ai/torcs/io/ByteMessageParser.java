@@ -0,0 +1,354 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.nio.charset.StandardCharsets;
+
+import it.unisa.diem.ai.torcs.model.SensorReading;
+import it.unisa.diem.ai.torcs.model.SensorReadings;
+
+/**
+ * Parser dei messaggi del server TORCS che lavora direttamente sui byte ricevuti.
+ * <p>
+ * Produce gli stessi valori di {@link MessageParser}, ma senza creare stringhe né oggetti
+ * intermedi: i nomi delle letture vengono riconosciuti confrontando i byte con quelli di
+ * {@link SensorReading} e i numeri sono convertiti da un parser ASCII dedicato. I valori
+ * finiscono negli slot primitivi di un {@link SensorReadings} riutilizzato dal chiamante.
+ * Le letture con nome sconosciuto vengono ignorate.
+ * <p>
+ * La conversione dei numeri segue l'algoritmo "fast path" di Clinger: se la mantissa ha al
+ * più 15 cifre significative e l'esponente decimale è al più 22 in valore assoluto, mantissa
+ * e potenza di dieci sono rappresentabili esattamente e una sola moltiplicazione o divisione
+ * dà il risultato correttamente arrotondato. Negli altri casi (rari nei messaggi di TORCS) si
+ * ricorre a {@link Double#parseDouble(String)}, così che il risultato coincida sempre.
+ */
+public final class ByteMessageParser {
+
+	/** Numero massimo di cifre significative gestite dal percorso veloce */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	/** Potenze di dieci rappresentabili esattamente in un double */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private ByteMessageParser() {
+	}
+
+	/**
+	 * Esegue il parsing di un messaggio e ne scrive le letture in {@code into}.
+	 * Il messaggio viene suddiviso come in {@link MessageParser}: gruppi separati da
+	 * {@code '('}, troncati alla prima {@code ')'}, con nome e valori separati da spazi.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte del messaggio
+	 * @param length numero di byte del messaggio
+	 * @param into struttura da riempire (viene prima azzerata)
+	 * @return la stessa struttura {@code into}
+	 */
+	public static SensorReadings parse(byte[] data, int offset, int length, SensorReadings into) {
+		into.reset(data, offset, length);
+		int end = offset + length;
+		int pos = offset;
+		while (pos < end) {
+			if (data[pos] == '(') {
+				pos++;
+				continue;
+			}
+			// La lettura termina alla prima ')' (se non è il primo carattere) ...
+			int readingEnd = pos + 1;
+			while (readingEnd < end && data[readingEnd] != ')' && data[readingEnd] != '(') {
+				readingEnd++;
+			}
+			// ... mentre il gruppo si estende fino alla prossima '('
+			int groupEnd = readingEnd;
+			while (groupEnd < end && data[groupEnd] != '(') {
+				groupEnd++;
+			}
+			if (data[pos] == ')') {
+				readingEnd = groupEnd; // ')' in prima posizione: MessageParser non tronca la lettura
+			}
+			parseReading(data, pos, readingEnd, into);
+			pos = groupEnd;
+		}
+		return into;
+	}
+
+	/**
+	 * Indicizza un messaggio senza convertirne i valori: per ogni lettura nota e valida registra
+	 * la posizione del gruppo {@code nome valore ...} corrispondente, che potrà essere decodificato
+	 * in seguito con {@link #parseReading}. Se una lettura compare più volte vale l'ultima, come in
+	 * {@link MessageParser}.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte del messaggio
+	 * @param length numero di byte del messaggio
+	 * @param starts inizio di ogni lettura, indicizzato per ordinale di {@link SensorReading}
+	 * @param ends fine (esclusa) di ogni lettura, indicizzata per ordinale di {@link SensorReading}
+	 * @return maschera delle letture trovate (un bit per ordinale)
+	 */
+	public static int index(byte[] data, int offset, int length, int[] starts, int[] ends) {
+		int found = 0;
+		int end = offset + length;
+		int pos = offset;
+		while (pos < end) {
+			if (data[pos] == '(') {
+				pos++;
+				continue;
+			}
+			int readingEnd = pos + 1;
+			while (readingEnd < end && data[readingEnd] != ')' && data[readingEnd] != '(') {
+				readingEnd++;
+			}
+			int groupEnd = readingEnd;
+			while (groupEnd < end && data[groupEnd] != '(') {
+				groupEnd++;
+			}
+			if (data[pos] == ')') {
+				readingEnd = groupEnd;
+			}
+
+			int nameStart = skipSpaces(data, pos, readingEnd);
+			int nameEnd = skipToken(data, nameStart, readingEnd);
+			if (nameStart < readingEnd && skipSpaces(data, nameEnd, readingEnd) < readingEnd) {
+				SensorReading reading = SensorReading.match(data, nameStart, nameEnd);
+				if (reading != null) {
+					starts[reading.ordinal()] = pos;
+					ends[reading.ordinal()] = readingEnd;
+					found |= 1 << reading.ordinal();
+				}
+			}
+			pos = groupEnd;
+		}
+		return found;
+	}
+
+	/**
+	 * Esegue il parsing di un messaggio contenuto interamente in un array.
+	 *
+	 * @param data messaggio ricevuto
+	 * @param into struttura da riempire
+	 * @return la stessa struttura {@code into}
+	 * @see #parse(byte[], int, int, SensorReadings)
+	 */
+	public static SensorReadings parse(byte[] data, SensorReadings into) {
+		return parse(data, 0, data.length, into);
+	}
+
+	/**
+	 * Interpreta una singola lettura {@code nome valore ...} e la scrive nello slot corrispondente.
+	 * Letture con meno di due token o con nome sconosciuto vengono ignorate.
+	 *
+	 * @param data buffer del messaggio
+	 * @param from inizio della lettura
+	 * @param to fine della lettura (esclusa)
+	 * @param into struttura da riempire
+	 */
+	public static void parseReading(byte[] data, int from, int to, SensorReadings into) {
+		int nameStart = skipSpaces(data, from, to);
+		int nameEnd = skipToken(data, nameStart, to);
+		int valueStart = skipSpaces(data, nameEnd, to);
+		if (nameStart == to || valueStart == to) {
+			return; // meno di due token: lettura non valida (ignorata)
+		}
+		SensorReading reading = SensorReading.match(data, nameStart, nameEnd);
+		if (reading == null) {
+			return;
+		}
+
+		if (!reading.isArray()) {
+			into.set(reading, parseValue(data, valueStart, skipToken(data, valueStart, to), reading, into));
+			return;
+		}
+
+		int count = 0;
+		for (int p = valueStart; p < to; p = skipSpaces(data, skipToken(data, p, to), to)) {
+			count++;
+		}
+		double[] values = into.slot(reading, count);
+		int i = 0;
+		for (int p = valueStart; p < to; ) {
+			int tokenEnd = skipToken(data, p, to);
+			values[i++] = parseValue(data, p, tokenEnd, reading, into);
+			p = skipSpaces(data, tokenEnd, to);
+		}
+	}
+
+	/**
+	 * Converte un valore numerico; in caso di errore segnala il problema come {@link MessageParser} e usa 0.
+	 */
+	private static double parseValue(byte[] data, int from, int to, SensorReading reading, SensorReadings into) {
+		try {
+			return parseDouble(data, from, to);
+		} catch (NumberFormatException e) {
+			String token = new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+			System.out.println("Error parsing value '" + token + "' for " + reading.getKey() + " using 0.0");
+			System.out.println("Message: " + into.getMessage());
+			return 0.0;
+		}
+	}
+
+	/**
+	 * Verifica se un messaggio contiene una sequenza di byte, ad esempio i messaggi di controllo
+	 * {@code ***identified***}, {@code ***restart***} o {@code ***shutdown***}.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte del messaggio
+	 * @param length numero di byte del messaggio
+	 * @param pattern sequenza da cercare
+	 * @return {@code true} se la sequenza compare nel messaggio
+	 */
+	public static boolean contains(byte[] data, int offset, int length, byte[] pattern) {
+		return indexOf(data, offset, length, pattern) >= 0;
+	}
+
+	/**
+	 * Cerca la prima occorrenza di una sequenza di byte.
+	 *
+	 * @param data buffer in cui cercare
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte in cui cercare
+	 * @param pattern sequenza cercata
+	 * @return posizione della prima occorrenza nel buffer, oppure -1 se assente
+	 */
+	public static int indexOf(byte[] data, int offset, int length, byte[] pattern) {
+		int last = offset + length - pattern.length;
+		for (int i = offset; i <= last; i++) {
+			int j = 0;
+			while (j < pattern.length && data[i + j] == pattern[j]) {
+				j++;
+			}
+			if (j == pattern.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Converte in {@code double} un numero decimale codificato in ASCII, con lo stesso
+	 * risultato di {@link Double#parseDouble(String)}.
+	 *
+	 * @param data buffer contenente il numero
+	 * @param from posizione del primo carattere
+	 * @param to posizione successiva all'ultimo carattere
+	 * @return valore convertito
+	 * @throws NumberFormatException se il testo non è un numero valido
+	 */
+	public static double parseDouble(byte[] data, int from, int to) {
+		return parseDouble(data, from, to, false);
+	}
+
+	/**
+	 * Converte in {@code double} un numero decimale codificato in ASCII che può usare come
+	 * separatore decimale sia {@code '.'} sia {@code ','} (come i CSV scritti con
+	 * {@code Locale.ITALY}). Il risultato coincide con
+	 * {@code Double.parseDouble(testo.replace(',', '.'))}.
+	 *
+	 * @param data buffer contenente il numero
+	 * @param from posizione del primo carattere
+	 * @param to posizione successiva all'ultimo carattere
+	 * @return valore convertito
+	 * @throws NumberFormatException se il testo non è un numero valido
+	 */
+	public static double parseDecimal(byte[] data, int from, int to) {
+		return parseDouble(data, from, to, true);
+	}
+
+	private static double parseDouble(byte[] data, int from, int to, boolean comma) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (data[i] == '-' || data[i] == '+')) {
+			negative = data[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+
+		while (i < to && data[i] >= '0' && data[i] <= '9') {
+			int d = data[i++] - '0';
+			anyDigit = true;
+			if (mantissa == 0 && d == 0) continue;
+			if (++digits > MAX_FAST_DIGITS) return parseSlow(data, from, to, comma);
+			mantissa = mantissa * 10 + d;
+		}
+		if (i < to && (data[i] == '.' || (comma && data[i] == ','))) {
+			i++;
+			while (i < to && data[i] >= '0' && data[i] <= '9') {
+				int d = data[i++] - '0';
+				anyDigit = true;
+				exponent--;
+				if (mantissa == 0 && d == 0) continue;
+				if (++digits > MAX_FAST_DIGITS) return parseSlow(data, from, to, comma);
+				mantissa = mantissa * 10 + d;
+			}
+		}
+		if (!anyDigit) {
+			return parseSlow(data, from, to, comma);
+		}
+		if (i < to && (data[i] == 'e' || data[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (data[i] == '-' || data[i] == '+')) {
+				negativeExponent = data[i] == '-';
+				i++;
+			}
+			int start = i;
+			int value = 0;
+			while (i < to && data[i] >= '0' && data[i] <= '9' && value < 1000) {
+				value = value * 10 + (data[i++] - '0');
+			}
+			if (i == start) {
+				return parseSlow(data, from, to, comma);
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != to) {
+			return parseSlow(data, from, to, comma);
+		}
+
+		double result;
+		if (mantissa == 0) {
+			result = 0.0;
+		} else if (exponent == 0) {
+			result = mantissa;
+		} else if (exponent < 0 && exponent >= -22) {
+			result = mantissa / POWERS_OF_TEN[-exponent];
+		} else if (exponent > 0 && exponent <= 22) {
+			result = mantissa * POWERS_OF_TEN[exponent];
+		} else {
+			return parseSlow(data, from, to, comma);
+		}
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Percorso lento: delega a {@link Double#parseDouble(String)}.
+	 */
+	private static double parseSlow(byte[] data, int from, int to, boolean comma) {
+		String text = new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+		return Double.parseDouble(comma ? text.replace(',', '.') : text);
+	}
+
+	/**
+	 * @return prima posizione in {@code [from, to)} che non contiene uno spazio, oppure {@code to}
+	 */
+	private static int skipSpaces(byte[] data, int from, int to) {
+		while (from < to && data[from] == ' ') {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * @return prima posizione in {@code [from, to)} che contiene uno spazio, oppure {@code to}
+	 */
+	private static int skipToken(byte[] data, int from, int to) {
+		while (from < to && data[from] != ' ') {
+			from++;
+		}
+		return from;
+	}
+}
@@ -0,0 +1,121 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Legge un file di cattura scritto da {@link CaptureWriter}, un record alla volta.
+ * <p>
+ * Il file viene caricato interamente in memoria: i messaggi restano nel buffer letto dal disco
+ * e vengono esposti come intervalli di {@link #data()}, senza copie, così che la rilettura non
+ * pesi sulle misure di chi la usa.
+ */
+public class CaptureReader {
+
+	private final byte[] data;
+	private final long startMillis;   // Istante di inizio della cattura (millisecondi epoch)
+	private int position;             // Posizione del prossimo record
+
+	private byte type;
+	private long timestampNanos;
+	private int offset;
+	private int length;
+
+	/**
+	 * Carica un file di cattura e ne verifica l'intestazione.
+	 *
+	 * @param path file di cattura
+	 * @throws IOException se il file non è leggibile o non è una cattura
+	 */
+	public CaptureReader(Path path) throws IOException {
+		data = Files.readAllBytes(path);
+		int headerSize = CaptureWriter.MAGIC.length + Integer.BYTES + Long.BYTES;
+		if (data.length < headerSize
+				|| !Arrays.equals(data, 0, CaptureWriter.MAGIC.length, CaptureWriter.MAGIC, 0, CaptureWriter.MAGIC.length)) {
+			throw new IOException(path + " non è un file di cattura");
+		}
+		ByteBuffer header = ByteBuffer.wrap(data, CaptureWriter.MAGIC.length, Integer.BYTES + Long.BYTES);
+		int version = header.getInt();
+		if (version != CaptureWriter.VERSION) {
+			throw new IOException("Versione del file di cattura non supportata: " + version);
+		}
+		startMillis = header.getLong();
+		position = headerSize;
+	}
+
+	/**
+	 * Passa al record successivo. Un record troncato (cattura interrotta) chiude la lettura.
+	 *
+	 * @return false se non ci sono altri record completi
+	 */
+	public boolean next() {
+		if (position >= data.length) {
+			return false;
+		}
+		int pos = position;
+		byte recordType = data[pos++];
+		long delta = 0;
+		int shift = 0;
+		long value;
+		do {
+			if (pos >= data.length) {
+				return false;
+			}
+			value = data[pos++];
+			delta |= (value & 0x7F) << shift;
+			shift += 7;
+		} while ((value & 0x80) != 0);
+		int recordLength = 0;
+		shift = 0;
+		do {
+			if (pos >= data.length) {
+				return false;
+			}
+			value = data[pos++];
+			recordLength |= (int) (value & 0x7F) << shift;
+			shift += 7;
+		} while ((value & 0x80) != 0);
+		if (recordLength < 0 || recordLength > data.length - pos) {
+			return false;
+		}
+		type = recordType;
+		timestampNanos += delta;
+		offset = pos;
+		length = recordLength;
+		position = pos + recordLength;
+		return true;
+	}
+
+	/** @return tipo del record corrente ({@link CaptureWriter#RECEIVED} o {@link CaptureWriter#SENT}) */
+	public byte type() {
+		return type;
+	}
+
+	/** @return nanosecondi trascorsi dall'inizio della cattura al record corrente */
+	public long timestampNanos() {
+		return timestampNanos;
+	}
+
+	/** @return buffer contenente il messaggio corrente, a partire da {@link #offset()} */
+	public byte[] data() {
+		return data;
+	}
+
+	/** @return posizione del messaggio corrente in {@link #data()} */
+	public int offset() {
+		return offset;
+	}
+
+	/** @return numero di byte del messaggio corrente */
+	public int length() {
+		return length;
+	}
+
+	/** @return istante di inizio della cattura (millisecondi epoch) */
+	public long getStartMillis() {
+		return startMillis;
+	}
+}
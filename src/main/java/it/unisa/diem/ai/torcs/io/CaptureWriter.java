@@ -0,0 +1,146 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scrive il traffico UDP di una sessione in un file binario compatto, da rileggere con
+ * {@link CaptureReader} (ad esempio per {@code ReplayBenchmark}).
+ * <p>
+ * Il file inizia con un'intestazione ({@link #MAGIC}, versione del formato come {@code int},
+ * istante di inizio in millisecondi epoch come {@code long}) seguita da un record per
+ * messaggio: tipo ({@link #RECEIVED} o {@link #SENT}), nanosecondi trascorsi dal record
+ * precedente e lunghezza del messaggio (entrambi come varint senza segno) e infine i byte del
+ * messaggio così come sono passati sul socket. I record vengono accumulati in un buffer e
+ * scritti a blocchi, quindi registrare un passo costa solo una copia in memoria.
+ * <p>
+ * Non è thread-safe: va usato dal solo thread che gestisce il canale.
+ */
+public class CaptureWriter implements Closeable {
+
+	/** Identificativo del formato all'inizio del file */
+	static final byte[] MAGIC = "TORCSCAP".getBytes(StandardCharsets.US_ASCII);
+
+	/** Versione del formato */
+	static final int VERSION = 1;
+
+	/** Tipo di record: messaggio ricevuto dal server */
+	public static final byte RECEIVED = 0;
+
+	/** Tipo di record: messaggio inviato al server */
+	public static final byte SENT = 1;
+
+	/** Dimensione del buffer di scrittura */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Spazio massimo occupato da tipo, tempo e lunghezza di un record */
+	private static final int RECORD_HEADER_SIZE = 1 + 10 + 5;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final byte[] array = buffer.array();
+	private int position;                 // Byte occupati nel buffer
+	private long lastNanos;               // Istante del record precedente (System.nanoTime)
+
+	/**
+	 * Crea (o sovrascrive) il file di cattura e ne scrive l'intestazione.
+	 *
+	 * @param path file di destinazione
+	 * @throws IOException se il file non può essere creato
+	 */
+	public CaptureWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.put(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+		position = buffer.position();
+		lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Registra un messaggio ricevuto dal server.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte del messaggio
+	 * @throws IOException se il file non è scrivibile
+	 */
+	public void received(byte[] data, int offset, int length) throws IOException {
+		record(RECEIVED, data, offset, length);
+	}
+
+	/**
+	 * Registra un messaggio inviato al server.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte del messaggio
+	 * @throws IOException se il file non è scrivibile
+	 */
+	public void sent(byte[] data, int offset, int length) throws IOException {
+		record(SENT, data, offset, length);
+	}
+
+	private void record(byte type, byte[] data, int offset, int length) throws IOException {
+		long now = System.nanoTime();
+		if (position + RECORD_HEADER_SIZE > BUFFER_SIZE) {
+			flush();
+		}
+		array[position++] = type;
+		position = writeVarint(now - lastNanos, position);
+		position = writeVarint(length, position);
+		lastNanos = now;
+
+		// I messaggi più lunghi dello spazio libero vengono spezzati su più scritture
+		while (length > 0) {
+			if (position == BUFFER_SIZE) {
+				flush();
+			}
+			int chunk = Math.min(length, BUFFER_SIZE - position);
+			System.arraycopy(data, offset, array, position, chunk);
+			position += chunk;
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	private int writeVarint(long value, int pos) {
+		while ((value & ~0x7FL) != 0) {
+			array[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		array[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * Scrive sul file i record accumulati nel buffer.
+	 *
+	 * @throws IOException se il file non è scrivibile
+	 */
+	public void flush() throws IOException {
+		buffer.clear().limit(position);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		position = 0;
+	}
+
+	/**
+	 * Scrive i record rimasti e chiude il file.
+	 *
+	 * @throws IOException se il file non è scrivibile
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
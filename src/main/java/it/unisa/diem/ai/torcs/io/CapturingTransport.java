@@ -0,0 +1,106 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Canale che registra tutto il traffico di un altro {@link Transport} in un file di cattura
+ * ({@link CaptureWriter}): ogni messaggio ricevuto e ogni messaggio inviato, con il relativo
+ * istante in nanosecondi.
+ * <p>
+ * Funziona con qualunque canale ({@link SocketHandler} o {@link NioSocketHandler}); se il file
+ * non è scrivibile la cattura viene interrotta e la guida prosegue normalmente.
+ */
+public class CapturingTransport implements Transport {
+
+	private final Transport delegate;  // Canale effettivo verso il server
+	private CaptureWriter writer;      // File di cattura, null se la cattura è interrotta
+
+	/**
+	 * Costruttore.
+	 *
+	 * @param delegate canale da registrare
+	 * @param path file di cattura (viene sovrascritto)
+	 */
+	public CapturingTransport(Transport delegate, Path path) {
+		this.delegate = delegate;
+		try {
+			writer = new CaptureWriter(path);
+		} catch (IOException e) {
+			System.out.println("Cannot create capture file " + path + ": " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void send(String msg) {
+		delegate.send(msg);
+		if (writer != null) {
+			try {
+				byte[] bytes = msg.getBytes(StandardCharsets.US_ASCII);
+				writer.sent(bytes, 0, bytes.length);
+			} catch (IOException e) {
+				stop(e);
+			}
+		}
+	}
+
+	@Override
+	public void send(byte[] msg, int offset, int length) {
+		delegate.send(msg, offset, length);
+		if (writer != null) {
+			try {
+				writer.sent(msg, offset, length);
+			} catch (IOException e) {
+				stop(e);
+			}
+		}
+	}
+
+	@Override
+	public int read(int timeout) {
+		int length = delegate.read(timeout);
+		if (length >= 0 && writer != null) {
+			try {
+				writer.received(delegate.data(), 0, length);
+			} catch (IOException e) {
+				stop(e);
+			}
+		}
+		return length;
+	}
+
+	@Override
+	public byte[] data() {
+		return delegate.data();
+	}
+
+	/**
+	 * Chiude il canale e il file di cattura.
+	 */
+	@Override
+	public void close() {
+		delegate.close();
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			writer = null;
+		}
+	}
+
+	/**
+	 * Interrompe la cattura dopo un errore di scrittura.
+	 */
+	private void stop(IOException e) {
+		System.out.println("Capture stopped: " + e.getMessage());
+		try {
+			writer.close();
+		} catch (IOException ignored) {
+			// Il file è già inutilizzabile
+		}
+		writer = null;
+	}
+}
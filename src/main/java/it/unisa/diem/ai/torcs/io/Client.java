@@ -12,29 +12,41 @@
  * - maxSteps:N -> numero massimo di step per episodio (default 0 = illimitati)
  * - stage:N -> stadio (0 = WARMUP, 1 = QUALIFYING, 2 = RACE, altri = UNKNOWN)
  * - trackName:nome -> nome della pista
+ * - transport:socket|nio -> trasporto UDP (default socket; nio usa un DatagramChannel con buffer riutilizzati)
+ * - deadline:N -> scadenza per tick in ms del controller (default 0 = nessuna, vedi DeadlineController)
+ * - fallback:heuristic|last -> azione inviata se il controller sfora la scadenza (default heuristic)
+ * - capture:file -> registra il traffico UDP in un file binario (vedi CaptureWriter e ReplayBenchmark)
+ * - timing:on|off -> misura i tempi delle fasi di ogni tick e ne stampa i percentili (default on, vedi TickProfiler)
  *
  * @author Daniele Loiacono
  */
 package it.unisa.diem.ai.torcs.io;
 
+import java.nio.file.Path;
 import java.util.StringTokenizer;
 
 import it.unisa.diem.ai.torcs.agent.Controller;
 import it.unisa.diem.ai.torcs.agent.Controller.Stage;
-import it.unisa.diem.ai.torcs.model.Action;
-import it.unisa.diem.ai.torcs.model.MessageBasedSensorModel;
+import it.unisa.diem.ai.torcs.agent.DeadlineController;
+import it.unisa.diem.ai.torcs.agent.DeadlineController.Fallback;
+import it.unisa.diem.ai.torcs.utils.metrics.TickProfiler;
 
 public class Client {
 
-	private static int UDP_TIMEOUT = 10000;
-	private static int port;
-	private static String host;
-	private static String clientId;
-	private static boolean verbose;
-	private static int maxEpisodes;
-	private static int maxSteps;
-	private static Stage stage;
-	private static String trackName;
+	// Opzioni lette da parseParameters (condivise con MultiClient)
+	static int port;
+	static String host;
+	static String clientId;
+	static boolean verbose;
+	static int maxEpisodes;
+	static int maxSteps;
+	static Stage stage;
+	static String trackName;
+	static boolean nio;
+	static int deadline;
+	static Fallback fallback;
+	static String capture;
+	static boolean timing;
 
 	/**
 	 * Metodo principale che avvia la simulazione.
@@ -45,84 +57,48 @@ public class Client {
 
 		parseParameters(args); // Analizza i parametri della riga di comando
 
-		SocketHandler mySocket = new SocketHandler(host, port, verbose);
-		String inMsg;
+		Transport mySocket = openTransport(port, capture);
 
 		Controller driver = load(args[0]); // Carica dinamicamente il controller
 		driver.setStage(stage);
 		driver.setTrackName(trackName);
 
-		// Costruisce la stringa di inizializzazione (angoli radar)
-		float[] angles = driver.initAngles();
-		String initStr = clientId + "(init";
-		for (int i = 0; i < angles.length; i++) {
-			initStr = initStr + " " + angles[i];
-		}
-		initStr = initStr + ")";
-
-		long curEpisode = 0;
-		boolean shutdownOccurred = false;
-
-		do {
-			// Fase di identificazione con il server TORCS
-			do {
-				mySocket.send(initStr);
-				inMsg = mySocket.receive(UDP_TIMEOUT);
-			} while (inMsg == null || inMsg.indexOf("***identified***") < 0);
-
-			// Inizio dell'episodio di guida
-			long currStep = 0;
-			while (true) {
-				inMsg = mySocket.receive(UDP_TIMEOUT);
-
-				if (inMsg != null) {
-
-					// Verifica se la simulazione è terminata
-					if (inMsg.indexOf("***shutdown***") >= 0) {
-						shutdownOccurred = true;
-						System.out.println("Server shutdown!");
-						break;
-					}
-
-					// Verifica se la simulazione è stata riavviata
-					if (inMsg.indexOf("***restart***") >= 0) {
-						driver.reset();
-						if (verbose)
-							System.out.println("Server restarting!");
-						break;
-					}
-
-					Action action = new Action();
-
-					// Controllo dell'agente solo se non si è superato maxSteps
-					if (currStep < maxSteps || maxSteps == 0)
-						action = driver.control(new MessageBasedSensorModel(inMsg));
-					else
-						action.restartRace = true;
-
-					currStep++;
-					mySocket.send(action.toString());
-
-				} else {
-					System.out.println("Server did not respond within the timeout");
-				}
-			}
+		// Esegue gli episodi; al termine chiude controller e socket
+		new ClientSession(mySocket, driver, clientId, maxEpisodes, maxSteps, verbose, openProfiler(clientId, port)).run();
 
-		} while (++curEpisode < maxEpisodes && !shutdownOccurred);
-
-		// Chiusura del client e del controller
-		driver.shutdown();
-		mySocket.close();
 		System.out.println("Client shutdown.");
 		System.out.println("Bye, bye!");
 	}
 
+	/**
+	 * Apre il canale verso il server secondo l'opzione {@code transport}.
+	 *
+	 * @param port porta UDP del server
+	 * @param captureFile file in cui registrare il traffico, null per non registrarlo
+	 * @return canale verso il server
+	 */
+	static Transport openTransport(int port, String captureFile) {
+		Transport transport = nio ? new NioSocketHandler(host, port, verbose) : new SocketHandler(host, port, verbose);
+		return captureFile == null ? transport : new CapturingTransport(transport, Path.of(captureFile));
+	}
+
+	/**
+	 * Crea il profiler dei tempi delle fasi secondo l'opzione {@code timing}.
+	 *
+	 * @param id identificativo del client
+	 * @param port porta UDP del server
+	 * @return profiler dell'auto, oppure null se la misura è disattivata
+	 */
+	static TickProfiler openProfiler(String id, int port) {
+		return timing ? new TickProfiler(id + "@" + port) : null;
+	}
+
 	/**
 	 * Analizza i parametri passati da riga di comando e imposta le opzioni globali.
 	 *
 	 * @param args array di stringhe con i parametri in formato chiave:valore
 	 */
-	private static void parseParameters(String[] args) {
+	static void parseParameters(String[] args) {
 		port = 3001;
 		host = "localhost";
 		clientId = "SCR";
@@ -131,6 +107,11 @@ public class Client {
 		maxSteps = 0;
 		stage = Stage.UNKNOWN;
 		trackName = "unknown";
+		nio = false;
+		deadline = 0;
+		fallback = Fallback.HEURISTIC;
+		capture = null;
+		timing = true;
 
 		for (int i = 1; i < args.length; i++) {
 			StringTokenizer st = new StringTokenizer(args[i], ":");
@@ -156,6 +137,46 @@ public class Client {
 					System.exit(0);
 				}
 			}
+			if (entity.equals("transport")) {
+				if (value.equals("nio"))
+					nio = true;
+				else if (value.equals("socket"))
+					nio = false;
+				else {
+					System.out.println(entity + ":" + value + " is not a valid option");
+					System.exit(0);
+				}
+			}
+			if (entity.equals("deadline")) {
+				deadline = Integer.parseInt(value);
+				if (deadline < 0) {
+					System.out.println(entity + ":" + value + " is not a valid option");
+					System.exit(0);
+				}
+			}
+			if (entity.equals("fallback")) {
+				if (value.equals("heuristic"))
+					fallback = Fallback.HEURISTIC;
+				else if (value.equals("last"))
+					fallback = Fallback.LAST_ACTION;
+				else {
+					System.out.println(entity + ":" + value + " is not a valid option");
+					System.exit(0);
+				}
+			}
+			if (entity.equals("timing")) {
+				if (value.equals("on"))
+					timing = true;
+				else if (value.equals("off"))
+					timing = false;
+				else {
+					System.out.println(entity + ":" + value + " is not a valid option");
+					System.exit(0);
+				}
+			}
+			if (entity.equals("capture")) {
+				capture = value;
+			}
 			if (entity.equals("stage")) {
 				stage = Stage.fromInt(Integer.parseInt(value));
 			}
@@ -181,11 +202,12 @@ public class Client {
 
 	/**
 	 * Carica dinamicamente una classe Controller a partire dal nome fornito.
+	 * Con l'opzione {@code deadline} il controller viene eseguito entro la scadenza per tick.
 	 *
 	 * @param name nome della classe da caricare
 	 * @return un'istanza del controller
 	 */
-	private static Controller load(String name) {
+	static Controller load(String name) {
 		Controller controller = null;
 		try {
 			controller = (Controller) (Object) Class.forName(name).newInstance();
@@ -197,6 +219,9 @@ public class Client {
 		} catch (IllegalAccessException e) {
 			e.printStackTrace();
 		}
+		if (controller != null && deadline > 0) {
+			controller = new DeadlineController(controller, deadline, fallback);
+		}
 		return controller;
 	}
 }
@@ -0,0 +1,169 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.nio.charset.StandardCharsets;
+
+import it.unisa.diem.ai.torcs.agent.Controller;
+import it.unisa.diem.ai.torcs.model.Action;
+import it.unisa.diem.ai.torcs.model.LazySensorModel;
+import it.unisa.diem.ai.torcs.utils.metrics.PipelineStage;
+import it.unisa.diem.ai.torcs.utils.metrics.TickProfiler;
+
+/**
+ * Sessione di guida di una singola auto: identificazione presso il server TORCS, ciclo
+ * ricezione-controllo-invio per ogni episodio e chiusura finale di controller e canale.
+ * <p>
+ * Tutto lo stato della sessione (canale, controller, modello dei sensori) appartiene
+ * all'istanza, così che più sessioni possano girare in parallelo nello stesso processo
+ * (vedi {@link MultiClient}).
+ * <p>
+ * Con un {@link TickProfiler} la sessione misura i tempi di ricezione, preparazione dei
+ * sensori, {@code control()} e invio di ogni tick (il controller può aggiungere le proprie
+ * fasi) e ne stampa i percentili a fine episodio e alla chiusura.
+ */
+public class ClientSession implements Runnable {
+
+	private static final byte[] IDENTIFIED = "***identified***".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] SHUTDOWN = "***shutdown***".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RESTART = "***restart***".getBytes(StandardCharsets.US_ASCII);
+
+	/** Timeout di attesa dei messaggi del server (ms) */
+	static final int UDP_TIMEOUT = 10000;
+
+	private final Transport transport;   // Canale verso il server
+	private final Controller driver;     // Controller che guida l'auto
+	private final String clientId;       // Identificativo del client
+	private final int maxEpisodes;       // Numero massimo di episodi
+	private final int maxSteps;          // Numero massimo di step per episodio (0 = illimitati)
+	private final boolean verbose;       // Modalità verbose (log attivi)
+	private final TickProfiler profiler; // Tempi delle fasi del tick (null = non misurati)
+
+	/** Modello dei sensori riutilizzato a ogni passo: le letture vengono decodificate solo se richieste */
+	private final LazySensorModel sensors = new LazySensorModel();
+
+	/** Azione di riavvio riutilizzata quando si supera maxSteps */
+	private final Action restartAction = new Action();
+
+	/** Buffer in cui viene serializzata l'azione di ogni passo */
+	private final byte[] wire = new byte[Action.MAX_WIRE_LENGTH];
+
+	/**
+	 * Costruttore della sessione.
+	 *
+	 * @param transport canale verso il server dell'auto
+	 * @param driver controller dell'auto (già configurato con stage e pista)
+	 * @param clientId identificativo del client inviato nel messaggio di init
+	 * @param maxEpisodes numero massimo di episodi
+	 * @param maxSteps numero massimo di step per episodio (0 = illimitati)
+	 * @param verbose se true, stampa i log dettagliati
+	 * @param profiler profiler dei tempi delle fasi (passato anche al controller), null per non misurarli
+	 */
+	public ClientSession(Transport transport, Controller driver, String clientId, int maxEpisodes, int maxSteps,
+			boolean verbose, TickProfiler profiler) {
+		this.transport = transport;
+		this.driver = driver;
+		this.clientId = clientId;
+		this.maxEpisodes = maxEpisodes;
+		this.maxSteps = maxSteps;
+		this.verbose = verbose;
+		this.profiler = profiler;
+		driver.setProfiler(profiler);
+	}
+
+	/**
+	 * Costruisce la stringa di inizializzazione (angoli radar) del controller.
+	 *
+	 * @param clientId identificativo del client
+	 * @param driver controller dell'auto
+	 * @return messaggio di init
+	 */
+	static String initString(String clientId, Controller driver) {
+		float[] angles = driver.initAngles();
+		StringBuilder initStr = new StringBuilder(clientId).append("(init");
+		for (float angle : angles) {
+			initStr.append(' ').append(angle);
+		}
+		return initStr.append(')').toString();
+	}
+
+	/**
+	 * Esegue gli episodi di guida fino a {@code maxEpisodes} o allo shutdown del server,
+	 * poi chiude il controller e il canale.
+	 */
+	@Override
+	public void run() {
+		String initStr = initString(clientId, driver);
+		long curEpisode = 0;
+		boolean shutdownOccurred = false;
+		int length;
+
+		do {
+			// Fase di identificazione con il server TORCS
+			do {
+				transport.send(initStr);
+				length = transport.read(UDP_TIMEOUT);
+			} while (length < 0 || !ByteMessageParser.contains(transport.data(), 0, length, IDENTIFIED));
+
+			// Inizio dell'episodio di guida
+			long currStep = 0;
+			while (true) {
+				long mark = profiler != null ? System.nanoTime() : 0;
+				length = transport.read(UDP_TIMEOUT);
+
+				if (length >= 0) {
+					byte[] inMsg = transport.data();
+					long tickStart = mark;
+					if (profiler != null) tickStart = mark = profiler.record(PipelineStage.RECEIVE, mark);
+
+					// Verifica se la simulazione è terminata
+					if (ByteMessageParser.contains(inMsg, 0, length, SHUTDOWN)) {
+						shutdownOccurred = true;
+						System.out.println("Server shutdown!");
+						break;
+					}
+
+					// Verifica se la simulazione è stata riavviata
+					if (ByteMessageParser.contains(inMsg, 0, length, RESTART)) {
+						driver.reset();
+						if (verbose)
+							System.out.println("Server restarting!");
+						break;
+					}
+
+					Action action;
+
+					// Controllo dell'agente solo se non si è superato maxSteps
+					if (currStep < maxSteps || maxSteps == 0) {
+						LazySensorModel model = sensors.reset(inMsg, 0, length);
+						if (profiler != null) mark = profiler.record(PipelineStage.PARSE, mark);
+						action = driver.control(model);
+						if (profiler != null) mark = profiler.record(PipelineStage.CONTROL, mark);
+					} else {
+						restartAction.reset();
+						restartAction.restartRace = true;
+						action = restartAction;
+					}
+
+					currStep++;
+					transport.send(wire, 0, action.writeTo(wire, 0));
+					if (profiler != null) {
+						mark = profiler.record(PipelineStage.SEND, mark);
+						profiler.recordDuration(PipelineStage.TICK, mark - tickStart);
+					}
+
+				} else {
+					System.out.println("Server did not respond within the timeout");
+				}
+			}
+
+			if (profiler != null)
+				profiler.endEpisode(curEpisode);
+
+		} while (++curEpisode < maxEpisodes && !shutdownOccurred);
+
+		// Chiusura del controller e del canale
+		driver.shutdown();
+		transport.close();
+		if (profiler != null)
+			profiler.shutdown();
+	}
+}
@@ -0,0 +1,406 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.ai.torcs.agent.Controller;
+import it.unisa.diem.ai.torcs.model.Action;
+import it.unisa.diem.ai.torcs.model.LazySensorModel;
+import it.unisa.diem.ai.torcs.utils.logging.AsyncLogger;
+
+/**
+ * Client a ciclo di eventi: un solo thread e un solo {@link Selector} gestiscono i
+ * {@link DatagramChannel} di tutte le auto.
+ * <p>
+ * A ogni iterazione il selettore restituisce i canali con un messaggio pronto; per ciascuno il
+ * messaggio viene letto, decodificato ({@link LazySensorModel}) e passato al
+ * {@link Controller} dell'auto, e l'azione viene codificata nel buffer di invio dell'auto. Gli
+ * invii sono raccolti e scritti tutti insieme a fine iterazione. Con decine di simulatori sulla
+ * stessa macchina si evitano i cambi di contesto e gli stack di un thread per auto; in cambio i
+ * controller vengono eseguiti uno dopo l'altro, quindi il tempo di un'iterazione deve restare
+ * sotto il passo di simulazione.
+ * <p>
+ * Il protocollo per auto è quello di {@link ClientSession} (identificazione, episodi, restart e
+ * shutdown), gestito come macchina a stati. Al termine, e ogni {@link #REPORT_INTERVAL_MS} ms in
+ * modalità verbose, viene stampato il tempo per iterazione (esclusa l'attesa nel selettore).
+ * <p>
+ * Le opzioni capture, deadline e timing di {@link Client} non sono supportate: i controller
+ * vengono eseguiti direttamente sul thread del ciclo, senza registrazione del traffico né
+ * {@link it.unisa.diem.ai.torcs.utils.metrics.TickProfiler} per auto.
+ */
+public class EventLoopClient implements Runnable {
+
+	/** Intervallo tra due resoconti dei tempi in modalità verbose (ms) */
+	static final long REPORT_INTERVAL_MS = 10000;
+
+	/** Log asincrono dei messaggi in modalità verbose */
+	private static final AsyncLogger LOG = AsyncLogger.get("io.socket");
+
+	private static final byte[] IDENTIFIED = "***identified***".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] SHUTDOWN = "***shutdown***".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RESTART = "***restart***".getBytes(StandardCharsets.US_ASCII);
+
+	/** Stato del protocollo di un'auto */
+	private enum State {
+		IDENTIFYING, DRIVING, DONE
+	}
+
+	/**
+	 * Stato di un'auto: canale, buffer, controller e avanzamento degli episodi.
+	 */
+	private final class Car {
+		final String name;                 // Nome usato nei log (porta/id)
+		final DatagramChannel channel;     // Canale connesso al server dell'auto
+		final Controller driver;           // Controller che guida l'auto
+		final String initStr;              // Messaggio di identificazione
+		final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(NioSocketHandler.BUFFER_SIZE);
+		final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(NioSocketHandler.BUFFER_SIZE);
+		final byte[] data = new byte[NioSocketHandler.BUFFER_SIZE];
+		final LazySensorModel sensors = new LazySensorModel();
+		final Action restartAction = new Action();
+
+		State state = State.IDENTIFYING;
+		long curEpisode;
+		long currStep;
+		long lastReceive;                  // Istante dell'ultimo messaggio o invio dell'init (ns)
+		boolean pending;                   // true se il buffer di invio attende la scrittura
+
+		Car(String name, DatagramChannel channel, Controller driver, String clientId) {
+			this.name = name;
+			this.channel = channel;
+			this.driver = driver;
+			this.initStr = ClientSession.initString(clientId, driver);
+		}
+	}
+
+	private final Selector selector;
+	private final Car[] cars;
+	private final Car[] toSend;            // Auto con un invio in attesa nell'iterazione corrente
+	private int toSendCount;
+	private int active;                    // Auto non ancora terminate
+	private final int maxEpisodes;
+	private final int maxSteps;
+	private final boolean verbose;
+
+	// Statistiche delle iterazioni con almeno un messaggio
+	private long iterations;
+	private long messages;
+	private long totalNanos;
+	private long maxNanos;
+	private long windowIterations;
+	private long windowMessages;
+	private long windowNanos;
+	private long windowMaxNanos;
+
+	/**
+	 * Costruttore: apre e registra un canale per ogni auto.
+	 *
+	 * @param host indirizzo dei server TORCS
+	 * @param ports porta del server di ogni auto
+	 * @param clientIds identificativo di ogni auto
+	 * @param drivers controller di ogni auto (già configurati con stage e pista)
+	 * @param maxEpisodes numero massimo di episodi per auto
+	 * @param maxSteps numero massimo di step per episodio (0 = illimitati)
+	 * @param verbose se true, stampa i messaggi e i tempi periodici
+	 * @throws IOException se non è possibile aprire il selettore o un canale
+	 */
+	public EventLoopClient(String host, int[] ports, String[] clientIds, Controller[] drivers,
+			int maxEpisodes, int maxSteps, boolean verbose) throws IOException {
+		this.selector = Selector.open();
+		this.cars = new Car[ports.length];
+		this.toSend = new Car[ports.length];
+		this.maxEpisodes = maxEpisodes;
+		this.maxSteps = maxSteps;
+		this.verbose = verbose;
+		for (int i = 0; i < ports.length; i++) {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.connect(new InetSocketAddress(host, ports[i]));
+			Car car = new Car(ports[i] + "/" + clientIds[i], channel, drivers[i], clientIds[i]);
+			channel.register(selector, SelectionKey.OP_READ, car);
+			cars[i] = car;
+		}
+		this.active = cars.length;
+	}
+
+	/**
+	 * Crea il client per le auto indicate, con le opzioni di {@link Client}.
+	 *
+	 * @param cars auto da guidare
+	 * @param drivers controller delle auto, nello stesso ordine
+	 * @return client pronto per {@link #run()}
+	 * @throws IOException se non è possibile aprire il selettore o un canale
+	 */
+	static EventLoopClient of(List<MultiClient.Car> cars, Controller[] drivers) throws IOException {
+		int[] ports = new int[cars.size()];
+		String[] ids = new String[cars.size()];
+		for (int i = 0; i < ports.length; i++) {
+			ports[i] = cars.get(i).port();
+			ids[i] = cars.get(i).id();
+		}
+		return new EventLoopClient(Client.host, ports, ids, drivers, Client.maxEpisodes, Client.maxSteps, Client.verbose);
+	}
+
+	/**
+	 * Esegue il ciclo di eventi finché tutte le auto non hanno terminato, poi chiude controller,
+	 * canali e selettore.
+	 */
+	@Override
+	public void run() {
+		long now = System.nanoTime();
+		long nextReport = now + TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MS);
+		for (Car car : cars) {
+			sendInit(car, now);
+		}
+		flush();
+
+		try {
+			while (active > 0) {
+				selector.select(waitMillis(System.nanoTime()));
+
+				long start = System.nanoTime();
+				int ready = 0;
+				for (SelectionKey key : selector.selectedKeys()) {
+					if (receive((Car) key.attachment(), start)) {
+						ready++;
+					}
+				}
+				selector.selectedKeys().clear();
+				flush();
+				long end = System.nanoTime();
+
+				if (ready > 0) {
+					record(end - start, ready);
+				}
+				checkTimeouts(end);
+				if (verbose && end - nextReport >= 0) {
+					report("last " + REPORT_INTERVAL_MS / 1000 + " s", windowIterations, windowMessages, windowNanos, windowMaxNanos);
+					windowIterations = windowMessages = windowNanos = windowMaxNanos = 0;
+					nextReport = end + TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MS);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		report("total", iterations, messages, totalNanos, maxNanos);
+		for (Car car : cars) {
+			if (car.state != State.DONE) {
+				finish(car);
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Legge un messaggio dal canale di un'auto e lo gestisce secondo lo stato del protocollo.
+	 *
+	 * @param car auto con un messaggio pronto
+	 * @param now istante corrente (ns)
+	 * @return true se è stato letto un messaggio
+	 */
+	private boolean receive(Car car, long now) {
+		car.receiveBuffer.clear();
+		int length;
+		try {
+			length = car.channel.read(car.receiveBuffer);
+		} catch (PortUnreachableException e) {
+			return false; // server non ancora in ascolto: si attende il timeout e si ripete l'init
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		if (length <= 0) {
+			return false;
+		}
+		car.receiveBuffer.flip();
+		car.receiveBuffer.get(car.data, 0, length);
+		car.lastReceive = now;
+		if (verbose)
+			LOG.info("Received ", "(" + car.name + "): " + new String(car.data, 0, length, StandardCharsets.US_ASCII));
+
+		if (car.state == State.IDENTIFYING) {
+			if (ByteMessageParser.contains(car.data, 0, length, IDENTIFIED)) {
+				car.state = State.DRIVING;
+				car.currStep = 0;
+			} else {
+				sendInit(car, now);
+			}
+			return true;
+		}
+
+		// Verifica se la simulazione è terminata
+		if (ByteMessageParser.contains(car.data, 0, length, SHUTDOWN)) {
+			System.out.println("Server shutdown! (" + car.name + ")");
+			finish(car);
+			return true;
+		}
+
+		// Verifica se la simulazione è stata riavviata
+		if (ByteMessageParser.contains(car.data, 0, length, RESTART)) {
+			car.driver.reset();
+			if (verbose)
+				System.out.println("Server restarting! (" + car.name + ")");
+			if (++car.curEpisode < maxEpisodes) {
+				car.state = State.IDENTIFYING;
+				sendInit(car, now);
+			} else {
+				finish(car);
+			}
+			return true;
+		}
+
+		Action action;
+		if (car.currStep < maxSteps || maxSteps == 0) {
+			action = car.driver.control(car.sensors.reset(car.data, 0, length));
+		} else {
+			car.restartAction.reset();
+			car.restartAction.restartRace = true;
+			action = car.restartAction;
+		}
+		car.currStep++;
+		car.sendBuffer.clear();
+		action.writeTo(car.sendBuffer);
+		car.sendBuffer.flip();
+		if (verbose)
+			LOG.info("Sending ", "(" + car.name + "): " + StandardCharsets.US_ASCII.decode(car.sendBuffer.duplicate()));
+		markPending(car);
+		return true;
+	}
+
+	/**
+	 * Accoda il messaggio di identificazione di un'auto.
+	 */
+	private void sendInit(Car car, long now) {
+		car.lastReceive = now;
+		queue(car, car.initStr);
+	}
+
+	/**
+	 * Codifica un messaggio nel buffer di invio dell'auto; la scrittura avviene in {@link #flush()}.
+	 * Un messaggio non ancora scritto viene sostituito.
+	 */
+	private void queue(Car car, String msg) {
+		if (verbose)
+			LOG.info("Sending ", "(" + car.name + "): " + msg);
+		NioSocketHandler.encode(msg, car.sendBuffer);
+		markPending(car);
+	}
+
+	/**
+	 * Registra l'auto tra quelle da servire in {@link #flush()}.
+	 */
+	private void markPending(Car car) {
+		if (!car.pending) {
+			car.pending = true;
+			toSend[toSendCount++] = car;
+		}
+	}
+
+	/**
+	 * Scrive tutti gli invii accodati nell'iterazione.
+	 */
+	private void flush() {
+		for (int i = 0; i < toSendCount; i++) {
+			Car car = toSend[i];
+			toSend[i] = null;
+			car.pending = false;
+			if (car.state == State.DONE) {
+				continue;
+			}
+			try {
+				car.channel.write(car.sendBuffer);
+			} catch (PortUnreachableException e) {
+				// Errore ICMP di un invio precedente: il datagramma è comunque perso
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		toSendCount = 0;
+	}
+
+	/**
+	 * Gestisce le auto che non ricevono messaggi da più di {@link ClientSession#UDP_TIMEOUT} ms:
+	 * durante l'identificazione l'init viene ripetuto, durante la guida si segnala il ritardo
+	 * e si continua ad attendere, come in {@link ClientSession}.
+	 */
+	private void checkTimeouts(long now) {
+		long timeout = TimeUnit.MILLISECONDS.toNanos(ClientSession.UDP_TIMEOUT);
+		for (Car car : cars) {
+			if (car.state == State.DONE || now - car.lastReceive < timeout) {
+				continue;
+			}
+			if (car.state == State.IDENTIFYING) {
+				sendInit(car, now);
+			} else {
+				System.out.println("Server did not respond within the timeout (" + car.name + ")");
+				car.lastReceive = now;
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * @return attesa massima nel selettore (ms) fino al primo timeout di un'auto, almeno 1
+	 */
+	private long waitMillis(long now) {
+		long first = Long.MAX_VALUE;
+		for (Car car : cars) {
+			if (car.state != State.DONE) {
+				first = Math.min(first, car.lastReceive);
+			}
+		}
+		long remaining = first + TimeUnit.MILLISECONDS.toNanos(ClientSession.UDP_TIMEOUT) - now;
+		return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+	}
+
+	/**
+	 * Chiude il controller e il canale di un'auto.
+	 */
+	private void finish(Car car) {
+		car.state = State.DONE;
+		active--;
+		car.driver.shutdown();
+		try {
+			car.channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Aggiorna le statistiche con un'iterazione che ha gestito {@code ready} messaggi.
+	 */
+	private void record(long nanos, int ready) {
+		iterations++;
+		messages += ready;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+		windowIterations++;
+		windowMessages += ready;
+		windowNanos += nanos;
+		windowMaxNanos = Math.max(windowMaxNanos, nanos);
+	}
+
+	/**
+	 * Stampa il numero di iterazioni e messaggi e il tempo medio e massimo per iterazione.
+	 */
+	private static void report(String label, long iterations, long messages, long nanos, long max) {
+		double mean = iterations == 0 ? 0 : nanos / 1000.0 / iterations;
+		System.out.printf(Locale.US, "Event loop (%s): %d iterations, %d messages, mean %.1f us, max %.1f us%n",
+				label, iterations, messages, mean, max / 1000.0);
+	}
+}
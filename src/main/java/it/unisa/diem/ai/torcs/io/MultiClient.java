@@ -0,0 +1,192 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import it.unisa.diem.ai.torcs.agent.Controller;
+
+/**
+ * Client che guida più auto TORCS dallo stesso processo, una per server (porta).
+ * <p>
+ * Ogni auto ha il proprio controller e la propria {@link ClientSession}, eseguita in un
+ * thread virtuale: l'attesa dei messaggi non occupa un thread di piattaforma per auto. Lo
+ * stato di sola lettura dei controller (dataset e indici KNN, vedi
+ * {@link it.unisa.diem.ai.torcs.agent.AutonomousDriver}) viene caricato una sola volta e
+ * condiviso, quindi memoria e tempo di avvio crescono molto meno che con un processo per auto.
+ * <p>
+ * Accetta le stesse opzioni di {@link Client} (host, verbose, maxEpisodes, maxSteps, stage,
+ * trackName, transport, capture, timing), più:
+ * - cars:porta/id,porta/id,... -> auto da guidare (l'id è facoltativo, default quello dell'opzione id)
+ * - mode:threads|eventloop -> un thread virtuale per auto (default) oppure un solo thread con
+ *   un selettore condiviso da tutte le auto ({@link EventLoopClient}, usa sempre NIO)
+ * <p>
+ * Con l'opzione capture ogni auto registra il proprio traffico in un file distinto, con la
+ * porta aggiunta al nome (ad esempio {@code gara.bin} diventa {@code gara-3001.bin}); la
+ * registrazione è disponibile solo nella modalità threads.
+ * <p>
+ * Nella modalità eventloop anche le opzioni deadline e timing vengono ignorate, con un avviso:
+ * un {@link it.unisa.diem.ai.torcs.agent.DeadlineController} eseguirebbe ogni controller su un
+ * proprio thread di piattaforma, vanificando il thread unico, e al posto dei tempi per fase di
+ * {@link it.unisa.diem.ai.torcs.utils.metrics.TickProfiler} viene riportato il tempo per
+ * iterazione del ciclo di eventi.
+ * <p>
+ * Esempio: {@code MultiClient it.unisa.diem.ai.torcs.agent.AutonomousDriver cars:3001/SCR,3002/SCR,3003/SCR}
+ */
+public class MultiClient {
+
+	/**
+	 * Auto da guidare: porta del server e identificativo del client.
+	 *
+	 * @param port porta UDP del server
+	 * @param id identificativo del client
+	 */
+	record Car(int port, String id) {
+	}
+
+	/**
+	 * Metodo principale che avvia una sessione per ogni auto e attende che terminino tutte.
+	 *
+	 * @param args nome della classe del controller seguito dalle opzioni
+	 * @throws InterruptedException se il thread principale viene interrotto durante l'attesa
+	 * @throws IOException se in modalità eventloop non è possibile aprire i canali
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Client.parseParameters(args);
+		List<Car> cars = parseCars(args);
+		if (cars.isEmpty()) {
+			System.out.println("No cars specified (use cars:port/id,port/id,...)");
+			System.exit(0);
+		}
+
+		boolean eventLoop = parseEventLoop(args);
+		if (eventLoop) {
+			if (Client.capture != null) {
+				System.out.println("Capture is not supported in eventloop mode, ignoring capture:" + Client.capture);
+			}
+			if (Client.deadline > 0) {
+				System.out.println("Deadline is not supported in eventloop mode, ignoring deadline:" + Client.deadline);
+				// Senza scadenza Client.load non avvolge i controller in un DeadlineController
+				Client.deadline = 0;
+			}
+			if (hasOption(args, "timing:on")) {
+				System.out.println("Timing is not supported in eventloop mode, ignoring timing:on (per-iteration times are reported instead)");
+			}
+		}
+
+		// I controller vengono creati qui, in sequenza: il primo carica i modelli condivisi,
+		// gli altri li trovano già pronti
+		Controller[] drivers = new Controller[cars.size()];
+		for (int i = 0; i < drivers.length; i++) {
+			drivers[i] = Client.load(args[0]);
+			drivers[i].setStage(Client.stage);
+			drivers[i].setTrackName(Client.trackName);
+		}
+
+		if (eventLoop) {
+			EventLoopClient.of(cars, drivers).run();
+		} else {
+			List<Thread> threads = new ArrayList<>(cars.size());
+			for (int i = 0; i < drivers.length; i++) {
+				Car car = cars.get(i);
+				String captureFile = Client.capture == null ? null : captureFile(Client.capture, car.port());
+				ClientSession session = new ClientSession(Client.openTransport(car.port(), captureFile), drivers[i], car.id(),
+						Client.maxEpisodes, Client.maxSteps, Client.verbose, Client.openProfiler(car.id(), car.port()));
+				threads.add(Thread.ofVirtual().name("car-" + car.port()).start(session));
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		System.out.println("Client shutdown (" + cars.size() + " cars).");
+		System.out.println("Bye, bye!");
+	}
+
+	/**
+	 * Nome del file di cattura di un'auto: la porta viene inserita prima dell'estensione.
+	 *
+	 * @param capture valore dell'opzione {@code capture}
+	 * @param port porta del server dell'auto
+	 * @return file di cattura dell'auto
+	 */
+	static String captureFile(String capture, int port) {
+		int dot = capture.lastIndexOf('.');
+		int separator = Math.max(capture.lastIndexOf('/'), capture.lastIndexOf('\\'));
+		if (dot <= separator + 1) {
+			return capture + "-" + port;
+		}
+		return capture.substring(0, dot) + "-" + port + capture.substring(dot);
+	}
+
+	/**
+	 * Legge l'opzione {@code mode}.
+	 *
+	 * @param args argomenti da riga di comando
+	 * @return true se è richiesto il ciclo di eventi a thread singolo
+	 */
+	static boolean parseEventLoop(String[] args) {
+		boolean eventLoop = false;
+		for (int i = 1; i < args.length; i++) {
+			if (!args[i].startsWith("mode:")) {
+				continue;
+			}
+			String mode = args[i].substring("mode:".length());
+			if (mode.equals("eventloop")) {
+				eventLoop = true;
+			} else if (mode.equals("threads")) {
+				eventLoop = false;
+			} else {
+				System.out.println(args[i] + " is not a valid option");
+				System.exit(0);
+			}
+		}
+		return eventLoop;
+	}
+
+	/**
+	 * Indica se un'opzione è stata passata esplicitamente.
+	 *
+	 * @param args argomenti da riga di comando
+	 * @param option opzione completa di valore (ad esempio {@code timing:on})
+	 * @return true se l'opzione compare tra gli argomenti
+	 */
+	static boolean hasOption(String[] args, String option) {
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals(option)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Estrae l'elenco delle auto dall'opzione {@code cars}.
+	 *
+	 * @param args argomenti da riga di comando
+	 * @return auto da guidare, nell'ordine indicato
+	 */
+	static List<Car> parseCars(String[] args) {
+		List<Car> cars = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			if (!args[i].startsWith("cars:")) {
+				continue;
+			}
+			StringTokenizer st = new StringTokenizer(args[i].substring("cars:".length()), ",");
+			while (st.hasMoreTokens()) {
+				String entry = st.nextToken().trim();
+				int slash = entry.indexOf('/');
+				try {
+					int port = Integer.parseInt(slash < 0 ? entry : entry.substring(0, slash));
+					String id = slash < 0 ? Client.clientId : entry.substring(slash + 1);
+					cars.add(new Car(port, id));
+				} catch (NumberFormatException e) {
+					System.out.println("cars:" + entry + " is not a valid option");
+					System.exit(0);
+				}
+			}
+		}
+		return cars;
+	}
+}
@@ -0,0 +1,187 @@
+package it.unisa.diem.ai.torcs.io;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.ai.torcs.utils.logging.AsyncLogger;
+
+/**
+ * Gestore della comunicazione UDP con il simulatore TORCS basato su NIO.
+ * <p>
+ * Alternativa a {@link SocketHandler} pensata per il ciclo di controllo: usa un
+ * {@link DatagramChannel} connesso al server, un solo {@link ByteBuffer} diretto per la
+ * ricezione e uno per l'invio, riutilizzati a ogni passo, e gestisce i timeout con un
+ * {@link Selector} invece di modificare le opzioni del socket. A regime ogni passo costa
+ * una {@code select}, una {@code read} e una {@code write}, senza allocazioni.
+ * <p>
+ * Come con un socket non connesso, gli errori ICMP di porta irraggiungibile (server non
+ * ancora avviato) vengono ignorati e l'attesa prosegue fino al timeout.
+ */
+public class NioSocketHandler implements Transport {
+
+	/** Dimensione dei buffer di ricezione e invio (i messaggi di TORCS sono più corti) */
+	static final int BUFFER_SIZE = 8192;
+
+	/** Log asincrono dei messaggi in modalità verbose */
+	private static final AsyncLogger LOG = AsyncLogger.get("io.socket");
+
+	private DatagramChannel channel;  // Canale UDP connesso al server
+	private Selector selector;        // Selettore usato per attendere con timeout
+	private final boolean verbose;    // Modalità verbose (log attivi)
+
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // Buffer diretto di ricezione
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);    // Buffer diretto di invio
+	private final byte[] data = new byte[BUFFER_SIZE];                               // Copia dell'ultimo messaggio per il parser
+
+	/**
+	 * Costruttore del NioSocketHandler.
+	 *
+	 * @param host indirizzo del server TORCS (es. "localhost")
+	 * @param port porta UDP del server (default: 3001)
+	 * @param verbose se true, stampa tutti i messaggi inviati/ricevuti
+	 */
+	public NioSocketHandler(String host, int port, boolean verbose) {
+		this.verbose = verbose;
+		try {
+			channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.connect(new InetSocketAddress(host, port));
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Invia un messaggio stringa al server, codificandolo in ASCII nel buffer di invio.
+	 *
+	 * @param msg il messaggio da inviare
+	 */
+	@Override
+	public void send(String msg) {
+		if (verbose)
+			LOG.info("Sending: ", msg);
+		encode(msg, sendBuffer);
+		write();
+	}
+
+	/**
+	 * Codifica un messaggio in ASCII in un buffer, senza allocazioni; i caratteri non ASCII
+	 * diventano {@code '?'}. Al termine il buffer è pronto per la scrittura.
+	 *
+	 * @param msg messaggio da codificare
+	 * @param buffer buffer di destinazione (viene svuotato)
+	 */
+	static void encode(String msg, ByteBuffer buffer) {
+		buffer.clear();
+		int length = Math.min(msg.length(), buffer.capacity());
+		for (int i = 0; i < length; i++) {
+			char c = msg.charAt(i);
+			buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Invia un messaggio già codificato.
+	 *
+	 * @param msg buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte da inviare
+	 */
+	@Override
+	public void send(byte[] msg, int offset, int length) {
+		if (verbose)
+			LOG.info("Sending: ", new String(msg, offset, length, StandardCharsets.US_ASCII));
+		sendBuffer.clear();
+		sendBuffer.put(msg, offset, Math.min(length, sendBuffer.capacity()));
+		sendBuffer.flip();
+		write();
+	}
+
+	/**
+	 * Scrive il contenuto del buffer di invio sul canale.
+	 */
+	private void write() {
+		try {
+			channel.write(sendBuffer);
+		} catch (PortUnreachableException e) {
+			// Errore ICMP di un invio precedente: il datagramma è comunque perso, come con DatagramSocket
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Attende un messaggio dal server e lo copia in {@link #data()}.
+	 *
+	 * @param timeout durata massima dell'attesa (ms), 0 per attendere senza limite
+	 * @return numero di byte ricevuti, oppure -1 se scade il timeout
+	 */
+	@Override
+	public int read(int timeout) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		try {
+			while (true) {
+				long wait = 0;
+				if (timeout > 0) {
+					wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (wait <= 0) {
+						break;
+					}
+				}
+				if (selector.select(wait) == 0) {
+					continue; // timeout (ricontrollato in testa al ciclo) o risveglio spurio
+				}
+				selector.selectedKeys().clear();
+
+				receiveBuffer.clear();
+				int length;
+				try {
+					length = channel.read(receiveBuffer);
+				} catch (PortUnreachableException e) {
+					continue; // server non ancora in ascolto: si continua ad attendere
+				}
+				if (length > 0) {
+					receiveBuffer.flip();
+					receiveBuffer.get(data, 0, length);
+					if (verbose)
+						LOG.info("Received: ", new String(data, 0, length, StandardCharsets.US_ASCII));
+					return length;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+		if (verbose)
+			LOG.warn("Socket Timeout!", null);
+		return -1;
+	}
+
+	@Override
+	public byte[] data() {
+		return data;
+	}
+
+	/**
+	 * Chiude il canale e il selettore.
+	 */
+	@Override
+	public void close() {
+		try {
+			selector.close();
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -15,13 +15,23 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 
-public class SocketHandler {
+import it.unisa.diem.ai.torcs.utils.logging.AsyncLogger;
+
+public class SocketHandler implements Transport {
+
+	/** Log asincrono dei messaggi in modalità verbose: la stampa non rallenta il ciclo di controllo */
+	private static final AsyncLogger LOG = AsyncLogger.get("io.socket");
 
 	private InetAddress address;     // Indirizzo IP del server
 	private final int port;                // Porta UDP del server
 	private DatagramSocket socket;   // Socket UDP usato per comunicare
 	private final boolean verbose;         // Modalità verbose (log attivi)
 
+	private final byte[] readBuffer = new byte[8192];                                          // Buffer riutilizzato da read()
+	private final DatagramPacket readPacket = new DatagramPacket(readBuffer, readBuffer.length); // Pacchetto riutilizzato da read()
+	private int currentTimeout;      // Timeout attualmente impostato sul socket (ms)
+	private DatagramPacket sendPacket; // Pacchetto riutilizzato da send(byte[], int, int)
+
 	/**
 	 * Costruttore del SocketHandler.
 	 *
@@ -53,9 +63,10 @@ public class SocketHandler {
 	 *
 	 * @param msg il messaggio da inviare
 	 */
+	@Override
 	public void send(String msg) {
 		if (verbose)
-			System.out.println("Sending: " + msg);
+			LOG.info("Sending: ", msg);
 		try {
 			byte[] buffer = msg.getBytes();
 			socket.send(new DatagramPacket(buffer, buffer.length, address, port));
@@ -64,6 +75,29 @@ public class SocketHandler {
 		}
 	}
 
+	/**
+	 * Invia un messaggio già codificato riutilizzando lo stesso pacchetto.
+	 *
+	 * @param msg buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte da inviare
+	 */
+	@Override
+	public void send(byte[] msg, int offset, int length) {
+		if (verbose)
+			LOG.info("Sending: ", new String(msg, offset, length));
+		try {
+			if (sendPacket == null) {
+				sendPacket = new DatagramPacket(msg, offset, length, address, port);
+			} else {
+				sendPacket.setData(msg, offset, length);
+			}
+			socket.send(sendPacket);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Riceve un messaggio dal server (bloccante, senza timeout).
 	 *
@@ -76,11 +110,11 @@ public class SocketHandler {
 			socket.receive(packet);
 			String received = new String(packet.getData(), 0, packet.getLength());
 			if (verbose)
-				System.out.println("Received: " + received);
+				LOG.info("Received: ", received);
 			return received;
 		} catch (SocketTimeoutException se) {
 			if (verbose)
-				System.out.println("Socket Timeout!");
+				LOG.warn("Socket Timeout!", null);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -98,6 +132,7 @@ public class SocketHandler {
 			socket.setSoTimeout(timeout); // imposta timeout
 			String received = receive();  // chiama receive() normale
 			socket.setSoTimeout(0);       // resetta il timeout (bloccante)
+			currentTimeout = 0;
 			return received;
 		} catch (SocketException e) {
 			e.printStackTrace();
@@ -105,9 +140,43 @@ public class SocketHandler {
 		return null;
 	}
 
+	/**
+	 * Riceve un messaggio nel buffer riutilizzato, senza allocare pacchetti né stringhe.
+	 * Il timeout del socket viene modificato solo se diverso da quello della chiamata precedente.
+	 *
+	 * @param timeout durata massima dell'attesa (ms)
+	 * @return numero di byte ricevuti, oppure -1 se scade il timeout
+	 */
+	@Override
+	public int read(int timeout) {
+		try {
+			if (timeout != currentTimeout) {
+				socket.setSoTimeout(timeout);
+				currentTimeout = timeout;
+			}
+			readPacket.setLength(readBuffer.length);
+			socket.receive(readPacket);
+			if (verbose)
+				LOG.info("Received: ", new String(readBuffer, 0, readPacket.getLength()));
+			return readPacket.getLength();
+		} catch (SocketTimeoutException se) {
+			if (verbose)
+				LOG.warn("Socket Timeout!", null);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	@Override
+	public byte[] data() {
+		return readBuffer;
+	}
+
 	/**
 	 * Chiude il socket e termina la comunicazione.
 	 */
+	@Override
 	public void close() {
 		socket.close();
 	}
@@ -0,0 +1,47 @@
+package it.unisa.diem.ai.torcs.io;
+
+/**
+ * Canale di comunicazione con il server TORCS.
+ * <p>
+ * I messaggi ricevuti vengono esposti come byte grezzi, da passare direttamente al parser
+ * ({@link ByteMessageParser} o {@link it.unisa.diem.ai.torcs.model.LazySensorModel}) senza
+ * costruire stringhe. Il buffer restituito da {@link #data()} è riutilizzato e resta valido
+ * solo fino alla ricezione successiva.
+ */
+public interface Transport {
+
+	/**
+	 * Invia un messaggio al server.
+	 *
+	 * @param msg il messaggio da inviare
+	 */
+	void send(String msg);
+
+	/**
+	 * Invia un messaggio già codificato (ad esempio da
+	 * {@link it.unisa.diem.ai.torcs.model.Action#writeTo(byte[], int)}), senza costruire stringhe.
+	 *
+	 * @param msg buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte da inviare
+	 */
+	void send(byte[] msg, int offset, int length);
+
+	/**
+	 * Attende un messaggio dal server.
+	 *
+	 * @param timeout durata massima dell'attesa (ms), 0 per attendere senza limite
+	 * @return numero di byte ricevuti, disponibili in {@link #data()}, oppure -1 se scade il timeout o in caso di errore
+	 */
+	int read(int timeout);
+
+	/**
+	 * @return buffer con l'ultimo messaggio ricevuto, valido nell'intervallo {@code [0, read(...))}
+	 */
+	byte[] data();
+
+	/**
+	 * Chiude il canale e termina la comunicazione.
+	 */
+	void close();
+}
@@ -1,80 +1,221 @@
-package it.unisa.diem.ai.torcs.model;
-
-/**
- * Rappresenta un'azione di controllo da inviare al simulatore TORCS.
- * Contiene tutti i comandi del veicolo: accelerazione, frenata, sterzo, cambio, frizione, ecc.
- *
- * Creato con IntelliJ IDEA.
- * Autore: Administrator
- * Data: 4 Marzo 2008
- * Ora: 15:35:31
- */
-public class Action {
-
-	/** Valore di accelerazione (range: 0..1) */
-	public double accelerate = 0;
-
-	/** Valore di frenata (range: 0..1) */
-	public double brake = 0;
-
-	/** Valore della frizione (range: 0..1) */
-	public double clutch = 0;
-
-	/** Marcia inserita (range: -1 = retromarcia, 0 = folle, 1..6 = marce) */
-	public int gear = 0;
-
-	/** Valore di sterzo (range: -1 = sinistra massima, 0 = dritto, 1 = destra massima) */
-	public double steering = 0;
-
-	/** Se true, richiede il riavvio della gara */
-	public boolean restartRace = false;
-
-	/**
-	 * Angolo di messa a fuoco per i sensori opzionali (in gradi, range [-90;90]).
-	 * Impostare 360 per disattivare la messa a fuoco.
-	 */
-	public int focus = 360;
-
-	/**
-	 * Converte l'azione in stringa nel formato richiesto dal protocollo TORCS.
-	 *
-	 * @return una stringa rappresentante l'azione da inviare al simulatore
-	 */
-	public String toString() {
-		limitValues();
-		return "(accel " + accelerate + ") " +
-				"(brake " + brake + ") " +
-				"(clutch " + clutch + ") " +
-				"(gear " + gear + ") " +
-				"(steer " + steering + ") " +
-				"(meta " + (restartRace ? 1 : 0) + ") " +
-				"(focus " + focus + ")";
-	}
-
-	/**
-	 * Applica dei limiti ai valori di controllo per evitare comandi non validi.
-	 * Garantisce che tutti i valori siano nel range previsto.
-	 */
-	public void limitValues() {
-		accelerate = Math.max(0, Math.min(1, accelerate));
-		brake = Math.max(0, Math.min(1, brake));
-		clutch = Math.max(0, Math.min(1, clutch));
-		steering = Math.max(-1, Math.min(1, steering));
-		gear = Math.max(-1, Math.min(6, gear));
-	}
-
-	/**
-	 * Reimposta l'azione a valori di default (tutti i comandi disattivati).
-	 * Utilizzato ad esempio all'inizio di un episodio.
-	 */
-	public void reset() {
-		accelerate = 0;
-		brake = 0;
-		clutch = 0;
-		gear = 0;
-		steering = 0;
-		restartRace = false;
-		focus = 360; // Disabilita focus
-		limitValues();
-	}
-}
+package it.unisa.diem.ai.torcs.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+import it.unisa.diem.ai.torcs.utils.FixedDecimalFormatter;
+
+/**
+ * Rappresenta un'azione di controllo da inviare al simulatore TORCS.
+ * Contiene tutti i comandi del veicolo: accelerazione, frenata, sterzo, cambio, frizione, ecc.
+ *
+ * Creato con IntelliJ IDEA.
+ * Autore: Administrator
+ * Data: 4 Marzo 2008
+ * Ora: 15:35:31
+ */
+public class Action {
+
+	/** Valore di accelerazione (range: 0..1) */
+	public double accelerate = 0;
+
+	/** Valore di frenata (range: 0..1) */
+	public double brake = 0;
+
+	/** Valore della frizione (range: 0..1) */
+	public double clutch = 0;
+
+	/** Marcia inserita (range: -1 = retromarcia, 0 = folle, 1..6 = marce) */
+	public int gear = 0;
+
+	/** Valore di sterzo (range: -1 = sinistra massima, 0 = dritto, 1 = destra massima) */
+	public double steering = 0;
+
+	/** Se true, richiede il riavvio della gara */
+	public boolean restartRace = false;
+
+	/**
+	 * Angolo di messa a fuoco per i sensori opzionali (in gradi, range [-90;90]).
+	 * Impostare 360 per disattivare la messa a fuoco.
+	 */
+	public int focus = 360;
+
+	/**
+	 * Converte l'azione in stringa nel formato richiesto dal protocollo TORCS.
+	 *
+	 * @return una stringa rappresentante l'azione da inviare al simulatore
+	 */
+	public String toString() {
+		limitValues();
+		return "(accel " + accelerate + ") " +
+				"(brake " + brake + ") " +
+				"(clutch " + clutch + ") " +
+				"(gear " + gear + ") " +
+				"(steer " + steering + ") " +
+				"(meta " + (restartRace ? 1 : 0) + ") " +
+				"(focus " + focus + ")";
+	}
+
+	/** Cifre decimali dei comandi nel formato binario ({@link #writeTo(byte[], int)}) */
+	public static final int WIRE_FRACTION_DIGITS = 7;
+
+	/** Lunghezza massima del messaggio scritto da {@link #writeTo(byte[], int)} */
+	public static final int MAX_WIRE_LENGTH = 128;
+
+	private static final byte[] ACCEL = "(accel ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BRAKE = ") (brake ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CLUTCH = ") (clutch ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] GEAR = ") (gear ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] STEER = ") (steer ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] META = ") (meta ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FOCUS = ") (focus ".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] ACCEL_KEY = "(accel ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BRAKE_KEY = "(brake ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CLUTCH_KEY = "(clutch ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] GEAR_KEY = "(gear ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] STEER_KEY = "(steer ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] META_KEY = "(meta ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FOCUS_KEY = "(focus ".getBytes(StandardCharsets.US_ASCII);
+
+	/** Buffer di appoggio per {@link #writeTo(ByteBuffer)}, uno per thread */
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_WIRE_LENGTH]);
+
+	/**
+	 * Scrive l'azione nel formato del protocollo TORCS direttamente in un buffer, senza
+	 * costruire stringhe. La struttura del messaggio è quella di {@link #toString()}; i comandi
+	 * continui sono scritti a virgola fissa con {@link #WIRE_FRACTION_DIGITS} cifre decimali
+	 * (il server li legge come {@code float}, quindi la precisione è equivalente).
+	 *
+	 * @param dest buffer di destinazione (almeno {@link #MAX_WIRE_LENGTH} byte liberi)
+	 * @param offset posizione di scrittura
+	 * @return numero di byte scritti
+	 */
+	public int writeTo(byte[] dest, int offset) {
+		limitValues();
+		int pos = put(ACCEL, dest, offset);
+		pos = FixedDecimalFormatter.format(accelerate, WIRE_FRACTION_DIGITS, dest, pos);
+		pos = put(BRAKE, dest, pos);
+		pos = FixedDecimalFormatter.format(brake, WIRE_FRACTION_DIGITS, dest, pos);
+		pos = put(CLUTCH, dest, pos);
+		pos = FixedDecimalFormatter.format(clutch, WIRE_FRACTION_DIGITS, dest, pos);
+		pos = put(GEAR, dest, pos);
+		pos = FixedDecimalFormatter.formatLong(gear, dest, pos);
+		pos = put(STEER, dest, pos);
+		pos = FixedDecimalFormatter.format(steering, WIRE_FRACTION_DIGITS, dest, pos);
+		pos = put(META, dest, pos);
+		dest[pos++] = (byte) (restartRace ? '1' : '0');
+		pos = put(FOCUS, dest, pos);
+		pos = FixedDecimalFormatter.formatLong(focus, dest, pos);
+		dest[pos++] = ')';
+		return pos - offset;
+	}
+
+	/**
+	 * Scrive l'azione nel buffer a partire dalla sua posizione corrente, che viene avanzata.
+	 *
+	 * @param buffer buffer di destinazione (almeno {@link #MAX_WIRE_LENGTH} byte liberi)
+	 * @return numero di byte scritti
+	 * @see #writeTo(byte[], int)
+	 */
+	public int writeTo(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			int length = writeTo(buffer.array(), buffer.arrayOffset() + buffer.position());
+			buffer.position(buffer.position() + length);
+			return length;
+		}
+		byte[] scratch = SCRATCH.get();
+		int length = writeTo(scratch, 0);
+		buffer.put(scratch, 0, length);
+		return length;
+	}
+
+	/**
+	 * Legge un'azione nel formato del protocollo (quello di {@link #toString()} o di
+	 * {@link #writeTo(byte[], int)}), ad esempio dal traffico registrato. I comandi assenti o
+	 * non validi restano ai valori di {@link #reset()}.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte del messaggio
+	 * @return questa azione
+	 */
+	public Action readFrom(byte[] data, int offset, int length) {
+		reset();
+		accelerate = value(data, offset, length, ACCEL_KEY, accelerate);
+		brake = value(data, offset, length, BRAKE_KEY, brake);
+		clutch = value(data, offset, length, CLUTCH_KEY, clutch);
+		gear = (int) value(data, offset, length, GEAR_KEY, gear);
+		steering = value(data, offset, length, STEER_KEY, steering);
+		restartRace = value(data, offset, length, META_KEY, 0) == 1;
+		focus = (int) value(data, offset, length, FOCUS_KEY, focus);
+		return this;
+	}
+
+	private static double value(byte[] data, int offset, int length, byte[] key, double defaultValue) {
+		int start = ByteMessageParser.indexOf(data, offset, length, key);
+		if (start < 0) {
+			return defaultValue;
+		}
+		start += key.length;
+		int end = start;
+		while (end < offset + length && data[end] != ')') {
+			end++;
+		}
+		try {
+			return ByteMessageParser.parseDouble(data, start, end);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static int put(byte[] token, byte[] dest, int offset) {
+		System.arraycopy(token, 0, dest, offset, token.length);
+		return offset + token.length;
+	}
+
+	/**
+	 * Copia tutti i comandi da un'altra azione.
+	 *
+	 * @param other azione da copiare
+	 * @return questa azione
+	 */
+	public Action copyFrom(Action other) {
+		accelerate = other.accelerate;
+		brake = other.brake;
+		clutch = other.clutch;
+		gear = other.gear;
+		steering = other.steering;
+		restartRace = other.restartRace;
+		focus = other.focus;
+		return this;
+	}
+
+	/**
+	 * Applica dei limiti ai valori di controllo per evitare comandi non validi.
+	 * Garantisce che tutti i valori siano nel range previsto.
+	 */
+	public void limitValues() {
+		accelerate = Math.max(0, Math.min(1, accelerate));
+		brake = Math.max(0, Math.min(1, brake));
+		clutch = Math.max(0, Math.min(1, clutch));
+		steering = Math.max(-1, Math.min(1, steering));
+		gear = Math.max(-1, Math.min(6, gear));
+	}
+
+	/**
+	 * Reimposta l'azione a valori di default (tutti i comandi disattivati).
+	 * Utilizzato ad esempio all'inizio di un episodio.
+	 */
+	public void reset() {
+		accelerate = 0;
+		brake = 0;
+		clutch = 0;
+		gear = 0;
+		steering = 0;
+		restartRace = false;
+		focus = 360; // Disabilita focus
+		limitValues();
+	}
+}
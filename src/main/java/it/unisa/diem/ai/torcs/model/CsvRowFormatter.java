@@ -0,0 +1,127 @@
+package it.unisa.diem.ai.torcs.model;
+
+import it.unisa.diem.ai.torcs.utils.FixedDecimalFormatter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formattazione delle righe dei dataset CSV ({@code f1;f2;...;fn;labelCode;labelName})
+ * direttamente in un {@code byte[]} del chiamante.
+ * <p>
+ * Le feature sono scritte con {@link #FRACTION_DIGITS} decimali da {@link FixedDecimalFormatter},
+ * con lo stesso risultato di {@code String.format(locale, "%.5f", valore)}: separatore
+ * {@code ','} per {@code Locale.ITALY} ({@link Sample#toCSV()}, {@link Dataset#saveToCSV(String)})
+ * e {@code '.'} per {@code Locale.US} ({@link Dataset#datasetNormalizer(String)}). Codice e nome
+ * della label sono preparati una volta per tutte, quindi formattare una riga non alloca.
+ */
+public final class CsvRowFormatter {
+
+    /** Cifre decimali delle feature */
+    public static final int FRACTION_DIGITS = 5;
+
+    /** Separatore decimale di {@code Locale.ITALY} */
+    public static final byte ITALIAN_SEPARATOR = ',';
+
+    /** Separatore decimale di {@code Locale.US} */
+    public static final byte US_SEPARATOR = '.';
+
+    /** Intestazione dei file CSV, senza fine riga */
+    private static final byte[] HEADER = SensorFeature.csvHeader().getBytes(StandardCharsets.UTF_8);
+
+    /** Coda di riga {@code <codice>;<nome>} di ogni label, per ordinale */
+    private static final byte[][] TRAILERS = new byte[Label.values().length][];
+
+    /** Lunghezza della coda di riga più lunga */
+    private static final int MAX_TRAILER_LENGTH;
+
+    /** Modulo da cui {@link FixedDecimalFormatter} scrive i valori per esteso */
+    private static final double WIDE_THRESHOLD = 1e18;
+
+    /** Lunghezza massima di un valore scritto per esteso ({@code -Double.MAX_VALUE}: 309 cifre intere) */
+    private static final int MAX_WIDE_LENGTH = 1 + 309 + 1 + FRACTION_DIGITS;
+
+    static {
+        int longest = 0;
+        for (Label label : Label.values()) {
+            TRAILERS[label.ordinal()] = (label.getCode() + ";" + label).getBytes(StandardCharsets.UTF_8);
+            longest = Math.max(longest, TRAILERS[label.ordinal()].length);
+        }
+        MAX_TRAILER_LENGTH = longest;
+    }
+
+    private CsvRowFormatter() {
+    }
+
+    /**
+     * @param features numero di feature della riga
+     * @return spazio massimo occupato da una riga con valori di modulo inferiore a 1e18, senza fine riga
+     */
+    public static int maxRowLength(int features) {
+        return features * (FixedDecimalFormatter.MAX_LENGTH + 1) + MAX_TRAILER_LENGTH;
+    }
+
+    /**
+     * @param features numero di feature della riga
+     * @return spazio massimo occupato da una riga con valori in [0, 1] (feature normalizzate), senza fine riga
+     */
+    public static int maxNormalizedRowLength(int features) {
+        return features * (FRACTION_DIGITS + 3) + MAX_TRAILER_LENGTH;
+    }
+
+    /**
+     * Spazio massimo occupato da una riga con questi valori, senza fine riga: come
+     * {@link #maxRowLength(int)}, più lo spazio dei valori (rari) da scrivere per esteso.
+     *
+     * @param values valori delle feature
+     * @param count numero di feature della riga
+     * @return numero di byte che bastano a {@link #formatRow}
+     */
+    public static int maxRowLength(double[] values, int count) {
+        int length = maxRowLength(count);
+        for (int i = 0; i < count; i++) {
+            if (!(Math.abs(values[i]) < WIDE_THRESHOLD)) {
+                length += MAX_WIDE_LENGTH - FixedDecimalFormatter.MAX_LENGTH;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Scrive l'intestazione ({@link SensorFeature#csvHeader()}), senza fine riga.
+     *
+     * @param dest buffer di destinazione
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    public static int formatHeader(byte[] dest, int offset) {
+        System.arraycopy(HEADER, 0, dest, offset, HEADER.length);
+        return offset + HEADER.length;
+    }
+
+    /** @return lunghezza in byte dell'intestazione, senza fine riga */
+    public static int headerLength() {
+        return HEADER.length;
+    }
+
+    /**
+     * Scrive una riga, senza fine riga.
+     *
+     * @param values valori delle feature
+     * @param count numero di feature da scrivere (le prime di {@code values})
+     * @param label etichetta della riga
+     * @param separator separatore decimale ({@link #ITALIAN_SEPARATOR} o {@link #US_SEPARATOR})
+     * @param dest buffer di destinazione (almeno {@link #maxRowLength(double[], int)} byte liberi)
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    public static int formatRow(double[] values, int count, Label label, byte separator, byte[] dest, int offset) {
+        int pos = offset;
+        for (int i = 0; i < count; i++) {
+            pos = FixedDecimalFormatter.format(values[i], FRACTION_DIGITS, separator, dest, pos);
+            dest[pos++] = ';';
+        }
+        byte[] trailer = TRAILERS[label.ordinal()];
+        System.arraycopy(trailer, 0, dest, pos, trailer.length);
+        return pos + trailer.length;
+    }
+}
@@ -3,45 +3,248 @@ package it.unisa.diem.ai.torcs.model;
 import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
 
 /**
- * Rappresenta un dataset supervisionato composto da oggetti {@link Sample}.
+ * Rappresenta un dataset supervisionato composto da campioni etichettati.
  * Fornisce funzionalità per aggiungere campioni, salvarli/caricarli da file CSV,
  * normalizzare le feature, mescolare i dati e suddividerli in train/test set.
+ * <p>
+ * I dati sono memorizzati per colonne: una colonna di {@code double} per ogni
+ * {@link SensorFeature} e una colonna di {@code byte} con i codici delle label. Ogni colonna
+ * è un {@link MemorySegment}, appoggiato su un array Java ({@link Storage#HEAP}) oppure su
+ * memoria nativa fuori dall'heap ({@link Storage#OFF_HEAP}): in quest'ultimo caso anche
+ * sessioni di registrazione con milioni di righe non pesano sul garbage collector.
+ * Un dataset salvato in formato binario ({@link #saveToBinary(String, boolean)}) può essere
+ * riaperto con {@link #loadFromBinary(String)}: le colonne vengono mappate dal file
+ * ({@link Storage#MAPPED}) senza leggere le righe.
+ * <p>
+ * I classificatori e gli strumenti di analisi possono leggere un'intera colonna con
+ * {@link #column(SensorFeature)} senza copie; le singole righe sono accessibili come viste
+ * ({@link #row(int)}) o, per compatibilità, come oggetti {@link Sample} ({@link #getSamples()}).
+ * Le operazioni di modifica non sono thread-safe.
  */
 public class Dataset {
 
-    /** Lista di campioni nel dataset */
-    private final List<Sample> samples;
+    /**
+     * Tipo di memoria in cui vengono allocate le colonne.
+     */
+    public enum Storage {
+        /** Colonne appoggiate su array Java nell'heap */
+        HEAP,
+        /** Colonne in memoria nativa, rilasciata quando il dataset non è più raggiungibile */
+        OFF_HEAP,
+        /**
+         * Colonne mappate in sola lettura da un file binario. Alla prima modifica (aggiunta
+         * di righe o {@link #shuffle()}) le colonne vengono copiate in memoria nativa, quindi
+         * il file non viene mai modificato.
+         */
+        MAPPED
+    }
+
+    /** Feature memorizzate, nell'ordine delle colonne */
+    private static final SensorFeature[] FEATURES = SensorFeature.values();
+
+    /** Capacità iniziale (in righe) delle colonne */
+    private static final int INITIAL_CAPACITY = 1024;
 
-    /** Riga di intestazione per file CSV (nominata come in SensorFeature) */
-    private final String FIRST_FILE_LINE = SensorFeature.csvHeader();
+    /** Tipo di memoria usato per le colonne */
+    private final Storage storage;
 
-    /** Costruttore vuoto: inizializza un dataset senza campioni */
+    /** Colonne delle feature: {@code columns[f]} contiene {@code capacity} valori double */
+    private final MemorySegment[] columns;
+
+    /** Colonna dei codici delle label, un byte per riga */
+    private MemorySegment labels;
+
+    /** Numero di righe presenti */
+    private int size;
+
+    /** Numero di righe allocate in ciascuna colonna */
+    private int capacity;
+
+    /** Vista dei campioni restituita da {@link #getSamples()} */
+    private final List<Sample> samplesView = new SampleList();
+
+    /** Costruttore vuoto: inizializza un dataset senza campioni, con colonne nell'heap */
     public Dataset() {
-        this.samples = new ArrayList<>();
+        this(Storage.HEAP);
     }
 
     /**
-     * Aggiunge un campione al dataset.
+     * Costruttore che inizializza un dataset vuoto nel tipo di memoria indicato.
+     *
+     * @param storage memoria in cui allocare le colonne
+     */
+    public Dataset(Storage storage) {
+        this.storage = storage;
+        this.columns = new MemorySegment[FEATURES.length];
+        this.labels = MemorySegment.NULL;
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = MemorySegment.NULL;
+        }
+    }
+
+    /**
+     * Costruttore che adotta colonne già popolate, usato da {@link DatasetFile}.
+     *
+     * @param storage memoria in cui si trovano le colonne
+     * @param columns colonne delle feature, ognuna con {@code size} valori double
+     * @param labels colonna dei codici delle label
+     * @param size numero di righe
+     */
+    Dataset(Storage storage, MemorySegment[] columns, MemorySegment labels, int size) {
+        this.storage = storage;
+        this.columns = columns;
+        this.labels = labels;
+        this.size = size;
+        this.capacity = size;
+    }
+
+    /**
+     * Aggiunge un campione al dataset, copiandone i valori nelle colonne.
      *
      * @param sample il campione da aggiungere
+     * @throws IllegalArgumentException se il numero di feature non corrisponde a {@link SensorFeature}
      */
     public void addSample(Sample sample) {
-        samples.add(sample);
+        FeatureVector feature = sample.feature();
+        if (feature.size() != FEATURES.length) {
+            throw new IllegalArgumentException("Il campione ha " + feature.size() + " feature, attese " + FEATURES.length);
+        }
+        ensureCapacity(size + 1);
+        for (int f = 0; f < FEATURES.length; f++) {
+            columns[f].setAtIndex(JAVA_DOUBLE, size, feature.get(f));
+        }
+        labels.set(JAVA_BYTE, size, (byte) sample.label().getCode());
+        size++;
+    }
+
+    /**
+     * Aggiunge una riga al dataset a partire da valori primitivi, senza allocare oggetti.
+     *
+     * @param features valori delle feature, nell'ordine di {@link SensorFeature}
+     * @param label etichetta della riga
+     * @throws IllegalArgumentException se il numero di feature non corrisponde a {@link SensorFeature}
+     */
+    public void addRow(double[] features, Label label) {
+        if (features.length != FEATURES.length) {
+            throw new IllegalArgumentException("La riga ha " + features.length + " feature, attese " + FEATURES.length);
+        }
+        ensureCapacity(size + 1);
+        for (int f = 0; f < FEATURES.length; f++) {
+            columns[f].setAtIndex(JAVA_DOUBLE, size, features[f]);
+        }
+        labels.set(JAVA_BYTE, size, (byte) label.getCode());
+        size++;
     }
 
     /**
-     * Restituisce la lista dei campioni nel dataset.
+     * Restituisce i campioni del dataset come lista in sola lettura.
+     * La lista è una vista sulle colonne: ogni accesso crea un nuovo {@link Sample}
+     * con una copia dei valori della riga. Per scorrere grandi dataset senza allocare
+     * conviene usare {@link #row(int)} o {@link #column(SensorFeature)}.
      *
      * @return lista dei campioni
      */
     public List<Sample> getSamples() {
-        return samples;
+        return samplesView;
+    }
+
+    /**
+     * Restituisce il campione in posizione indicata, copiandone i valori.
+     *
+     * @param index indice della riga
+     * @return nuovo campione con i valori della riga
+     * @throws IndexOutOfBoundsException se l'indice non è valido
+     */
+    public Sample getSample(int index) {
+        return row(index).toSample();
+    }
+
+    /**
+     * Restituisce una vista sulla riga indicata. La vista non copia i dati: riflette
+     * eventuali modifiche successive al dataset (ad esempio un {@link #shuffle()}).
+     *
+     * @param index indice della riga
+     * @return vista sulla riga
+     * @throws IndexOutOfBoundsException se l'indice non è valido
+     */
+    public Row row(int index) {
+        return new Row(checkIndex(index));
+    }
+
+    /**
+     * Restituisce il valore di una feature in una riga.
+     *
+     * @param index indice della riga
+     * @param feature posizione della feature (ordinale di {@link SensorFeature})
+     * @return valore della feature
+     */
+    public double get(int index, int feature) {
+        return columns[feature].getAtIndex(JAVA_DOUBLE, checkIndex(index));
+    }
+
+    /**
+     * Restituisce il codice della label di una riga.
+     *
+     * @param index indice della riga
+     * @return codice della label (vedi {@link Label#getCode()})
+     */
+    public int labelCode(int index) {
+        return labels.get(JAVA_BYTE, checkIndex(index));
+    }
+
+    /**
+     * Restituisce la label di una riga.
+     *
+     * @param index indice della riga
+     * @return label della riga
+     */
+    public Label getLabel(int index) {
+        return Label.fromCode(labelCode(index));
+    }
+
+    /**
+     * Restituisce una vista in sola lettura sull'intera colonna di una feature:
+     * {@link #size()} valori {@code double} consecutivi, senza copie.
+     * La vista non è più valida dopo un'aggiunta che riallochi le colonne.
+     *
+     * @param feature feature richiesta
+     * @return segmento con i valori della colonna
+     */
+    public MemorySegment column(SensorFeature feature) {
+        return column(feature.ordinal());
+    }
+
+    /**
+     * Restituisce una vista in sola lettura sull'intera colonna di una feature.
+     *
+     * @param feature posizione della feature (ordinale di {@link SensorFeature})
+     * @return segmento con {@link #size()} valori {@code double}
+     * @see #column(SensorFeature)
+     */
+    public MemorySegment column(int feature) {
+        return columns[feature].asSlice(0, (long) size * Double.BYTES).asReadOnly();
+    }
+
+    /**
+     * Restituisce una vista in sola lettura sulla colonna dei codici delle label,
+     * {@link #size()} valori {@code byte}.
+     *
+     * @return segmento con i codici delle label
+     */
+    public MemorySegment labelColumn() {
+        return labels.asSlice(0, size).asReadOnly();
     }
 
     /**
@@ -50,7 +253,23 @@ public class Dataset {
      * @return numero di campioni
      */
     public int size() {
-        return samples.size();
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di feature (colonne) di ogni riga.
+     *
+     * @return numero di feature
+     */
+    public int dimensions() {
+        return FEATURES.length;
+    }
+
+    /**
+     * @return tipo di memoria in cui sono allocate le colonne
+     */
+    public Storage getStorage() {
+        return storage;
     }
 
     /**
@@ -61,7 +280,19 @@ public class Dataset {
      * @return oggetto Dataset caricato
      */
     public static Dataset loadFromCSV(String filePath) {
-        Dataset dataset = new Dataset();
+        return loadFromCSV(filePath, Storage.HEAP);
+    }
+
+    /**
+     * Carica un dataset da file CSV nel tipo di memoria indicato.
+     *
+     * @param filePath percorso al file CSV
+     * @param storage memoria in cui allocare le colonne
+     * @return oggetto Dataset caricato
+     * @see #loadFromCSV(String)
+     */
+    public static Dataset loadFromCSV(String filePath, Storage storage) {
+        Dataset dataset = new Dataset(storage);
         String expectedHeader = SensorFeature.csvHeader();
         int expectedColumns = expectedHeader.split(";").length;
 
@@ -95,19 +326,73 @@ public class Dataset {
         return dataset;
     }
 
+    /**
+     * Carica un dataset da file CSV in parallelo, con colonne nell'heap.
+     *
+     * @param filePath percorso al file CSV
+     * @return oggetto Dataset caricato
+     * @see #loadFromCSVParallel(String, Storage)
+     */
+    public static Dataset loadFromCSVParallel(String filePath) {
+        return loadFromCSVParallel(filePath, Storage.HEAP);
+    }
+
+    /**
+     * Carica un dataset da file CSV analizzandone porzioni diverse in parallelo.
+     * Il risultato, comprese le segnalazioni delle righe scartate, è lo stesso di
+     * {@link #loadFromCSV(String, Storage)}, ma il file viene mappato in memoria e i valori
+     * convertiti direttamente dai byte, senza stringhe intermedie: conviene per le
+     * registrazioni più grandi.
+     *
+     * @param filePath percorso al file CSV
+     * @param storage memoria in cui allocare le colonne
+     * @return oggetto Dataset caricato
+     */
+    public static Dataset loadFromCSVParallel(String filePath, Storage storage) {
+        try {
+            return ParallelCsvLoader.load(Path.of(filePath), storage);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new Dataset(storage);
+        }
+    }
+
+    /**
+     * Apre un dataset salvato in formato binario con {@link #saveToBinary(String, boolean)}.
+     * Il file viene mappato in memoria e le colonne double vengono lette direttamente dalla
+     * mappatura, senza convertire le righe: l'apertura costa pochi millisecondi anche per
+     * milioni di righe.
+     *
+     * @param filePath percorso del file binario
+     * @return dataset con le colonne del file ({@link Storage#MAPPED})
+     * @throws IOException se il file non è leggibile, è corrotto o ha feature diverse da {@link SensorFeature}
+     */
+    public static Dataset loadFromBinary(String filePath) throws IOException {
+        return DatasetFile.open(Path.of(filePath));
+    }
+
+    /**
+     * Salva il dataset in formato binario a colonne (vedi {@link DatasetFile}). A differenza di
+     * {@link #saveToCSV(String)} il file viene sovrascritto.
+     *
+     * @param filePath percorso del file di destinazione
+     * @param singlePrecision se true le feature vengono salvate come float, dimezzando il file
+     * @throws IOException in caso di errore di scrittura
+     */
+    public void saveToBinary(String filePath, boolean singlePrecision) throws IOException {
+        DatasetFile.write(Path.of(filePath), this, singlePrecision);
+    }
+
     /**
      * Salva il dataset in un file CSV, includendo intestazione e tutti i campioni.
+     * Le righe sono nel formato di {@link Sample#toCSV()} e vengono accodate al file, se esiste;
+     * i dataset grandi vengono formattati in parallelo (vedi {@link DatasetCsvWriter}).
      *
      * @param filePath percorso del file di destinazione
      */
     public void saveToCSV(String filePath) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath, true))) {
-            bw.write(FIRST_FILE_LINE);
-            bw.newLine();
-            for (Sample sample : samples) {
-                bw.write(sample.toCSV());
-                bw.newLine();
-            }
+        try {
+            DatasetCsvWriter.write(this, Path.of(filePath), true, CsvRowFormatter.ITALIAN_SEPARATOR, null);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -119,33 +404,205 @@ public class Dataset {
      * @param outputPath percorso del file CSV normalizzato da generare
      */
     public void datasetNormalizer(String outputPath) {
-        FeatureNormalizer normalizer = new FeatureNormalizer();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath, false))) {
-            writer.write(SensorFeature.csvHeader());
-            writer.newLine();
-
-            for (Sample sample : samples) {
-                FeatureVector normalized = normalizer.normalize(sample.getFeature());
-                StringBuilder sb = new StringBuilder();
-                for (Double val : normalized.getValues()) {
-                    sb.append(String.format(Locale.US, "%.5f;", val));
-                }
-                sb.append(sample.getLabel().getCode()).append(";");
-                sb.append(sample.getLabel().toString());
-                writer.write(sb.toString());
-                writer.newLine();
-            }
-
+        try {
+            DatasetCsvWriter.write(this, Path.of(outputPath), false, CsvRowFormatter.US_SEPARATOR, new FeatureNormalizer());
             System.out.println("Dataset normalizzato salvato in: " + outputPath);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Normalizza un dataset CSV grezzo direttamente in un nuovo file CSV, senza caricarlo:
+     * il risultato è quello di {@link #loadFromCSV(String)} seguito da
+     * {@link #datasetNormalizer(String)}, ma il file viene elaborato a finestre, in parallelo e
+     * con memoria costante (vedi {@link StreamingNormalizer}). Adatto a registrazioni più
+     * grandi della memoria disponibile.
+     *
+     * @param inputPath file CSV grezzo
+     * @param outputPath file CSV normalizzato (sovrascritto)
+     * @return righe scritte
+     * @throws IOException se l'ingresso non è leggibile, l'uscita non è scrivibile o i due file coincidono
+     */
+    public static long normalizeCSV(String inputPath, String outputPath) throws IOException {
+        return StreamingNormalizer.toCSV(Path.of(inputPath), Path.of(outputPath));
+    }
+
+    /**
+     * Normalizza un dataset CSV grezzo direttamente in un file binario a colonne, senza
+     * caricarlo, con memoria costante (vedi {@link #normalizeCSV(String, String)}).
+     *
+     * @param inputPath file CSV grezzo
+     * @param outputPath file binario normalizzato, leggibile con {@link #loadFromBinary(String)}
+     * @param singlePrecision se true le feature vengono salvate come float
+     * @return righe scritte
+     * @throws IOException se l'ingresso non è leggibile, l'uscita non è scrivibile o i due file coincidono
+     */
+    public static long normalizeCSVToBinary(String inputPath, String outputPath, boolean singlePrecision)
+            throws IOException {
+        return StreamingNormalizer.toBinary(Path.of(inputPath), Path.of(outputPath), singlePrecision);
+    }
+
     /**
      * Mescola casualmente l'ordine dei campioni nel dataset.
+     * Le righe vengono permutate scambiando i valori in tutte le colonne.
      */
     public void shuffle() {
-        Collections.shuffle(samples);
+        if (labels.isReadOnly()) {
+            reallocate(capacity);
+        }
+        Random random = ThreadLocalRandom.current();
+        for (int i = size - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+    }
+
+    /**
+     * Scambia due righe in tutte le colonne.
+     *
+     * @param i prima riga
+     * @param j seconda riga
+     */
+    private void swap(int i, int j) {
+        for (MemorySegment column : columns) {
+            double tmp = column.getAtIndex(JAVA_DOUBLE, i);
+            column.setAtIndex(JAVA_DOUBLE, i, column.getAtIndex(JAVA_DOUBLE, j));
+            column.setAtIndex(JAVA_DOUBLE, j, tmp);
+        }
+        byte tmp = labels.get(JAVA_BYTE, i);
+        labels.set(JAVA_BYTE, i, labels.get(JAVA_BYTE, j));
+        labels.set(JAVA_BYTE, j, tmp);
+    }
+
+    /**
+     * Garantisce che le colonne possano contenere almeno {@code required} righe,
+     * riallocandole con capacità doppia e copiando i valori presenti.
+     *
+     * @param required numero di righe richieste
+     */
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        reallocate((int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, Math.max(INITIAL_CAPACITY, 2L * capacity))));
+    }
+
+    /**
+     * Rialloca le colonne con la capacità indicata, copiando i valori presenti. Le colonne
+     * mappate da file finiscono in memoria nativa.
+     *
+     * @param newCapacity numero di righe da allocare, non inferiore a {@link #size()}
+     */
+    private void reallocate(int newCapacity) {
+        Arena arena = storage != Storage.HEAP ? Arena.ofAuto() : null;
+        for (int f = 0; f < columns.length; f++) {
+            MemorySegment grown = arena != null
+                    ? arena.allocate((long) newCapacity * Double.BYTES, Double.BYTES)
+                    : MemorySegment.ofArray(new double[newCapacity]);
+            MemorySegment.copy(columns[f], 0, grown, 0, (long) size * Double.BYTES);
+            columns[f] = grown;
+        }
+        MemorySegment grownLabels = arena != null
+                ? arena.allocate(newCapacity, 1)
+                : MemorySegment.ofArray(new byte[newCapacity]);
+        MemorySegment.copy(labels, 0, grownLabels, 0, size);
+        labels = grownLabels;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Verifica che un indice di riga sia valido.
+     *
+     * @param index indice da controllare
+     * @return lo stesso indice
+     * @throws IndexOutOfBoundsException se l'indice non è in {@code [0, size())}
+     */
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Indice " + index + " fuori dal dataset di " + size + " righe");
+        }
+        return index;
+    }
+
+    /**
+     * Vista su una riga del dataset: legge i valori direttamente dalle colonne.
+     */
+    public final class Row {
+
+        /** Indice della riga */
+        private final int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return indice della riga nel dataset
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @param feature posizione della feature (ordinale di {@link SensorFeature})
+         * @return valore della feature
+         */
+        public double get(int feature) {
+            return columns[feature].getAtIndex(JAVA_DOUBLE, index);
+        }
+
+        /**
+         * @param feature feature richiesta
+         * @return valore della feature
+         */
+        public double get(SensorFeature feature) {
+            return get(feature.ordinal());
+        }
+
+        /**
+         * @return label della riga
+         */
+        public Label label() {
+            return Label.fromCode(labels.get(JAVA_BYTE, index));
+        }
+
+        /**
+         * Copia i valori delle feature della riga in un array del chiamante.
+         *
+         * @param dest array di destinazione
+         * @param offset posizione di partenza in {@code dest}
+         */
+        public void copyTo(double[] dest, int offset) {
+            for (int f = 0; f < columns.length; f++) {
+                dest[offset + f] = columns[f].getAtIndex(JAVA_DOUBLE, index);
+            }
+        }
+
+        /**
+         * @return nuovo {@link Sample} con una copia dei valori della riga
+         */
+        public Sample toSample() {
+            FeatureVector feature = new FeatureVector(columns.length);
+            for (int f = 0; f < columns.length; f++) {
+                feature.set(f, get(f));
+            }
+            return new Sample(feature, label());
+        }
+    }
+
+    /**
+     * Lista in sola lettura che materializza le righe come {@link Sample}.
+     */
+    private final class SampleList extends AbstractList<Sample> {
+
+        @Override
+        public Sample get(int index) {
+            return getSample(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
@@ -0,0 +1,205 @@
+package it.unisa.diem.ai.torcs.model;
+
+import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+
+/**
+ * Esportazione di un {@link Dataset} in CSV con {@link CsvRowFormatter}, senza
+ * {@code String.format} né stringhe intermedie.
+ * <p>
+ * Le righe vengono formattate a lotti in buffer di byte riutilizzati. Per i dataset grandi
+ * ogni lotto è diviso in partizioni consecutive formattate in parallelo sul
+ * {@link ForkJoinPool} comune; le partizioni vengono poi scritte nell'ordine delle righe, quindi
+ * il file è identico a quello prodotto in sequenza e la memoria usata non dipende dalla
+ * dimensione del dataset.
+ */
+final class DatasetCsvWriter {
+
+    /** Righe formattate da una partizione per lotto */
+    private static final int PARTITION_ROWS = 8192;
+
+    /** Sotto questa soglia le righe vengono formattate dal solo thread chiamante */
+    private static final int PARALLEL_THRESHOLD = 4 * PARTITION_ROWS;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private DatasetCsvWriter() {
+    }
+
+    /**
+     * Scrive l'intestazione e tutte le righe di un dataset.
+     *
+     * @param dataset dataset da esportare
+     * @param path file di destinazione
+     * @param append se true le righe vengono accodate al file esistente, altrimenti il file viene sovrascritto
+     * @param separator separatore decimale ({@link CsvRowFormatter#ITALIAN_SEPARATOR} o {@link CsvRowFormatter#US_SEPARATOR})
+     * @param normalizer se non null, normalizzatore applicato alle feature prima della scrittura
+     * @throws IOException in caso di errore di scrittura
+     */
+    static void write(Dataset dataset, Path path, boolean append, byte separator, FeatureNormalizer normalizer)
+            throws IOException {
+        int rows = dataset.size();
+        MemorySegment[] columns = new MemorySegment[dataset.dimensions()];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = dataset.column(f);
+        }
+        MemorySegment labels = dataset.labelColumn();
+
+        int partitions = rows < PARALLEL_THRESHOLD ? 1 : ForkJoinPool.getCommonPoolParallelism();
+        Partition[] slots = new Partition[partitions];
+        for (int p = 0; p < partitions; p++) {
+            slots[p] = new Partition(columns, labels, separator, normalizer,
+                    PARTITION_ROWS * (CsvRowFormatter.maxRowLength(columns.length) + LINE_SEPARATOR.length));
+        }
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+
+            for (int start = 0; start < rows; start += partitions * PARTITION_ROWS) {
+                int used = 0;
+                for (; used < partitions && start + used * PARTITION_ROWS < rows; used++) {
+                    int from = start + used * PARTITION_ROWS;
+                    slots[used].prepare(from, Math.min(rows, from + PARTITION_ROWS));
+                }
+                if (used == 1) {
+                    slots[0].compute();
+                } else {
+                    ForkJoinTask.invokeAll(Arrays.copyOf(slots, used));
+                }
+                for (int p = 0; p < used; p++) {
+                    writeFully(out, slots[p].buffer, slots[p].length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Spazio che basta a formattare un certo numero di righe di feature normalizzate senza
+     * ingrandire il buffer di una {@link Partition}.
+     *
+     * @param rows numero di righe
+     * @param features numero di feature per riga
+     * @return capacità del buffer in byte
+     */
+    static int normalizedCapacity(int rows, int features) {
+        return rows * (CsvRowFormatter.maxNormalizedRowLength(features) + LINE_SEPARATOR.length)
+                + CsvRowFormatter.maxRowLength(features) + LINE_SEPARATOR.length;
+    }
+
+    /**
+     * Scrive l'intestazione CSV, con fine riga.
+     *
+     * @param out file di destinazione
+     * @throws IOException in caso di errore di scrittura
+     */
+    static void writeHeader(FileChannel out) throws IOException {
+        byte[] header = new byte[CsvRowFormatter.headerLength() + LINE_SEPARATOR.length];
+        int length = CsvRowFormatter.formatHeader(header, 0);
+        System.arraycopy(LINE_SEPARATOR, 0, header, length, LINE_SEPARATOR.length);
+        writeFully(out, header, header.length);
+    }
+
+    /**
+     * Scrive i primi {@code length} byte di un array.
+     *
+     * @param out file di destinazione
+     * @param data byte da scrivere
+     * @param length numero di byte da scrivere
+     * @throws IOException in caso di errore di scrittura
+     */
+    static void writeFully(FileChannel out, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Partizione di righe consecutive formattata da un singolo thread nel proprio buffer,
+     * riutilizzato da un lotto all'altro.
+     */
+    @SuppressWarnings("serial")
+    static final class Partition extends RecursiveAction {
+
+        private final MemorySegment[] columns;
+        private final MemorySegment labels;
+        private final byte separator;
+        private final FeatureNormalizer normalizer;
+        private final double[] values;
+
+        byte[] buffer;
+        int length;
+        private int from;
+        private int to;
+
+        /**
+         * @param columns colonne delle feature (double)
+         * @param labels colonna dei codici delle label
+         * @param separator separatore decimale
+         * @param normalizer normalizzatore applicato alle feature, oppure null
+         * @param capacity dimensione iniziale del buffer in byte (che cresce se serve)
+         */
+        Partition(MemorySegment[] columns, MemorySegment labels, byte separator, FeatureNormalizer normalizer,
+                  int capacity) {
+            this.columns = columns;
+            this.labels = labels;
+            this.separator = separator;
+            this.normalizer = normalizer;
+            this.values = new double[columns.length];
+            this.buffer = new byte[capacity];
+        }
+
+        /** Imposta le righe del prossimo lotto, {@code [from, to)} */
+        void prepare(int from, int to) {
+            this.from = from;
+            this.to = to;
+            reinitialize();
+        }
+
+        @Override
+        protected void compute() {
+            format();
+        }
+
+        /**
+         * Formatta le righe impostate con {@link #prepare} nel thread chiamante; il risultato
+         * sono i primi {@link #length} byte di {@link #buffer}.
+         */
+        void format() {
+            int pos = 0;
+            for (int r = from; r < to; r++) {
+                for (int f = 0; f < columns.length; f++) {
+                    values[f] = columns[f].getAtIndex(JAVA_DOUBLE, r);
+                }
+                if (normalizer != null) {
+                    normalizer.normalize(values, values);
+                }
+                int needed = CsvRowFormatter.maxRowLength(values, values.length) + LINE_SEPARATOR.length;
+                if (buffer.length - pos < needed) {
+                    // Solo con valori enormi, scritti per esteso
+                    buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, pos + needed));
+                }
+                pos = CsvRowFormatter.formatRow(values, values.length, Label.fromCode(labels.get(JAVA_BYTE, r)),
+                        separator, buffer, pos);
+                System.arraycopy(LINE_SEPARATOR, 0, buffer, pos, LINE_SEPARATOR.length);
+                pos += LINE_SEPARATOR.length;
+            }
+            length = pos;
+        }
+    }
+}
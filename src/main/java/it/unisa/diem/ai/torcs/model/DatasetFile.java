@@ -0,0 +1,451 @@
+package it.unisa.diem.ai.torcs.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.CRC32C;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT;
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Formato binario a colonne di un {@link Dataset}, pensato per essere riaperto con
+ * {@link FileChannel#map} senza leggere né convertire le righe.
+ * <p>
+ * Layout del file (ordine dei byte nativo della piattaforma che lo ha scritto):
+ * <pre>
+ *  0  int    magic ("DSBC")
+ *  4  int    versione del formato
+ *  8  long   numero di righe n
+ * 16  int    numero di colonne d
+ * 20  int    dimensione in byte dello schema
+ * 24  long   checksum CRC32C dello schema
+ * 32  schema: per ogni colonna, byte dimensione del valore (8 = double, 4 = float),
+ *     byte lunghezza del nome, nome della {@link SensorFeature} in ASCII
+ *     double[n] o float[n] per ogni colonna, nell'ordine dello schema
+ *     byte[n]   codici delle label
+ * </pre>
+ * Tutte le sezioni iniziano a offset multipli di 8. Lo schema viene confrontato con
+ * {@link SensorFeature} all'apertura; i dati non sono coperti dal checksum, perché
+ * verificarli richiederebbe di leggere l'intero file e l'apertura deve costare quanto la
+ * sola mappatura. Le colonne double vengono lette direttamente dalla mappatura, in sola
+ * lettura (il dataset le copia alla prima modifica); quelle float, lunghe la metà, vengono
+ * convertite in memoria nativa all'apertura.
+ * <p>
+ * Quando il numero di righe non è noto in anticipo, {@link Writer} scrive il file in modo
+ * incrementale, con memoria costante.
+ */
+final class DatasetFile {
+
+    /** Numero magico ("DSBC") */
+    private static final int MAGIC = 0x44534243;
+
+    /** Versione corrente del formato */
+    private static final int VERSION = 1;
+
+    /** Dimensione dell'intestazione in byte */
+    private static final long HEADER_SIZE = 32;
+
+    /** Righe convertite per blocco quando le colonne float vengono portate a double */
+    private static final int WIDEN_BLOCK = 4096;
+
+    private DatasetFile() {
+    }
+
+    /**
+     * Scrive un dataset. Il file viene prima scritto accanto alla destinazione e poi rinominato
+     * atomicamente, così che un lettore concorrente non veda mai un file parziale.
+     *
+     * @param path percorso del file da scrivere
+     * @param dataset dataset da salvare
+     * @param singlePrecision se true le feature vengono salvate come float (file più piccolo, precisione ridotta)
+     * @throws IOException in caso di errore di scrittura
+     */
+    static void write(Path path, Dataset dataset, boolean singlePrecision) throws IOException {
+        SensorFeature[] features = SensorFeature.values();
+        int valueSize = singlePrecision ? Float.BYTES : Double.BYTES;
+        long rows = dataset.size();
+        byte[] schema = schema(features, valueSize);
+
+        byte[] prefix = prefix(rows, features.length, schema);
+        long dataOffset = prefix.length;
+        long columnBytes = align(rows * valueSize);
+        long labelsOffset = dataOffset + columnBytes * features.length;
+        long total = labelsOffset + rows;
+
+        // Nome univoco: due processi che salvano lo stesso file non si troncano a vicenda il temporaneo
+        Path tmp = createTempFile(path);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 Arena arena = Arena.ofConfined()) {
+                MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, total, arena);
+                MemorySegment.copy(prefix, 0, file, JAVA_BYTE, 0, prefix.length);
+
+                for (int f = 0; f < features.length; f++) {
+                    MemorySegment column = dataset.column(f);
+                    long offset = dataOffset + f * columnBytes;
+                    if (singlePrecision) {
+                        for (long r = 0; r < rows; r++) {
+                            file.set(JAVA_FLOAT, offset + r * Float.BYTES, (float) column.getAtIndex(JAVA_DOUBLE, r));
+                        }
+                    } else {
+                        MemorySegment.copy(column, 0, file, offset, rows * Double.BYTES);
+                    }
+                }
+                MemorySegment.copy(dataset.labelColumn(), 0, file, labelsOffset, rows);
+                file.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tmp, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Apre un dataset binario mappandolo in memoria. La mappatura viene rilasciata quando il
+     * dataset non è più raggiungibile.
+     *
+     * @param path percorso del file
+     * @return dataset che legge le colonne direttamente dal file
+     * @throws IOException se il file non è leggibile, è corrotto o ha uno schema diverso da {@link SensorFeature}
+     */
+    static Dataset open(Path path) throws IOException {
+        MemorySegment file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Dataset binario troncato: " + path);
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, Arena.ofAuto());
+        }
+
+        int magic = file.get(JAVA_INT, 0);
+        if (magic != MAGIC) {
+            throw new IOException(Integer.reverseBytes(magic) == MAGIC
+                    ? "Dataset binario scritto con un ordine dei byte diverso: " + path
+                    : "Il file non è un dataset binario: " + path);
+        }
+        int version = file.get(JAVA_INT, 4);
+        if (version != VERSION) {
+            throw new IOException("Versione del dataset binario non supportata (" + version + "): " + path);
+        }
+
+        long rows = file.get(JAVA_LONG, 8);
+        int columns = file.get(JAVA_INT, 16);
+        int schemaLength = file.get(JAVA_INT, 20);
+        SensorFeature[] features = SensorFeature.values();
+        if (rows < 0 || rows > Integer.MAX_VALUE - 8 || columns != features.length
+                || schemaLength <= 0 || HEADER_SIZE + schemaLength > file.byteSize()) {
+            throw new IOException("Intestazione del dataset binario non valida (n=" + rows + ", d=" + columns + "): " + path);
+        }
+        MemorySegment schema = file.asSlice(HEADER_SIZE, schemaLength);
+        if (file.get(JAVA_LONG, 24) != checksum(schema)) {
+            throw new IOException("Checksum dello schema del dataset binario non valido: " + path);
+        }
+        int valueSize = checkSchema(schema, features, path);
+
+        long dataOffset = align(HEADER_SIZE + schemaLength);
+        long columnBytes = align(rows * valueSize);
+        long labelsOffset = dataOffset + columnBytes * columns;
+        if (file.byteSize() != labelsOffset + rows) {
+            throw new IOException("Dimensione del dataset binario non coerente con l'intestazione: " + path);
+        }
+
+        MemorySegment[] data = new MemorySegment[columns];
+        Arena widened = valueSize == Float.BYTES ? Arena.ofAuto() : null;
+        for (int f = 0; f < columns; f++) {
+            MemorySegment column = file.asSlice(dataOffset + f * columnBytes, rows * valueSize);
+            data[f] = widened != null ? widen(column, rows, widened) : column;
+        }
+        return new Dataset(Dataset.Storage.MAPPED, data, file.asSlice(labelsOffset, rows), (int) rows);
+    }
+
+    /**
+     * Converte una colonna float in una colonna double in memoria nativa. La conversione
+     * passa per blocchi di array Java, perché i cicli su array vengono compilati (e
+     * vettorizzati) molto prima di quelli sui segmenti.
+     */
+    private static MemorySegment widen(MemorySegment floats, long rows, Arena arena) {
+        MemorySegment doubles = arena.allocate(rows * Double.BYTES, Double.BYTES);
+        float[] in = new float[(int) Math.min(rows, WIDEN_BLOCK)];
+        double[] out = new double[in.length];
+        for (long r = 0; r < rows; r += in.length) {
+            int count = (int) Math.min(in.length, rows - r);
+            MemorySegment.copy(floats, JAVA_FLOAT, r * Float.BYTES, in, 0, count);
+            for (int i = 0; i < count; i++) {
+                out[i] = in[i];
+            }
+            MemorySegment.copy(out, 0, doubles, JAVA_DOUBLE, r * Double.BYTES, count);
+        }
+        return doubles;
+    }
+
+    /**
+     * Codifica intestazione e schema, fino all'inizio delle colonne (offset allineato a 8).
+     */
+    private static byte[] prefix(long rows, int columns, byte[] schema) {
+        CRC32C crc = new CRC32C();
+        crc.update(schema);
+        ByteBuffer prefix = ByteBuffer.allocate((int) align(HEADER_SIZE + schema.length)).order(ByteOrder.nativeOrder());
+        prefix.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(rows)
+                .putInt(columns)
+                .putInt(schema.length)
+                .putLong(crc.getValue())
+                .put(schema);
+        return prefix.array();
+    }
+
+    /**
+     * Codifica lo schema: dimensione del valore e nome di ogni colonna.
+     */
+    private static byte[] schema(SensorFeature[] features, int valueSize) {
+        int length = 0;
+        byte[][] names = new byte[features.length][];
+        for (int f = 0; f < features.length; f++) {
+            names[f] = features[f].name().getBytes(StandardCharsets.US_ASCII);
+            length += 2 + names[f].length;
+        }
+        byte[] schema = new byte[length];
+        int pos = 0;
+        for (byte[] name : names) {
+            schema[pos++] = (byte) valueSize;
+            schema[pos++] = (byte) name.length;
+            System.arraycopy(name, 0, schema, pos, name.length);
+            pos += name.length;
+        }
+        return schema;
+    }
+
+    /**
+     * Verifica che lo schema del file descriva le colonne di {@link SensorFeature}, nello stesso
+     * ordine e con un solo tipo di valore.
+     *
+     * @return dimensione dei valori delle colonne (4 o 8)
+     */
+    private static int checkSchema(MemorySegment schema, SensorFeature[] features, Path path) throws IOException {
+        int valueSize = -1;
+        long pos = 0;
+        for (SensorFeature feature : features) {
+            if (pos + 2 > schema.byteSize()) {
+                throw new IOException("Schema del dataset binario troncato: " + path);
+            }
+            int size = schema.get(JAVA_BYTE, pos);
+            int nameLength = schema.get(JAVA_BYTE, pos + 1) & 0xFF;
+            pos += 2;
+            if ((size != Double.BYTES && size != Float.BYTES) || (valueSize != -1 && size != valueSize)
+                    || pos + nameLength > schema.byteSize()) {
+                throw new IOException("Schema del dataset binario non valido: " + path);
+            }
+            valueSize = size;
+            String name = new String(schema.asSlice(pos, nameLength).toArray(JAVA_BYTE), StandardCharsets.US_ASCII);
+            if (!name.equals(feature.name())) {
+                throw new IOException("Colonna " + name + " al posto di " + feature.name() + " nel dataset binario: " + path);
+            }
+            pos += nameLength;
+        }
+        return valueSize;
+    }
+
+    /**
+     * Crea il file temporaneo univoco da cui viene pubblicato {@code path}, con permessi
+     * {@code rw-r--r--} (ridotti dalla umask) sui file system POSIX: il file rinominato deve
+     * restare leggibile da altri utenti, mentre {@link Files#createTempFile} userebbe
+     * {@code rw-------}.
+     */
+    private static Path createTempFile(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName().toString();
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempFile(directory, prefix, ".tmp");
+        }
+        FileAttribute<?> permissions = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-r--r--"));
+        return Files.createTempFile(directory, prefix, ".tmp", permissions);
+    }
+
+    /**
+     * Cancella un file temporaneo dopo un errore, senza nascondere l'errore originale.
+     */
+    private static void deleteQuietly(Path tmp, Exception failure) {
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /** @return il primo multiplo di 8 non inferiore a {@code offset} */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Calcola il CRC32C di un segmento (mappato) senza copiarlo.
+     *
+     * @param segment dati da controllare
+     * @return valore del checksum
+     */
+    private static long checksum(MemorySegment segment) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.asByteBuffer());
+        return crc.getValue();
+    }
+
+    /**
+     * Scrittura incrementale di un dataset binario di cui non si conosce in anticipo il numero
+     * di righe. Ogni colonna viene accodata a un file temporaneo accanto alla destinazione,
+     * cancellato alla chiusura; {@link #finish()} scrive intestazione e schema e concatena i file
+     * temporanei nel formato di {@link DatasetFile#write}, con lo stesso rename atomico.
+     * La memoria usata non dipende dal numero di righe.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path path;
+        private final int valueSize;
+
+        /** File temporanei delle colonne delle feature, seguiti da quello delle label */
+        private final FileChannel[] parts;
+
+        /** Buffer di conversione dei valori in byte, riutilizzato */
+        private byte[] bytes = new byte[0];
+        private float[] floats = new float[0];
+
+        private long rows;
+
+        /**
+         * Crea i file temporanei delle colonne.
+         *
+         * @param path percorso del file da scrivere
+         * @param singlePrecision se true le feature vengono salvate come float
+         * @throws IOException se i file temporanei non possono essere creati
+         */
+        Writer(Path path, boolean singlePrecision) throws IOException {
+            this.path = path;
+            this.valueSize = singlePrecision ? Float.BYTES : Double.BYTES;
+            this.parts = new FileChannel[SensorFeature.values().length + 1];
+            try {
+                Path directory = path.toAbsolutePath().getParent();
+                for (int c = 0; c < parts.length; c++) {
+                    Path part = Files.createTempFile(directory, path.getFileName() + ".part" + c + "-", ".tmp");
+                    try {
+                        parts[c] = FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                StandardOpenOption.DELETE_ON_CLOSE);
+                    } catch (IOException | RuntimeException e) {
+                        deleteQuietly(part, e);
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Accoda un blocco di righe.
+         *
+         * @param columns colonne delle feature, nell'ordine di {@link SensorFeature}
+         * @param labels codici delle label
+         * @param count numero di righe del blocco (le prime di ogni array)
+         * @throws IOException in caso di errore di scrittura
+         */
+        void append(double[][] columns, byte[] labels, int count) throws IOException {
+            if (bytes.length < count * valueSize) {
+                bytes = new byte[count * valueSize];
+                floats = valueSize == Float.BYTES ? new float[count] : floats;
+            }
+            MemorySegment staging = MemorySegment.ofArray(bytes);
+            for (int f = 0; f < columns.length; f++) {
+                if (valueSize == Float.BYTES) {
+                    for (int r = 0; r < count; r++) {
+                        floats[r] = (float) columns[f][r];
+                    }
+                    MemorySegment.copy(floats, 0, staging, JAVA_FLOAT_UNALIGNED, 0, count);
+                } else {
+                    MemorySegment.copy(columns[f], 0, staging, JAVA_DOUBLE_UNALIGNED, 0, count);
+                }
+                DatasetCsvWriter.writeFully(parts[f], bytes, count * valueSize);
+            }
+            DatasetCsvWriter.writeFully(parts[columns.length], labels, count);
+            rows += count;
+        }
+
+        /** @return righe accodate finora */
+        long rows() {
+            return rows;
+        }
+
+        /**
+         * Completa il file: lo scrive accanto alla destinazione e lo rinomina atomicamente.
+         *
+         * @throws IOException in caso di errore di scrittura, o se le righe sono troppe per {@link #open}
+         */
+        void finish() throws IOException {
+            if (rows > Integer.MAX_VALUE - 8) {
+                throw new IOException("Troppe righe per un dataset binario (" + rows + "): " + path);
+            }
+            int columns = parts.length - 1;
+            byte[] prefix = prefix(rows, columns, schema(SensorFeature.values(), valueSize));
+            byte[] padding = new byte[8];
+
+            Path tmp = createTempFile(path);
+            try {
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    DatasetCsvWriter.writeFully(out, prefix, prefix.length);
+                    for (int c = 0; c < parts.length; c++) {
+                        long size = parts[c].size();
+                        for (long position = 0; position < size; ) {
+                            position += parts[c].transferTo(position, size - position, out);
+                        }
+                        if (c < columns) {
+                            DatasetCsvWriter.writeFully(out, padding, (int) (align(size) - size));
+                        }
+                    }
+                    out.force(false);
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(tmp, e);
+                throw e;
+            }
+        }
+
+        /**
+         * Chiude e cancella i file temporanei delle colonne.
+         */
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (FileChannel part : parts) {
+                try {
+                    if (part != null) {
+                        part.close();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -1,43 +1,39 @@
 package it.unisa.diem.ai.torcs.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 
 /**
- * Classe che rappresenta un vettore di feature numeriche (valori Double),
+ * Classe che rappresenta un vettore di feature numeriche (valori double),
  * utilizzato per descrivere un campione (Sample) nel contesto dell'apprendimento automatico.
  * Supporta accesso, modifica, e calcolo della distanza euclidea tra vettori.
+ * <p>
+ * I valori sono memorizzati in un array primitivo {@code double[]}: gli accessi indicizzati
+ * non comportano boxing e la lettura dell'intero vettore può avvenire tramite copia in un
+ * buffer del chiamante ({@link #copyTo(double[], int)}) o tramite una vista in sola lettura
+ * ({@link #view()}), senza copie difensive.
  */
 public class FeatureVector {
 
-    /** Lista di valori numerici che compongono il vettore di feature */
-    private List<Double> values;
+    /** Valori numerici che compongono il vettore di feature */
+    private final double[] values;
 
     /**
-     * Costruttore che crea un FeatureVector copiando una lista di Double.
+     * Costruttore che crea un FeatureVector copiando un array di valori.
      *
-     * @param values lista di valori da usare come feature
+     * @param values valori da usare come feature
      */
-    public FeatureVector(List<Double> values) {
-        this.values = new ArrayList<>(values); // Copia difensiva
+    public FeatureVector(double[] values) {
+        this.values = values.clone(); // Copia difensiva
     }
 
     /**
-     * Restituisce una copia della lista di valori del vettore.
+     * Costruttore che crea un FeatureVector di dimensione data, con tutti i valori a zero.
      *
-     * @return lista dei valori
+     * @param size numero di feature
      */
-    public List<Double> getValues() {
-        return new ArrayList<>(values); // Copia difensiva per evitare modifiche esterne
-    }
-
-    /**
-     * Imposta i valori del vettore, sostituendo quelli esistenti.
-     *
-     * @param values nuova lista di valori
-     */
-    public void setValues(List<Double> values) {
-        this.values = new ArrayList<>(values);
+    public FeatureVector(int size) {
+        this.values = new double[size];
     }
 
     /**
@@ -46,17 +42,17 @@ public class FeatureVector {
      * @return numero di feature
      */
     public int size() {
-        return values.size();
+        return values.length;
     }
 
     /**
      * Restituisce il valore alla posizione indicata.
      *
      * @param index posizione nel vettore
-     * @return valore Double corrispondente
+     * @return valore corrispondente
      */
-    public Double get(int index) {
-        return values.get(index);
+    public double get(int index) {
+        return values[index];
     }
 
     /**
@@ -65,8 +61,36 @@ public class FeatureVector {
      * @param index indice della feature da modificare
      * @param value nuovo valore da assegnare
      */
-    public void set(int index, Double value) {
-        values.set(index, value);
+    public void set(int index, double value) {
+        values[index] = value;
+    }
+
+    /**
+     * Copia i valori del vettore in un array del chiamante.
+     *
+     * @param dest array di destinazione
+     * @param offset posizione di partenza in {@code dest}
+     */
+    public void copyTo(double[] dest, int offset) {
+        System.arraycopy(values, 0, dest, offset, values.length);
+    }
+
+    /**
+     * Restituisce una copia dei valori del vettore.
+     *
+     * @return nuovo array con i valori
+     */
+    public double[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * Restituisce una vista in sola lettura dei valori, senza copiarli.
+     *
+     * @return buffer in sola lettura sui valori del vettore
+     */
+    public DoubleBuffer view() {
+        return DoubleBuffer.wrap(values).asReadOnlyBuffer();
     }
 
     /**
@@ -77,12 +101,12 @@ public class FeatureVector {
      * @throws IllegalArgumentException se i vettori hanno dimensioni diverse
      */
     public double distanzaEuclidea(FeatureVector altra) {
-        if (this.values.size() != altra.values.size()) {
+        if (this.values.length != altra.values.length) {
             throw new IllegalArgumentException("I vettori delle feature devono avere la stessa dimensione");
         }
         double somma = 0.0;
-        for (int i = 0; i < values.size(); i++) {
-            double diff = this.values.get(i) - altra.values.get(i);
+        for (int i = 0; i < values.length; i++) {
+            double diff = this.values[i] - altra.values[i];
             somma += diff * diff;
         }
         return Math.sqrt(somma);
@@ -95,6 +119,6 @@ public class FeatureVector {
      */
     @Override
     public String toString() {
-        return values.toString();
+        return Arrays.toString(values);
     }
 }
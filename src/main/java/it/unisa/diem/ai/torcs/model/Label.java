@@ -27,6 +27,9 @@ public enum Label {
     /** Codice numerico associato alla label (utile per CSV o classificatori) */
     private final int code;
 
+    /** Copia condivisa di {@link #values()}, per evitare di clonare l'array a ogni ricerca */
+    private static final Label[] VALUES = values();
+
     /**
      * Costruttore con codice numerico.
      *
@@ -53,7 +56,7 @@ public enum Label {
      * @throws IllegalArgumentException se il codice non è valido
      */
     public static Label fromCode(int code) {
-        for (Label l : values()) {
+        for (Label l : VALUES) {
             if (l.code == code) return l;
         }
         throw new IllegalArgumentException("Codice label non valido: " + code);
@@ -0,0 +1,236 @@
+package it.unisa.diem.ai.torcs.model;
+
+import java.nio.charset.StandardCharsets;
+
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+
+/**
+ * Implementazione di {@link SensorModel} che decodifica le letture solo quando servono.
+ * <p>
+ * All'arrivo di un messaggio viene eseguita una sola passata che registra la posizione di ogni
+ * gruppo {@code (nome valore ...)} ({@link ByteMessageParser#index}); i valori di una lettura
+ * vengono convertiti alla prima chiamata del getter corrispondente e memorizzati per le chiamate
+ * successive. Un controller che usa pochi sensori (ad esempio {@code AutonomousDriver}) non paga
+ * la conversione dei 36 valori di {@code opponents}, di {@code wheelSpinVel} o di {@code focus}.
+ * <p>
+ * I valori coincidono con quelli di {@link MessageBasedSensorModel}. L'oggetto va creato una
+ * volta e riutilizzato con {@link #reset(byte[], int, int)}: gli array restituiti restano validi
+ * solo fino al messaggio successivo. Una lettura assente vale {@link Double#NaN} se scalare,
+ * {@code null} se multipla. Non è thread-safe.
+ */
+public final class LazySensorModel implements SensorModel {
+
+	/** Slot dei valori già decodificati e copia dei byte del messaggio */
+	private final SensorReadings values = new SensorReadings();
+
+	/** Inizio di ogni lettura nel messaggio, indicizzato per ordinale */
+	private final int[] starts = new int[SensorReading.values().length];
+
+	/** Fine (esclusa) di ogni lettura nel messaggio, indicizzata per ordinale */
+	private final int[] ends = new int[SensorReading.values().length];
+
+	/** Maschera delle letture presenti nel messaggio */
+	private int indexed;
+
+	/** Maschera delle letture già decodificate */
+	private int decoded;
+
+	/**
+	 * Costruttore vuoto: il modello va riempito con {@link #reset(byte[], int, int)}.
+	 */
+	public LazySensorModel() {
+	}
+
+	/**
+	 * Costruttore che indicizza subito un messaggio stringa.
+	 *
+	 * @param message messaggio ricevuto dal server TORCS
+	 */
+	public LazySensorModel(String message) {
+		reset(message);
+	}
+
+	/**
+	 * Indicizza un nuovo messaggio, scartando le letture del precedente.
+	 * I byte vengono copiati: il chiamante può riutilizzare il proprio buffer.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte del messaggio
+	 * @return questo oggetto
+	 */
+	public LazySensorModel reset(byte[] data, int offset, int length) {
+		values.reset(data, offset, length);
+		indexed = ByteMessageParser.index(values.rawBytes(), 0, length, starts, ends);
+		decoded = 0;
+		return this;
+	}
+
+	/**
+	 * Indicizza un nuovo messaggio stringa.
+	 *
+	 * @param message messaggio ricevuto dal server TORCS
+	 * @return questo oggetto
+	 * @see #reset(byte[], int, int)
+	 */
+	public LazySensorModel reset(String message) {
+		byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+		return reset(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Indicizza lo stesso messaggio di un altro modello, copiandone i byte: la copia può
+	 * essere letta da un altro thread mentre l'originale passa al messaggio successivo.
+	 *
+	 * @param other modello da copiare
+	 * @return questo oggetto
+	 */
+	public LazySensorModel copyFrom(LazySensorModel other) {
+		return reset(other.values.rawBytes(), 0, other.values.rawLength());
+	}
+
+	/**
+	 * @param reading lettura richiesta
+	 * @return {@code true} se la lettura è presente nel messaggio corrente
+	 */
+	public boolean has(SensorReading reading) {
+		return (indexed & (1 << reading.ordinal())) != 0;
+	}
+
+	/**
+	 * Restituisce il valore di una lettura scalare, decodificandola se necessario.
+	 *
+	 * @param reading lettura richiesta
+	 * @return valore della lettura, oppure {@link Double#NaN} se assente
+	 */
+	public double get(SensorReading reading) {
+		decode(reading);
+		return values.get(reading);
+	}
+
+	/**
+	 * Restituisce i valori di una lettura multipla, decodificandola se necessario.
+	 *
+	 * @param reading lettura richiesta
+	 * @return valori della lettura, oppure {@code null} se assente
+	 */
+	public double[] getArray(SensorReading reading) {
+		decode(reading);
+		return values.getArray(reading);
+	}
+
+	/**
+	 * Decodifica una lettura alla prima richiesta.
+	 *
+	 * @param reading lettura da decodificare
+	 */
+	private void decode(SensorReading reading) {
+		int bit = 1 << reading.ordinal();
+		if ((decoded & bit) == 0) {
+			decoded |= bit;
+			if ((indexed & bit) != 0) {
+				ByteMessageParser.parseReading(values.rawBytes(), starts[reading.ordinal()], ends[reading.ordinal()], values);
+			}
+		}
+	}
+
+	/** @return velocità longitudinale del veicolo (asse X) */
+	public double getSpeed() {
+		return get(SensorReading.SPEED_X);
+	}
+
+	/** @return angolo tra l'asse del veicolo e l'asse della pista */
+	public double getAngleToTrackAxis() {
+		return get(SensorReading.ANGLE);
+	}
+
+	/** @return array con i valori dei sensori di distanza ai bordi della pista */
+	public double[] getTrackEdgeSensors() {
+		return getArray(SensorReading.TRACK);
+	}
+
+	/** @return valori dei sensori di "focus" (direzione specifica osservata) */
+	public double[] getFocusSensors() {
+		return getArray(SensorReading.FOCUS);
+	}
+
+	/** @return marcia attualmente inserita (intero da -1 a 6) */
+	public int getGear() {
+		return (int) get(SensorReading.GEAR);
+	}
+
+	/** @return array dei sensori di prossimità agli avversari (360°) */
+	public double[] getOpponentSensors() {
+		return getArray(SensorReading.OPPONENTS);
+	}
+
+	/** @return posizione corrente in gara (1 = primo, ecc.) */
+	public int getRacePosition() {
+		return (int) get(SensorReading.RACE_POS);
+	}
+
+	/** @return velocità laterale del veicolo (asse Y) */
+	public double getLateralSpeed() {
+		return get(SensorReading.SPEED_Y);
+	}
+
+	/** @return tempo corrente sul giro in corso */
+	public double getCurrentLapTime() {
+		return get(SensorReading.CUR_LAP_TIME);
+	}
+
+	/** @return danno accumulato dal veicolo */
+	public double getDamage() {
+		return get(SensorReading.DAMAGE);
+	}
+
+	/** @return distanza dalla linea di partenza */
+	public double getDistanceFromStartLine() {
+		return get(SensorReading.DIST_FROM_START);
+	}
+
+	/** @return distanza totale percorsa in gara */
+	public double getDistanceRaced() {
+		return get(SensorReading.DIST_RACED);
+	}
+
+	/** @return livello attuale di carburante nel serbatoio */
+	public double getFuelLevel() {
+		return get(SensorReading.FUEL);
+	}
+
+	/** @return tempo dell'ultimo giro completato */
+	public double getLastLapTime() {
+		return get(SensorReading.LAST_LAP_TIME);
+	}
+
+	/** @return numero di giri del motore al minuto */
+	public double getRPM() {
+		return get(SensorReading.RPM);
+	}
+
+	/** @return posizione del veicolo rispetto al centro pista (range [-1,1]) */
+	public double getTrackPosition() {
+		return get(SensorReading.TRACK_POS);
+	}
+
+	/** @return velocità di rotazione delle quattro ruote (in rad/s) */
+	public double[] getWheelSpinVelocity() {
+		return getArray(SensorReading.WHEEL_SPIN_VEL);
+	}
+
+	/** @return il messaggio grezzo originario ricevuto dal server */
+	public String getMessage() {
+		return values.getMessage();
+	}
+
+	/** @return altezza del veicolo dal suolo */
+	public double getZ() {
+		return get(SensorReading.Z);
+	}
+
+	/** @return velocità verticale del veicolo */
+	public double getZSpeed() {
+		return get(SensorReading.SPEED_Z);
+	}
+}
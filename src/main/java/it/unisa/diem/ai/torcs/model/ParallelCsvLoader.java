@@ -0,0 +1,356 @@
+package it.unisa.diem.ai.torcs.model;
+
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+
+/**
+ * Caricamento parallelo di un dataset CSV, con lo stesso risultato di
+ * {@link Dataset#loadFromCSV(String, Dataset.Storage)}.
+ * <p>
+ * Il file viene mappato in memoria e diviso in blocchi che terminano sempre dopo un
+ * {@code '\n'}; i blocchi vengono analizzati in parallelo sul {@link ForkJoinPool} comune,
+ * ognuno nelle proprie colonne primitive, e infine concatenati nell'ordine del file. Le righe
+ * sono analizzate direttamente sui byte: niente {@code readLine()}, niente {@code split} e
+ * nessuna stringa per i valori, convertiti con {@link ByteMessageParser#parseDecimal} (che
+ * accetta sia {@code ','} sia {@code '.'} come separatore decimale).
+ * <p>
+ * Le regole sono quelle del caricamento sequenziale: righe separate da {@code \n},
+ * {@code \r} o {@code \r\n} e numerate dalla prima, spazi iniziali e finali ignorati,
+ * intestazione confrontata solo se è nella prima riga, colonne contate come da
+ * {@code String.split(";")} (quindi senza i campi vuoti finali). Le segnalazioni delle righe
+ * scartate vengono raccolte per blocco e stampate alla fine in ordine di riga, con gli stessi
+ * testi; quando un valore non è valido il messaggio viene ricostruito con lo stesso percorso di
+ * {@link Sample#Sample(String)}.
+ * <p>
+ * Divisione in blocchi e analisi sono usate anche da {@link StreamingNormalizer}, che elabora
+ * il file una finestra alla volta.
+ */
+final class ParallelCsvLoader {
+
+    /** Feature memorizzate, nell'ordine delle colonne */
+    private static final SensorFeature[] FEATURES = SensorFeature.values();
+
+    /** Intestazione attesa nella prima riga */
+    private static final byte[] HEADER = SensorFeature.csvHeader().getBytes(StandardCharsets.US_ASCII);
+
+    /** Colonne attese in ogni riga: le feature, il codice e il nome della label */
+    private static final int COLUMNS = FEATURES.length + 2;
+
+    /** Dimensione minima di un blocco: sotto questa soglia non conviene dividere il lavoro */
+    private static final long MIN_CHUNK = 1 << 20;
+
+    /** Dimensione massima di un blocco, che viene copiato in un array durante l'analisi */
+    private static final long MAX_CHUNK = 16 << 20;
+
+    /** Blocchi per thread del pool, per bilanciare blocchi più lenti di altri */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelCsvLoader() {
+    }
+
+    /**
+     * Carica un dataset CSV analizzandone i blocchi in parallelo.
+     *
+     * @param path percorso del file CSV
+     * @param storage memoria in cui allocare le colonne
+     * @return dataset caricato
+     * @throws IOException se il file non è leggibile
+     */
+    static Dataset load(Path path, Dataset.Storage storage) throws IOException {
+        Chunk[] chunks;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Arena arena = Arena.ofShared()) {
+            long fileSize = channel.size();
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, arena);
+            chunks = split(file, true);
+            ForkJoinTask.invokeAll(chunks);
+        }
+
+        int rows = 0;
+        long lines = 0;
+        for (Chunk chunk : chunks) {
+            lines = printMessages(chunk, lines);
+            rows += chunk.rows;
+        }
+        return merge(chunks, rows, storage);
+    }
+
+    /**
+     * Divide un file (o una sua porzione che termina dopo un {@code '\n'}) in blocchi che
+     * iniziano all'inizio di una riga.
+     *
+     * @param file contenuto da dividere
+     * @param startOfFile se true il contenuto inizia con la prima riga del file (l'intestazione)
+     * @return blocchi da analizzare, nell'ordine del file
+     */
+    static Chunk[] split(MemorySegment file, boolean startOfFile) {
+        long size = file.byteSize();
+        long target = size / ((long) ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD);
+        target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+
+        List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            while (end < size && file.get(JAVA_BYTE, end - 1) != '\n') {
+                end++;
+            }
+            chunks.add(new Chunk(file, start, end, startOfFile && chunks.isEmpty()));
+            start = end;
+        }
+        return chunks.toArray(new Chunk[0]);
+    }
+
+    /**
+     * Stampa le segnalazioni di un blocco già analizzato, con i numeri di riga del file.
+     *
+     * @param chunk blocco analizzato
+     * @param lines righe del file che precedono il blocco
+     * @return righe del file fino alla fine del blocco
+     */
+    static long printMessages(Chunk chunk, long lines) {
+        for (int m = 0; m < chunk.messages; m++) {
+            String reason = chunk.reasons[m];
+            System.err.println(reason == null
+                    ? "Warning: header does not match expected format!"
+                    : "Skipping malformed line " + (lines + chunk.messageLines[m]) + ": " + reason);
+        }
+        return lines + chunk.lines;
+    }
+
+    /**
+     * Concatena le colonne dei blocchi nel tipo di memoria richiesto.
+     */
+    private static Dataset merge(Chunk[] chunks, int rows, Dataset.Storage storage) {
+        Arena arena = storage != Dataset.Storage.HEAP ? Arena.ofAuto() : null;
+        MemorySegment[] columns = new MemorySegment[FEATURES.length];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = arena != null
+                    ? arena.allocate((long) rows * Double.BYTES, Double.BYTES)
+                    : MemorySegment.ofArray(new double[rows]);
+        }
+        MemorySegment labels = arena != null ? arena.allocate(rows, 1) : MemorySegment.ofArray(new byte[rows]);
+
+        long row = 0;
+        for (Chunk chunk : chunks) {
+            for (int f = 0; f < columns.length; f++) {
+                MemorySegment.copy(chunk.columns[f], 0, columns[f], JAVA_DOUBLE, row * Double.BYTES, chunk.rows);
+            }
+            MemorySegment.copy(chunk.labels, 0, labels, JAVA_BYTE, row, chunk.rows);
+            row += chunk.rows;
+        }
+        return new Dataset(storage, columns, labels, rows);
+    }
+
+    /**
+     * Blocco di righe analizzato da un singolo thread.
+     */
+    @SuppressWarnings("serial")
+    static final class Chunk extends RecursiveAction {
+
+        private final MemorySegment file;
+        private final long start;
+        private final long end;
+        private final boolean first;   // Il blocco contiene la prima riga del file
+
+        /** Colonne delle feature lette dal blocco */
+        double[][] columns = new double[FEATURES.length][];
+        byte[] labels;
+        int rows;
+
+        /** Righe del blocco, comprese quelle vuote o scartate */
+        int lines;
+
+        /** Segnalazioni: riga nel blocco e motivo (null per l'intestazione non valida) */
+        int[] messageLines = new int[0];
+        String[] reasons = new String[0];
+        int messages;
+
+        /** Inizio e fine dei token della riga corrente */
+        private final int[] tokenStarts = new int[COLUMNS];
+        private final int[] tokenEnds = new int[COLUMNS];
+        private final double[] values = new double[FEATURES.length];
+
+        Chunk(MemorySegment file, long start, long end, boolean first) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+        }
+
+        @Override
+        protected void compute() {
+            parse();
+        }
+
+        /**
+         * Analizza il blocco nel thread chiamante.
+         */
+        void parse() {
+            byte[] data = file.asSlice(start, end - start).toArray(JAVA_BYTE);
+            // Stima delle righe dalla lunghezza tipica di una riga (circa 8 byte per valore)
+            int capacity = Math.max(16, data.length / (COLUMNS * 8));
+            for (int f = 0; f < columns.length; f++) {
+                columns[f] = new double[capacity];
+            }
+            labels = new byte[capacity];
+
+            int pos = 0;
+            while (pos < data.length) {
+                int lineEnd = pos;
+                while (lineEnd < data.length && data[lineEnd] != '\n' && data[lineEnd] != '\r') {
+                    lineEnd++;
+                }
+                lines++;
+                parseLine(data, pos, lineEnd);
+                pos = lineEnd;
+                if (pos < data.length) {
+                    pos += data[pos] == '\r' && pos + 1 < data.length && data[pos + 1] == '\n' ? 2 : 1;
+                }
+            }
+        }
+
+        /**
+         * Analizza una riga come il ciclo di {@link Dataset#loadFromCSV(String, Dataset.Storage)}.
+         */
+        private void parseLine(byte[] data, int from, int to) {
+            while (from < to && (data[from] & 0xFF) <= ' ') {
+                from++;
+            }
+            while (to > from && (data[to - 1] & 0xFF) <= ' ') {
+                to--;
+            }
+            if (from == to) {
+                return;
+            }
+            if (first && lines == 1) {
+                if (!Arrays.equals(data, from, to, HEADER, 0, HEADER.length)) {
+                    report(null);
+                }
+                return;
+            }
+
+            // Token come in String.split(";"): i campi vuoti finali non vengono contati
+            int tokens = 0;
+            int count = 0;
+            int tokenStart = from;
+            for (int p = from; p <= to; p++) {
+                if (p == to || data[p] == ';') {
+                    if (tokens < COLUMNS) {
+                        tokenStarts[tokens] = tokenStart;
+                        tokenEnds[tokens] = p;
+                    }
+                    tokens++;
+                    if (p > tokenStart) {
+                        count = tokens;
+                    }
+                    tokenStart = p + 1;
+                }
+            }
+            if (count != COLUMNS) {
+                report("wrong number of columns (" + count + " instead of " + COLUMNS + ")");
+                return;
+            }
+            for (int t = 0; t < COLUMNS - 1; t++) {
+                while (tokenStarts[t] < tokenEnds[t] && (data[tokenStarts[t]] & 0xFF) <= ' ') {
+                    tokenStarts[t]++;
+                }
+                while (tokenEnds[t] > tokenStarts[t] && (data[tokenEnds[t] - 1] & 0xFF) <= ' ') {
+                    tokenEnds[t]--;
+                }
+            }
+
+            try {
+                for (int f = 0; f < values.length; f++) {
+                    values[f] = parseFeature(data, tokenStarts[f], tokenEnds[f]);
+                }
+                Label label = Label.fromCode(parseCode(data, tokenStarts[COLUMNS - 2], tokenEnds[COLUMNS - 2]));
+                add(label);
+            } catch (Exception e) {
+                report(e.getMessage());
+            }
+        }
+
+        private void add(Label label) {
+            if (rows == labels.length) {
+                int capacity = rows * 2;
+                for (int f = 0; f < columns.length; f++) {
+                    columns[f] = Arrays.copyOf(columns[f], capacity);
+                }
+                labels = Arrays.copyOf(labels, capacity);
+            }
+            for (int f = 0; f < values.length; f++) {
+                columns[f][rows] = values[f];
+            }
+            labels[rows] = (byte) label.getCode();
+            rows++;
+        }
+
+        private void report(String reason) {
+            if (messages == reasons.length) {
+                int capacity = Math.max(8, messages * 2);
+                messageLines = Arrays.copyOf(messageLines, capacity);
+                reasons = Arrays.copyOf(reasons, capacity);
+            }
+            messageLines[messages] = lines;
+            reasons[messages] = reason;
+            messages++;
+        }
+    }
+
+    /**
+     * Converte il valore di una feature (token già privo di spazi). In caso di errore ripete la
+     * conversione sul testo decodificato, come {@link Sample}, così che l'eccezione abbia lo
+     * stesso messaggio.
+     */
+    private static double parseFeature(byte[] data, int from, int to) {
+        try {
+            return ByteMessageParser.parseDecimal(data, from, to);
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(text(data, from, to).replace(',', '.'));
+        }
+    }
+
+    /**
+     * Converte il codice della label (token già privo di spazi); i casi insoliti (segni multipli, cifre non ASCII,
+     * valori troppo grandi) passano da {@link Integer#parseInt(String)}.
+     */
+    private static int parseCode(byte[] data, int from, int to) {
+        int i = from;
+        boolean negative = i < to && data[i] == '-';
+        if (i < to && (data[i] == '-' || data[i] == '+')) {
+            i++;
+        }
+        if (i == to || to - i > 9) {
+            return Integer.parseInt(text(data, from, to));
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return Integer.parseInt(text(data, from, to));
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static String text(byte[] data, int from, int to) {
+        return new String(data, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -1,30 +1,15 @@
 package it.unisa.diem.ai.torcs.model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Rappresenta un campione etichettato composto da un vettore di feature e da una {@link Label}.
  * Ogni {@code Sample} può essere caricato da una riga CSV o costruito direttamente da oggetti.
+ *
+ * @param feature vettore delle caratteristiche (features) del campione
+ * @param label etichetta associata al campione (classe)
  */
-public class Sample {
-
-    /** Vettore delle caratteristiche (features) del campione */
-    private final FeatureVector feature;
-
-    /** Etichetta associata al campione (classe) */
-    private final Label label;
-
-    /**
-     * Costruttore base: crea un nuovo Sample con feature e label specificate.
-     * @param feature vettore delle feature
-     * @param label etichetta associata
-     */
-    public Sample(FeatureVector feature, Label label) {
-        this.feature = feature;
-        this.label = label;
-    }
+public record Sample(FeatureVector feature, Label label) {
 
     /**
      * Costruttore che crea un Sample a partire da una riga CSV.
@@ -34,28 +19,29 @@ public class Sample {
      * @throws NumberFormatException se il parsing dei valori fallisce
      */
     public Sample(String csvLine) {
-        String[] tokens = csvLine.split(";");
-        List<Double> features = new ArrayList<>();
-        for (int i = 0; i < tokens.length - 2; i++) {
-            String sanitized = tokens[i].trim().replace(',', '.');
-            features.add(Double.parseDouble(sanitized));
-        }
-        this.feature = new FeatureVector(features);
-        this.label = Label.fromCode(Integer.parseInt(tokens[tokens.length - 2].trim()));
+        this(csvLine.split(";"));
     }
 
     /**
-     * @return vettore delle feature del campione
+     * Costruttore di supporto che riceve la riga CSV già suddivisa in token.
+     * @param tokens token della riga CSV
      */
-    public FeatureVector getFeature() {
-        return feature;
+    private Sample(String[] tokens) {
+        this(parseFeatures(tokens), Label.fromCode(Integer.parseInt(tokens[tokens.length - 2].trim())));
     }
 
     /**
-     * @return etichetta del campione
+     * Converte i token numerici di una riga CSV (separatore decimale ',' o '.') in un vettore di feature.
+     * @param tokens token della riga CSV
+     * @return vettore delle feature
      */
-    public Label getLabel() {
-        return label;
+    private static FeatureVector parseFeatures(String[] tokens) {
+        FeatureVector features = new FeatureVector(tokens.length - 2);
+        for (int i = 0; i < tokens.length - 2; i++) {
+            String sanitized = tokens[i].trim().replace(',', '.');
+            features.set(i, Double.parseDouble(sanitized));
+        }
+        return features;
     }
 
     /**
@@ -64,21 +50,19 @@ public class Sample {
      * @return distanza euclidea tra i due campioni
      */
     public double distanzaEuclidea(Sample altro) {
-        return this.feature.distanzaEuclidea(altro.getFeature());
+        return this.feature.distanzaEuclidea(altro.feature());
     }
 
     /**
      * Converte questo Sample in una riga CSV.
-     * <p>Formato: {@code f1;f2;...;fn;labelCode;labelName}</p>
+     * <p>Formato: {@code f1;f2;...;fn;labelCode;labelName}, con le feature come
+     * {@code String.format(Locale.ITALY, "%.5f", valore)} (vedi {@link CsvRowFormatter})</p>
      * @return stringa CSV del campione
      */
     public String toCSV() {
-        StringBuilder sb = new StringBuilder();
-        for (Double val : feature.getValues()) {
-            sb.append(String.format(Locale.ITALY, "%.5f", val));
-            sb.append(";");
-        }
-        sb.append(label.getCode()).append(";").append(label);
-        return sb.toString();
+        double[] values = feature.toArray();
+        byte[] row = new byte[CsvRowFormatter.maxRowLength(values, values.length)];
+        int length = CsvRowFormatter.formatRow(values, values.length, label, CsvRowFormatter.ITALIAN_SEPARATOR, row, 0);
+        return new String(row, 0, length, StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,155 @@
+package it.unisa.diem.ai.torcs.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Enumerazione delle letture note che il server TORCS invia a ogni passo di simulazione,
+ * nella forma {@code (nome valore ...)}.
+ * Ogni lettura conosce il proprio nome nel protocollo e il numero di valori atteso,
+ * così che i parser possano riconoscerla confrontando direttamente i byte del messaggio.
+ */
+public enum SensorReading {
+
+    /** Angolo tra l'asse del veicolo e l'asse della pista */
+    ANGLE("angle", 1),
+
+    /** Tempo corrente sul giro in corso */
+    CUR_LAP_TIME("curLapTime", 1),
+
+    /** Danno accumulato dal veicolo */
+    DAMAGE("damage", 1),
+
+    /** Distanza dalla linea di partenza */
+    DIST_FROM_START("distFromStart", 1),
+
+    /** Distanza totale percorsa in gara */
+    DIST_RACED("distRaced", 1),
+
+    /** Sensori di "focus" (direzione specifica osservata) */
+    FOCUS("focus", 5),
+
+    /** Livello di carburante */
+    FUEL("fuel", 1),
+
+    /** Marcia inserita */
+    GEAR("gear", 1),
+
+    /** Tempo dell'ultimo giro completato */
+    LAST_LAP_TIME("lastLapTime", 1),
+
+    /** Sensori di prossimità agli avversari (360°, risoluzione 10°) */
+    OPPONENTS("opponents", 36),
+
+    /** Posizione in gara */
+    RACE_POS("racePos", 1),
+
+    /** Giri del motore al minuto */
+    RPM("rpm", 1),
+
+    /** Velocità longitudinale (asse X) */
+    SPEED_X("speedX", 1),
+
+    /** Velocità laterale (asse Y) */
+    SPEED_Y("speedY", 1),
+
+    /** Velocità verticale (asse Z) */
+    SPEED_Z("speedZ", 1),
+
+    /** Sensori di distanza dai bordi della pista */
+    TRACK("track", 19),
+
+    /** Posizione rispetto al centro pista */
+    TRACK_POS("trackPos", 1),
+
+    /** Velocità di rotazione delle quattro ruote */
+    WHEEL_SPIN_VEL("wheelSpinVel", 4),
+
+    /** Altezza del veicolo dal suolo */
+    Z("z", 1);
+
+    /** Copia condivisa di {@link #values()}, per evitare di clonare l'array a ogni ricerca */
+    private static final SensorReading[] VALUES = values();
+
+    /** Nome della lettura nel protocollo */
+    private final String key;
+
+    /** Nome della lettura codificato in ASCII, per il confronto con i byte ricevuti */
+    private final byte[] keyBytes;
+
+    /** Numero di valori atteso */
+    private final int length;
+
+    /**
+     * @param key nome della lettura nel protocollo
+     * @param length numero di valori atteso (1 per le letture scalari)
+     */
+    SensorReading(String key, int length) {
+        this.key = key;
+        this.keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+        this.length = length;
+    }
+
+    /**
+     * @return nome della lettura nel protocollo (es. {@code "speedX"})
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return numero di valori atteso per la lettura
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Indica se la lettura è un array di valori. Come in {@link it.unisa.diem.ai.torcs.io.MessageParser},
+     * per le letture scalari viene considerato solo il primo valore.
+     *
+     * @return {@code true} per track, opponents, wheelSpinVel e focus
+     */
+    public boolean isArray() {
+        return length > 1;
+    }
+
+    /**
+     * Cerca la lettura il cui nome coincide con i byte indicati, senza creare stringhe.
+     *
+     * @param data buffer contenente il nome
+     * @param from posizione del primo byte del nome
+     * @param to posizione successiva all'ultimo byte del nome
+     * @return lettura corrispondente, oppure {@code null} se il nome non è noto
+     */
+    public static SensorReading match(byte[] data, int from, int to) {
+        int length = to - from;
+        for (SensorReading reading : VALUES) {
+            byte[] key = reading.keyBytes;
+            if (key.length == length && key[0] == data[from]) {
+                int i = 1;
+                while (i < length && key[i] == data[from + i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return reading;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cerca la lettura con il nome indicato.
+     *
+     * @param key nome della lettura nel protocollo
+     * @return lettura corrispondente, oppure {@code null} se il nome non è noto
+     */
+    public static SensorReading fromKey(String key) {
+        for (SensorReading reading : VALUES) {
+            if (reading.key.equals(key)) {
+                return reading;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+package it.unisa.diem.ai.torcs.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementazione di {@link SensorModel} a slot fissi, riempita da un parser che lavora
+ * direttamente sui byte del messaggio (vedi {@link it.unisa.diem.ai.torcs.io.ByteMessageParser}).
+ * <p>
+ * Ogni {@link SensorReading} ha uno slot primitivo: le letture scalari in un array di
+ * {@code double}, quelle multiple in array preallocati e riutilizzati. L'oggetto va creato una
+ * volta e riempito a ogni messaggio: gli array restituiti dai getter restano validi solo fino
+ * al messaggio successivo e non vanno modificati. Il testo del messaggio viene ricostruito
+ * solo se richiesto con {@link #getMessage()}. Non è thread-safe.
+ * <p>
+ * Una lettura assente dal messaggio vale {@link Double#NaN} se scalare, {@code null} se multipla.
+ */
+public final class SensorReadings implements SensorModel {
+
+	/** Letture note, nell'ordine degli slot */
+	private static final SensorReading[] READINGS = SensorReading.values();
+
+	/** Valori delle letture scalari, indicizzati per ordinale */
+	private final double[] scalars = new double[READINGS.length];
+
+	/** Valori delle letture multiple, indicizzati per ordinale ({@code null} per le scalari) */
+	private final double[][] arrays = new double[READINGS.length][];
+
+	/** Maschera delle letture presenti nel messaggio corrente (un bit per ordinale) */
+	private int present;
+
+	/** Copia dei byte del messaggio corrente */
+	private byte[] raw = new byte[1024];
+
+	/** Numero di byte validi in {@link #raw} */
+	private int rawLength;
+
+	/** Testo del messaggio, costruito su richiesta */
+	private String message;
+
+	/**
+	 * Costruttore che prealloca gli slot di tutte le letture note.
+	 */
+	public SensorReadings() {
+		for (SensorReading reading : READINGS) {
+			if (reading.isArray()) {
+				arrays[reading.ordinal()] = new double[reading.getLength()];
+			}
+		}
+	}
+
+	/**
+	 * Prepara l'oggetto per un nuovo messaggio: azzera le letture presenti e copia i byte
+	 * del messaggio, che restano così disponibili anche se il chiamante riusa il proprio buffer.
+	 *
+	 * @param data buffer contenente il messaggio
+	 * @param offset posizione del primo byte
+	 * @param length numero di byte del messaggio
+	 */
+	public void reset(byte[] data, int offset, int length) {
+		if (raw.length < length) {
+			raw = new byte[Math.max(length, 2 * raw.length)];
+		}
+		System.arraycopy(data, offset, raw, 0, length);
+		rawLength = length;
+		present = 0;
+		message = null;
+	}
+
+	/**
+	 * Imposta il valore di una lettura scalare.
+	 *
+	 * @param reading lettura da impostare
+	 * @param value valore letto
+	 */
+	public void set(SensorReading reading, double value) {
+		scalars[reading.ordinal()] = value;
+		present |= 1 << reading.ordinal();
+	}
+
+	/**
+	 * Restituisce lo slot di una lettura multipla, dimensionato per {@code count} valori, e la
+	 * segna come presente. Lo slot viene riallocato solo se il numero di valori cambia.
+	 *
+	 * @param reading lettura multipla da riempire
+	 * @param count numero di valori presenti nel messaggio
+	 * @return array da riempire con i valori
+	 */
+	public double[] slot(SensorReading reading, int count) {
+		int i = reading.ordinal();
+		if (arrays[i] == null || arrays[i].length != count) {
+			arrays[i] = new double[count];
+		}
+		present |= 1 << i;
+		return arrays[i];
+	}
+
+	/** @return copia dei byte del messaggio corrente (valida fino al prossimo {@link #reset}) */
+	byte[] rawBytes() {
+		return raw;
+	}
+
+	/** @return numero di byte validi restituiti da {@link #rawBytes()} */
+	int rawLength() {
+		return rawLength;
+	}
+
+	/**
+	 * @param reading lettura richiesta
+	 * @return {@code true} se la lettura era presente nel messaggio corrente
+	 */
+	public boolean has(SensorReading reading) {
+		return (present & (1 << reading.ordinal())) != 0;
+	}
+
+	/**
+	 * Restituisce il valore di una lettura scalare.
+	 *
+	 * @param reading lettura richiesta
+	 * @return valore della lettura, oppure {@link Double#NaN} se assente
+	 */
+	public double get(SensorReading reading) {
+		return has(reading) ? scalars[reading.ordinal()] : Double.NaN;
+	}
+
+	/**
+	 * Restituisce i valori di una lettura multipla, senza copiarli.
+	 *
+	 * @param reading lettura richiesta
+	 * @return valori della lettura, oppure {@code null} se assente
+	 */
+	public double[] getArray(SensorReading reading) {
+		return has(reading) ? arrays[reading.ordinal()] : null;
+	}
+
+	/** @return velocità longitudinale del veicolo (asse X) */
+	public double getSpeed() {
+		return get(SensorReading.SPEED_X);
+	}
+
+	/** @return angolo tra l'asse del veicolo e l'asse della pista */
+	public double getAngleToTrackAxis() {
+		return get(SensorReading.ANGLE);
+	}
+
+	/** @return array con i valori dei sensori di distanza ai bordi della pista */
+	public double[] getTrackEdgeSensors() {
+		return getArray(SensorReading.TRACK);
+	}
+
+	/** @return valori dei sensori di "focus" (direzione specifica osservata) */
+	public double[] getFocusSensors() {
+		return getArray(SensorReading.FOCUS);
+	}
+
+	/** @return marcia attualmente inserita (intero da -1 a 6) */
+	public int getGear() {
+		return (int) get(SensorReading.GEAR);
+	}
+
+	/** @return array dei sensori di prossimità agli avversari (360°) */
+	public double[] getOpponentSensors() {
+		return getArray(SensorReading.OPPONENTS);
+	}
+
+	/** @return posizione corrente in gara (1 = primo, ecc.) */
+	public int getRacePosition() {
+		return (int) get(SensorReading.RACE_POS);
+	}
+
+	/** @return velocità laterale del veicolo (asse Y) */
+	public double getLateralSpeed() {
+		return get(SensorReading.SPEED_Y);
+	}
+
+	/** @return tempo corrente sul giro in corso */
+	public double getCurrentLapTime() {
+		return get(SensorReading.CUR_LAP_TIME);
+	}
+
+	/** @return danno accumulato dal veicolo */
+	public double getDamage() {
+		return get(SensorReading.DAMAGE);
+	}
+
+	/** @return distanza dalla linea di partenza */
+	public double getDistanceFromStartLine() {
+		return get(SensorReading.DIST_FROM_START);
+	}
+
+	/** @return distanza totale percorsa in gara */
+	public double getDistanceRaced() {
+		return get(SensorReading.DIST_RACED);
+	}
+
+	/** @return livello attuale di carburante nel serbatoio */
+	public double getFuelLevel() {
+		return get(SensorReading.FUEL);
+	}
+
+	/** @return tempo dell'ultimo giro completato */
+	public double getLastLapTime() {
+		return get(SensorReading.LAST_LAP_TIME);
+	}
+
+	/** @return numero di giri del motore al minuto */
+	public double getRPM() {
+		return get(SensorReading.RPM);
+	}
+
+	/** @return posizione del veicolo rispetto al centro pista (range [-1,1]) */
+	public double getTrackPosition() {
+		return get(SensorReading.TRACK_POS);
+	}
+
+	/** @return velocità di rotazione delle quattro ruote (in rad/s) */
+	public double[] getWheelSpinVelocity() {
+		return getArray(SensorReading.WHEEL_SPIN_VEL);
+	}
+
+	/** @return il messaggio grezzo originario ricevuto dal server, ricostruito alla prima richiesta */
+	public String getMessage() {
+		if (message == null) {
+			message = new String(raw, 0, rawLength, StandardCharsets.ISO_8859_1);
+		}
+		return message;
+	}
+
+	/** @return altezza del veicolo dal suolo */
+	public double getZ() {
+		return get(SensorReading.Z);
+	}
+
+	/** @return velocità verticale del veicolo */
+	public double getZSpeed() {
+		return get(SensorReading.SPEED_Z);
+	}
+}
@@ -0,0 +1,194 @@
+package it.unisa.diem.ai.torcs.model;
+
+import it.unisa.diem.ai.torcs.utils.FeatureNormalizer;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/**
+ * Normalizzazione da file a file di un dataset CSV grezzo, senza caricarlo in un {@link Dataset}:
+ * il risultato è lo stesso di {@link Dataset#loadFromCSV(String)} seguito da
+ * {@link Dataset#datasetNormalizer(String)} (uscita CSV) o da
+ * {@link Dataset#saveToBinary(String, boolean)} delle feature normalizzate (uscita binaria).
+ * <p>
+ * Il file di ingresso viene mappato una finestra alla volta ({@link #WINDOW} byte, fino alla
+ * fine dell'ultima riga completa). Ogni finestra è divisa in blocchi come in
+ * {@link ParallelCsvLoader}; sul {@link ForkJoinPool} comune ogni blocco viene analizzato nelle
+ * proprie colonne primitive, normalizzato sul posto con
+ * {@link FeatureNormalizer#normalizeColumn} e, per l'uscita CSV, formattato in un buffer di
+ * byte. I blocchi vengono poi scritti nell'ordine del file e la finestra viene rilasciata, quindi
+ * la memoria usata non dipende dalla dimensione del file. Le segnalazioni delle righe scartate
+ * sono quelle del caricamento, con i numeri di riga del file.
+ */
+final class StreamingNormalizer {
+
+    /** Byte del file di ingresso elaborati per finestra */
+    private static final long WINDOW = 16 << 20;
+
+    private StreamingNormalizer() {
+    }
+
+    /**
+     * Destinazione dei blocchi normalizzati, chiamata nell'ordine del file.
+     */
+    private interface Sink {
+        void write(Part part) throws IOException;
+    }
+
+    /**
+     * Normalizza un dataset CSV in un nuovo file CSV (sovrascritto), con il separatore decimale
+     * {@code '.'} di {@link Dataset#datasetNormalizer(String)}.
+     *
+     * @param input file CSV grezzo
+     * @param output file CSV normalizzato
+     * @return righe scritte
+     * @throws IOException se l'ingresso non è leggibile, l'uscita non è scrivibile o i due file coincidono
+     */
+    static long toCSV(Path input, Path output) throws IOException {
+        checkDistinct(input, output);
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DatasetCsvWriter.writeHeader(out);
+            return process(input, true, part -> DatasetCsvWriter.writeFully(out, part.text, part.textLength));
+        }
+    }
+
+    /**
+     * Normalizza un dataset CSV in un file binario a colonne (vedi {@link DatasetFile}).
+     *
+     * @param input file CSV grezzo
+     * @param output file binario normalizzato
+     * @param singlePrecision se true le feature vengono salvate come float
+     * @return righe scritte
+     * @throws IOException se l'ingresso non è leggibile, l'uscita non è scrivibile o i due file coincidono
+     */
+    static long toBinary(Path input, Path output, boolean singlePrecision) throws IOException {
+        checkDistinct(input, output);
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(output, singlePrecision)) {
+            process(input, false, part -> writer.append(part.chunk.columns, part.chunk.labels, part.chunk.rows));
+            writer.finish();
+            return writer.rows();
+        }
+    }
+
+    /**
+     * Elabora il file di ingresso una finestra alla volta.
+     *
+     * @param input file CSV grezzo
+     * @param csv se true i blocchi vengono anche formattati in CSV
+     * @param sink destinazione dei blocchi
+     * @return righe elaborate
+     */
+    private static long process(Path input, boolean csv, Sink sink) throws IOException {
+        FeatureNormalizer normalizer = new FeatureNormalizer();
+        long rows = 0;
+        long lines = 0;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                Part[] parts;
+                try (Arena arena = Arena.ofShared()) {
+                    MemorySegment window = window(channel, start, size, arena);
+                    ParallelCsvLoader.Chunk[] chunks = ParallelCsvLoader.split(window, start == 0);
+                    parts = new Part[chunks.length];
+                    for (int c = 0; c < chunks.length; c++) {
+                        parts[c] = new Part(chunks[c], normalizer, csv);
+                    }
+                    ForkJoinTask.invokeAll(parts);
+                    start += window.byteSize();
+                }
+                for (Part part : parts) {
+                    lines = ParallelCsvLoader.printMessages(part.chunk, lines);
+                    sink.write(part);
+                    rows += part.chunk.rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Mappa la prossima finestra del file, che termina dopo l'ultimo {@code '\n'} dei primi
+     * {@link #WINDOW} byte; se non ce n'è nessuno (riga più lunga della finestra) la finestra
+     * viene allargata.
+     */
+    private static MemorySegment window(FileChannel channel, long start, long size, Arena arena) throws IOException {
+        for (long length = WINDOW; ; length *= 2) {
+            long end = Math.min(size, start + length);
+            MemorySegment window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start, arena);
+            if (end == size) {
+                return window;
+            }
+            for (long p = window.byteSize() - 1; p >= 0; p--) {
+                if (window.get(JAVA_BYTE, p) == '\n') {
+                    return window.asSlice(0, p + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Impedisce di leggere e sovrascrivere lo stesso file.
+     */
+    private static void checkDistinct(Path input, Path output) throws IOException {
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IOException("Il file di uscita coincide con quello di ingresso: " + output);
+        }
+    }
+
+    /**
+     * Blocco della finestra elaborato da un singolo thread: analisi, normalizzazione e,
+     * per l'uscita CSV, formattazione.
+     */
+    @SuppressWarnings("serial")
+    private static final class Part extends RecursiveAction {
+
+        final ParallelCsvLoader.Chunk chunk;
+        private final FeatureNormalizer normalizer;
+        private final boolean formatCSV;
+
+        /** Righe normalizzate in CSV, se richieste: i primi {@code textLength} byte di {@code text} */
+        byte[] text;
+        int textLength;
+
+        Part(ParallelCsvLoader.Chunk chunk, FeatureNormalizer normalizer, boolean formatCSV) {
+            this.chunk = chunk;
+            this.normalizer = normalizer;
+            this.formatCSV = formatCSV;
+        }
+
+        @Override
+        protected void compute() {
+            chunk.parse();
+            for (int f = 0; f < chunk.columns.length; f++) {
+                normalizer.normalizeColumn(f, chunk.columns[f], chunk.rows);
+            }
+            if (formatCSV) {
+                MemorySegment[] columns = new MemorySegment[chunk.columns.length];
+                for (int f = 0; f < columns.length; f++) {
+                    columns[f] = MemorySegment.ofArray(chunk.columns[f]);
+                }
+                DatasetCsvWriter.Partition csv = new DatasetCsvWriter.Partition(columns, MemorySegment.ofArray(chunk.labels),
+                        CsvRowFormatter.US_SEPARATOR, null, DatasetCsvWriter.normalizedCapacity(chunk.rows, columns.length));
+                csv.prepare(0, chunk.rows);
+                csv.format();
+                text = csv.buffer;
+                textLength = csv.length;
+                // Le colonne non servono più: solo il testo resta in memoria fino alla scrittura
+                chunk.columns = null;
+                chunk.labels = null;
+            }
+        }
+    }
+}
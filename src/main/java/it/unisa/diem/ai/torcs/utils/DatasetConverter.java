@@ -0,0 +1,85 @@
+package it.unisa.diem.ai.torcs.utils;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Strumento a riga di comando che converte un dataset CSV nel formato binario a colonne
+ * letto da {@link Dataset#loadFromBinary(String)}.
+ * <p>
+ * Dopo la scrittura il file binario viene riaperto e confrontato con il CSV, così che un
+ * errore di conversione emerga subito e non durante la guida; vengono riportati anche i
+ * tempi di caricamento dei due formati.
+ * <p>
+ * Uso: {@code java ... DatasetConverter <dataset.csv> <dataset.dsb> [float]}
+ */
+public class DatasetConverter {
+
+    /**
+     * Metodo principale della conversione.
+     *
+     * @param args file CSV di origine, file binario di destinazione e, opzionalmente,
+     *             {@code float} per salvare le feature in precisione singola
+     * @throws IOException se il file binario non può essere scritto o riletto
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: DatasetConverter <dataset.csv> <dataset.dsb> [float]");
+            return;
+        }
+        if (!new File(args[0]).isFile()) {
+            System.out.println("File CSV non trovato: " + args[0]);
+            return;
+        }
+        boolean singlePrecision = args.length > 2 && args[2].equalsIgnoreCase("float");
+
+        long start = System.nanoTime();
+        Dataset dataset = Dataset.loadFromCSVParallel(args[0], Dataset.Storage.OFF_HEAP);
+        long csvNanos = System.nanoTime() - start;
+
+        dataset.saveToBinary(args[1], singlePrecision);
+
+        start = System.nanoTime();
+        Dataset binary = Dataset.loadFromBinary(args[1]);
+        long binaryNanos = System.nanoTime() - start;
+
+        int mismatches = compare(dataset, binary, singlePrecision);
+        System.out.printf(Locale.US, "Convertite %d righe in %s (%s, %d KB)%n", binary.size(), args[1],
+                singlePrecision ? "float" : "double", new File(args[1]).length() / 1024);
+        System.out.printf(Locale.US, "Caricamento: CSV %.1f ms, binario %.3f ms%n", csvNanos / 1e6, binaryNanos / 1e6);
+        if (mismatches > 0) {
+            System.out.println("Attenzione: " + mismatches + " valori diversi tra CSV e file binario");
+        }
+    }
+
+    /**
+     * Confronta due dataset valore per valore. In precisione singola i valori del CSV vengono
+     * arrotondati a float prima del confronto.
+     *
+     * @return numero di valori (feature o label) diversi
+     */
+    private static int compare(Dataset expected, Dataset actual, boolean singlePrecision) {
+        if (expected.size() != actual.size()) {
+            return Math.abs(expected.size() - actual.size()) * (expected.dimensions() + 1);
+        }
+        int mismatches = 0;
+        for (int r = 0; r < expected.size(); r++) {
+            for (int f = 0; f < expected.dimensions(); f++) {
+                double value = expected.get(r, f);
+                if (singlePrecision) {
+                    value = (float) value;
+                }
+                if (Double.compare(value, actual.get(r, f)) != 0) {
+                    mismatches++;
+                }
+            }
+            if (expected.labelCode(r) != actual.labelCode(r)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+}
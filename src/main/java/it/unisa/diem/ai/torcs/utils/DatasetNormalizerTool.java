@@ -0,0 +1,57 @@
+package it.unisa.diem.ai.torcs.utils;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Strumento a riga di comando che normalizza un dataset CSV grezzo (ad esempio una
+ * registrazione di {@code HumanDriver}) da file a file, con memoria costante anche per file di
+ * decine di gigabyte.
+ * <p>
+ * L'uscita è un CSV, identico a quello di {@link Dataset#datasetNormalizer(String)}, oppure,
+ * se il file di destinazione ha estensione {@code .dsb}, un dataset binario a colonne leggibile
+ * con {@link Dataset#loadFromBinary(String)}.
+ * <p>
+ * Uso: {@code java ... DatasetNormalizerTool <grezzo.csv> <normalizzato.csv|normalizzato.dsb> [float]}
+ */
+public class DatasetNormalizerTool {
+
+    /**
+     * Metodo principale della normalizzazione.
+     *
+     * @param args file CSV di origine, file di destinazione e, opzionalmente, {@code float}
+     *             per salvare le feature in precisione singola (solo uscita binaria)
+     * @throws IOException se il file di origine non è leggibile o quello di destinazione non è scrivibile
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: DatasetNormalizerTool <grezzo.csv> <normalizzato.csv|normalizzato.dsb> [float]");
+            return;
+        }
+        if (!new File(args[0]).isFile()) {
+            System.out.println("File CSV non trovato: " + args[0]);
+            return;
+        }
+        boolean binary = args[1].toLowerCase(Locale.ROOT).endsWith(".dsb");
+        boolean singlePrecision = args.length > 2 && args[2].equalsIgnoreCase("float");
+        if (singlePrecision && !binary) {
+            System.out.println("L'opzione float vale solo per l'uscita binaria (.dsb)");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long rows = binary
+                ? Dataset.normalizeCSVToBinary(args[0], args[1], singlePrecision)
+                : Dataset.normalizeCSV(args[0], args[1]);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long inputBytes = new File(args[0]).length();
+        System.out.printf(Locale.US, "Normalizzate %d righe in %s (%s, %d KB)%n", rows, args[1],
+                binary ? (singlePrecision ? "binario float" : "binario double") : "CSV",
+                new File(args[1]).length() / 1024);
+        System.out.printf(Locale.US, "Tempo: %.2f s (%.1f MB/s)%n", seconds, inputBytes / 1e6 / seconds);
+    }
+}
@@ -4,9 +4,6 @@ import it.unisa.diem.ai.torcs.model.FeatureVector;
 import it.unisa.diem.ai.torcs.model.SensorModel;
 import it.unisa.diem.ai.torcs.model.SensorFeature;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Classe responsabile dell'estrazione delle feature (caratteristiche) rilevanti
  * dal modello dei sensori fornito da TORCS.
@@ -15,6 +12,19 @@ import java.util.List;
  */
 public class FeatureExtractor {
 
+    /** Feature estratte, nell'ordine di {@link SensorFeature} */
+    private static final SensorFeature[] FEATURES = SensorFeature.values();
+
+    /** Indice nel vettore "track" per ciascuna feature, oppure -1 se non è un sensore di bordo pista */
+    private static final int[] TRACK_INDICES = new int[FEATURES.length];
+
+    static {
+        for (int i = 0; i < FEATURES.length; i++) {
+            Integer idx = FEATURES[i].getTrackSensorIndex();
+            TRACK_INDICES[i] = idx != null ? idx : -1;
+        }
+    }
+
     /**
      * Estrae le feature definite in {@link SensorFeature} a partire da un'istanza di {@link SensorModel}.
      *
@@ -22,31 +32,41 @@ public class FeatureExtractor {
      * @return un {@link FeatureVector} contenente i valori numerici ordinati delle feature selezionate.
      */
     public FeatureVector extractFeatures(SensorModel sensors) {
-        List<Double> features = new ArrayList<>();
+        double[] features = new double[FEATURES.length];
+        extractFeatures(sensors, features);
+        return new FeatureVector(features);
+    }
+
+    /**
+     * Estrae le feature definite in {@link SensorFeature} scrivendole in un array del chiamante.
+     * Non alloca memoria: pensato per il ciclo di controllo.
+     *
+     * @param sensors il modello sensoriale da cui leggere i dati
+     * @param out array di destinazione, lungo almeno quanto il numero di feature
+     */
+    public void extractFeatures(SensorModel sensors, double[] out) {
         double[] trackSensors = sensors.getTrackEdgeSensors();
 
-        for (SensorFeature feature : SensorFeature.values()) {
-            switch (feature) {
+        for (int i = 0; i < FEATURES.length; i++) {
+            switch (FEATURES[i]) {
                 case SPEED_X:
-                    features.add(sensors.getSpeed());
+                    out[i] = sensors.getSpeed();
                     break;
                 case SPEED_Y:
-                    features.add(sensors.getLateralSpeed());
+                    out[i] = sensors.getLateralSpeed();
                     break;
                 case ANGLE_TO_TRACK_AXIS:
-                    features.add(sensors.getAngleToTrackAxis());
+                    out[i] = sensors.getAngleToTrackAxis();
                     break;
                 case TRACK_POSITION:
-                    features.add(sensors.getTrackPosition());
+                    out[i] = sensors.getTrackPosition();
                     break;
                 default:
                     // Se è un sensore di bordo pista, usa l'indice associato nell'array dei sensori
-                    Integer idx = feature.getTrackSensorIndex();
-                    if (idx != null) {
-                        features.add(trackSensors[idx]);
+                    if (TRACK_INDICES[i] >= 0) {
+                        out[i] = trackSensors[TRACK_INDICES[i]];
                     }
             }
         }
-        return new FeatureVector(features);
     }
 }
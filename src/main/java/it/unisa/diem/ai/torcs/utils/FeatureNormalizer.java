@@ -2,8 +2,6 @@ package it.unisa.diem.ai.torcs.utils;
 
 import it.unisa.diem.ai.torcs.model.FeatureVector;
 import it.unisa.diem.ai.torcs.model.SensorFeature;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Classe responsabile della normalizzazione dei vettori di feature.
@@ -32,6 +30,22 @@ public class FeatureNormalizer {
     public static final double MIN_ANGLE_TO_TRACK_AXIS = -Math.PI;
     public static final double MAX_ANGLE_TO_TRACK_AXIS = Math.PI;
 
+    /** Estremi inferiori dei range, nell'ordine di {@link SensorFeature} */
+    private static final double[] MINS;
+
+    /** Estremi superiori dei range, nell'ordine di {@link SensorFeature} */
+    private static final double[] MAXS;
+
+    static {
+        SensorFeature[] features = SensorFeature.values();
+        MINS = new double[features.length];
+        MAXS = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            MINS[i] = getMin(features[i]);
+            MAXS[i] = getMax(features[i]);
+        }
+    }
+
     /**
      * Applica la normalizzazione Min-Max al vettore di feature fornito,
      * restituendo un nuovo oggetto {@link FeatureVector} con valori nel range [0, 1].
@@ -40,38 +54,75 @@ public class FeatureNormalizer {
      * @return un nuovo {@link FeatureVector} con valori normalizzati
      */
     public FeatureVector normalize(FeatureVector fv) {
-        List<Double> values = fv.getValues();
-        List<Double> normalized = new ArrayList<>(values.size());
-        SensorFeature[] features = SensorFeature.values();
+        FeatureVector normalized = new FeatureVector(fv.size());
+        for (int i = 0; i < fv.size(); i++) {
+            normalized.set(i, normalizzatoreMinMax(fv.get(i), MINS[i], MAXS[i]));
+        }
+        return normalized;
+    }
 
-        for (int i = 0; i < values.size(); i++) {
-            double val = values.get(i);
-            double min, max;
-
-            // Determina il range di normalizzazione in base alla feature
-            switch (features[i]) {
-                case SPEED_X:
-                    min = MIN_SPEED_X; max = MAX_SPEED_X;
-                    break;
-                case SPEED_Y:
-                    min = MIN_SPEED_Y; max = MAX_SPEED_Y;
-                    break;
-                case ANGLE_TO_TRACK_AXIS:
-                    min = MIN_ANGLE_TO_TRACK_AXIS; max = MAX_ANGLE_TO_TRACK_AXIS;
-                    break;
-                case TRACK_POSITION:
-                    min = MIN_TRACK_POSITION; max = MAX_TRACK_POSITION;
-                    break;
-                default:
-                    // Per i sensori di bordo pista
-                    min = MIN_TRACK_EDGE; max = MAX_TRACK_EDGE;
-                    break;
-            }
-
-            normalized.add(normalizzatoreMinMax(val, min, max));
+    /**
+     * Applica la normalizzazione Min-Max a un array di feature grezze, scrivendo il risultato
+     * in {@code out}. Non alloca memoria; {@code in} e {@code out} possono coincidere
+     * (normalizzazione sul posto).
+     *
+     * @param in valori grezzi, nell'ordine di {@link SensorFeature}
+     * @param out array di destinazione, lungo almeno quanto {@code in}
+     */
+    public void normalize(double[] in, double[] out) {
+        for (int i = 0; i < in.length; i++) {
+            out[i] = normalizzatoreMinMax(in[i], MINS[i], MAXS[i]);
         }
+    }
 
-        return new FeatureVector(normalized);
+    /**
+     * Applica la normalizzazione Min-Max sul posto a una colonna di valori grezzi della stessa
+     * feature, con lo stesso risultato di {@link #normalize(double[], double[])} riga per riga.
+     *
+     * @param feature indice della feature, nell'ordine di {@link SensorFeature}
+     * @param values valori da normalizzare
+     * @param count numero di valori da normalizzare (i primi di {@code values})
+     */
+    public void normalizeColumn(int feature, double[] values, int count) {
+        double min = MINS[feature];
+        double max = MAXS[feature];
+        for (int i = 0; i < count; i++) {
+            values[i] = normalizzatoreMinMax(values[i], min, max);
+        }
+    }
+
+    /**
+     * Restituisce il valore minimo atteso per una feature (estremo inferiore del range Min-Max).
+     *
+     * @param feature la feature di interesse
+     * @return valore minimo usato nella normalizzazione
+     */
+    public static double getMin(SensorFeature feature) {
+        return switch (feature) {
+            case SPEED_X -> MIN_SPEED_X;
+            case SPEED_Y -> MIN_SPEED_Y;
+            case ANGLE_TO_TRACK_AXIS -> MIN_ANGLE_TO_TRACK_AXIS;
+            case TRACK_POSITION -> MIN_TRACK_POSITION;
+            // Per i sensori di bordo pista
+            default -> MIN_TRACK_EDGE;
+        };
+    }
+
+    /**
+     * Restituisce il valore massimo atteso per una feature (estremo superiore del range Min-Max).
+     *
+     * @param feature la feature di interesse
+     * @return valore massimo usato nella normalizzazione
+     */
+    public static double getMax(SensorFeature feature) {
+        return switch (feature) {
+            case SPEED_X -> MAX_SPEED_X;
+            case SPEED_Y -> MAX_SPEED_Y;
+            case ANGLE_TO_TRACK_AXIS -> MAX_ANGLE_TO_TRACK_AXIS;
+            case TRACK_POSITION -> MAX_TRACK_POSITION;
+            // Per i sensori di bordo pista
+            default -> MAX_TRACK_EDGE;
+        };
     }
 
     /**
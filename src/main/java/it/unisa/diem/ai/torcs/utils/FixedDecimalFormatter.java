@@ -0,0 +1,157 @@
+package it.unisa.diem.ai.torcs.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Formattatore di numeri a virgola fissa che scrive direttamente in un {@code byte[]}, senza
+ * allocazioni.
+ * <p>
+ * Il risultato coincide con {@code String.format("%.<cifre>f", valore)}: arrotondamento
+ * HALF_UP della rappresentazione decimale più corta del double (quella di
+ * {@link Double#toString(double)}), segno anche per i valori negativi che si arrotondano a zero
+ * e {@code NaN}/{@code Infinity} scritti per esteso. Il caso comune usa solo aritmetica sui
+ * {@code long}; i valori troppo grandi o troppo vicini a un punto di arrotondamento passano per
+ * {@link BigDecimal}, che garantisce lo stesso risultato.
+ */
+public final class FixedDecimalFormatter {
+
+    /** Numero massimo di cifre decimali supportate */
+    public static final int MAX_FRACTION_DIGITS = 9;
+
+    /**
+     * Lunghezza massima del testo di un valore con modulo inferiore a 1e18 (segno, cifre intere,
+     * separatore, decimali); valori più grandi vengono scritti per esteso.
+     */
+    public static final int MAX_LENGTH = 1 + 19 + 1 + MAX_FRACTION_DIGITS;
+
+    /** Oltre questa soglia il valore scalato non è abbastanza preciso per il caso veloce */
+    private static final double FAST_PATH_LIMIT = 1e9;
+
+    /** Distanza da 0.5 sotto la quale l'arrotondamento viene deciso con BigDecimal */
+    private static final double TIE_TOLERANCE = 1e-6;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedDecimalFormatter() {
+    }
+
+    /**
+     * Scrive un valore con il punto come separatore decimale.
+     *
+     * @param value valore da scrivere
+     * @param fractionDigits numero di cifre decimali (0..{@link #MAX_FRACTION_DIGITS})
+     * @param dest buffer di destinazione (almeno {@link #MAX_LENGTH} byte liberi)
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    public static int format(double value, int fractionDigits, byte[] dest, int offset) {
+        return format(value, fractionDigits, (byte) '.', dest, offset);
+    }
+
+    /**
+     * Scrive un valore con il separatore decimale indicato (ad esempio {@code ','} come
+     * {@code Locale.ITALY}).
+     *
+     * @param value valore da scrivere
+     * @param fractionDigits numero di cifre decimali (0..{@link #MAX_FRACTION_DIGITS})
+     * @param separator separatore decimale
+     * @param dest buffer di destinazione (almeno {@link #MAX_LENGTH} byte liberi)
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    public static int format(double value, int fractionDigits, byte separator, byte[] dest, int offset) {
+        if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+            throw new IllegalArgumentException("Cifre decimali non supportate: " + fractionDigits);
+        }
+        if (Double.isNaN(value)) {
+            System.arraycopy(NAN, 0, dest, offset, NAN.length);
+            return offset + NAN.length;
+        }
+        int pos = offset;
+        if (Double.doubleToRawLongBits(value) < 0) {
+            dest[pos++] = '-';
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            System.arraycopy(INFINITY, 0, dest, pos, INFINITY.length);
+            return pos + INFINITY.length;
+        }
+
+        long scaled;
+        double shifted = value * POWERS_OF_TEN[fractionDigits];
+        double floor = Math.floor(shifted);
+        double fraction = shifted - floor;
+        if (shifted < FAST_PATH_LIMIT && Math.abs(fraction - 0.5) > TIE_TOLERANCE) {
+            scaled = (long) floor + (fraction > 0.5 ? 1 : 0);
+        } else {
+            BigDecimal rounded = new BigDecimal(Double.toString(value)).setScale(fractionDigits, RoundingMode.HALF_UP);
+            if (rounded.precision() > 18) {
+                return writeAscii(rounded.toPlainString(), separator, dest, pos);
+            }
+            scaled = rounded.unscaledValue().longValue();
+        }
+
+        long integerPart = scaled / POWERS_OF_TEN[fractionDigits];
+        long fractionPart = scaled - integerPart * POWERS_OF_TEN[fractionDigits];
+        pos = formatLong(integerPart, dest, pos);
+        if (fractionDigits > 0) {
+            dest[pos++] = separator;
+            for (int i = fractionDigits - 1; i >= 0; i--) {
+                dest[pos + i] = (byte) ('0' + fractionPart % 10);
+                fractionPart /= 10;
+            }
+            pos += fractionDigits;
+        }
+        return pos;
+    }
+
+    /**
+     * Scrive un intero in base 10.
+     *
+     * @param value valore da scrivere
+     * @param dest buffer di destinazione
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    public static int formatLong(long value, byte[] dest, int offset) {
+        if (value == Long.MIN_VALUE) {
+            return writeAscii(Long.toString(value), (byte) '.', dest, offset);
+        }
+        int pos = offset;
+        if (value < 0) {
+            dest[pos++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            length++;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            dest[pos + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + length;
+    }
+
+    /**
+     * Copia un testo ASCII nel buffer, sostituendo il punto decimale con il separatore.
+     */
+    private static int writeAscii(String text, byte separator, byte[] dest, int offset) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            dest[offset + i] = c == '.' ? separator : (byte) c;
+        }
+        return offset + text.length();
+    }
+}
@@ -0,0 +1,246 @@
+package it.unisa.diem.ai.torcs.utils.benchmark;
+
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+import it.unisa.diem.ai.torcs.io.MessageParser;
+import it.unisa.diem.ai.torcs.model.LazySensorModel;
+import it.unisa.diem.ai.torcs.model.MessageBasedSensorModel;
+import it.unisa.diem.ai.torcs.model.SensorReading;
+import it.unisa.diem.ai.torcs.model.SensorModel;
+import it.unisa.diem.ai.torcs.model.SensorReadings;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark a riga di comando che confronta {@link MessageParser} con {@link ByteMessageParser}
+ * e con la decodifica su richiesta di {@link LazySensorModel}.
+ * <p>
+ * Prima verifica che i parser producano esattamente gli stessi valori per tutte le letture di
+ * ogni messaggio, poi misura il tempo medio e la memoria allocata per messaggio leggendo le
+ * stesse letture usate da {@code AutonomousDriver} a ogni passo.
+ * I messaggi possono essere letti da un file (uno per riga, ad esempio traffico registrato)
+ * oppure generati con lo stesso formato numerico del server TORCS.
+ * <p>
+ * Uso: {@code java ... ParserBenchmark [messaggi.txt] [numeroMessaggi]}
+ */
+public class ParserBenchmark {
+
+    /** Numero di passate di riscaldamento prima della misura */
+    private static final int WARMUP_ROUNDS = 20;
+
+    /** Numero di passate misurate */
+    private static final int MEASURED_ROUNDS = 20;
+
+    /**
+     * Metodo principale del benchmark.
+     *
+     * @param args file di messaggi (opzionale, {@code -} per generarli) e numero di messaggi da generare (default 5000)
+     * @throws IOException se il file dei messaggi non è leggibile
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> messages;
+        if (args.length > 0 && !args[0].equals("-")) {
+            messages = Files.readAllLines(Path.of(args[0]), StandardCharsets.ISO_8859_1);
+            messages.removeIf(String::isBlank);
+            System.out.println("Messaggi: " + args[0] + " (" + messages.size() + ")");
+        } else {
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+            messages = generateMessages(count, new Random(42));
+            System.out.println("Messaggi generati: " + messages.size());
+        }
+
+        byte[][] raw = new byte[messages.size()][];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = messages.get(i).getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        SensorReadings readings = new SensorReadings();
+        LazySensorModel lazy = new LazySensorModel();
+        int mismatches = 0;
+        for (int i = 0; i < raw.length; i++) {
+            MessageParser expected = new MessageParser(messages.get(i));
+            ByteMessageParser.parse(raw[i], readings);
+            lazy.reset(raw[i], 0, raw[i].length);
+            for (SensorReading reading : SensorReading.values()) {
+                Object value = expected.getReading(reading.getKey());
+                boolean same = sameValue(value, readings.has(reading),
+                        reading.isArray() ? readings.getArray(reading) : null, readings.get(reading))
+                        && sameValue(value, lazy.has(reading),
+                        reading.isArray() ? lazy.getArray(reading) : null, lazy.get(reading));
+                if (!same) {
+                    mismatches++;
+                    System.out.println("Valore diverso per " + reading.getKey() + " nel messaggio " + i + ": " + messages.get(i));
+                }
+            }
+        }
+        System.out.println("Letture diverse: " + mismatches);
+
+        double[] stringResult = measure(() -> {
+            double checksum = 0;
+            for (String message : messages) {
+                checksum += touch(new MessageBasedSensorModel(message));
+            }
+            return checksum;
+        }, raw.length);
+        double[] byteResult = measure(() -> {
+            double checksum = 0;
+            for (byte[] message : raw) {
+                checksum += touch(ByteMessageParser.parse(message, readings));
+            }
+            return checksum;
+        }, raw.length);
+        double[] lazyResult = measure(() -> {
+            double checksum = 0;
+            for (byte[] message : raw) {
+                checksum += touch(lazy.reset(message, 0, message.length));
+            }
+            return checksum;
+        }, raw.length);
+
+        System.out.printf(Locale.US, "MessageParser:     %8.0f ns/messaggio  %8.0f byte allocati/messaggio%n", stringResult[0], stringResult[1]);
+        System.out.printf(Locale.US, "ByteMessageParser: %8.0f ns/messaggio  %8.0f byte allocati/messaggio  speedup: %.2fx%n",
+                byteResult[0], byteResult[1], stringResult[0] / byteResult[0]);
+        System.out.printf(Locale.US, "LazySensorModel:   %8.0f ns/messaggio  %8.0f byte allocati/messaggio  speedup: %.2fx%n",
+                lazyResult[0], lazyResult[1], stringResult[0] / lazyResult[0]);
+    }
+
+    /**
+     * Legge le letture usate a ogni passo da {@code AutonomousDriver} (feature, recovery e azioni).
+     *
+     * @param sensors modello dei sensori
+     * @return somma dei valori letti
+     */
+    private static double touch(SensorModel sensors) {
+        double[] track = sensors.getTrackEdgeSensors();
+        return sensors.getSpeed() + sensors.getLateralSpeed() + sensors.getAngleToTrackAxis()
+                + sensors.getTrackPosition() + sensors.getGear() + sensors.getRPM() + track[9];
+    }
+
+    /**
+     * Confronta il valore di {@link MessageParser} con quello di un altro parser, bit a bit.
+     */
+    private static boolean sameValue(Object expected, boolean present, double[] actual, double scalar) {
+        if (expected == null) {
+            return !present;
+        }
+        if (expected instanceof double[] values) {
+            if (actual == null || actual.length != values.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (Double.compare(values[i], actual[i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return present && Double.compare((Double) expected, scalar) == 0;
+    }
+
+    /** Corpo di una passata del benchmark: restituisce un valore che impedisce l'eliminazione del ciclo */
+    private interface Round {
+        double run();
+    }
+
+    /**
+     * Esegue le passate di riscaldamento e quelle misurate.
+     *
+     * @param round passata da eseguire
+     * @param messages numero di messaggi per passata
+     * @return tempo medio (ns) e byte allocati in media per messaggio
+     */
+    private static double[] measure(Round round, int messages) {
+        double checksum = 0;
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            checksum += round.run();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int r = 0; r < MEASURED_ROUNDS; r++) {
+            checksum += round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (checksum == Double.MIN_VALUE) {
+            System.out.println(checksum); // impedisce l'eliminazione del ciclo
+        }
+        double total = (double) MEASURED_ROUNDS * messages;
+        return new double[]{elapsed / total, allocated / total};
+    }
+
+    /**
+     * Genera messaggi con tutte le letture note e valori plausibili.
+     *
+     * @param count numero di messaggi
+     * @param random generatore pseudo-casuale
+     * @return messaggi generati
+     */
+    public static List<String> generateMessages(int count, Random random) {
+        List<String> messages = new ArrayList<>(count);
+        StringBuilder sb = new StringBuilder(1024);
+        for (int m = 0; m < count; m++) {
+            sb.setLength(0);
+            for (SensorReading reading : SensorReading.values()) {
+                sb.append('(').append(reading.getKey());
+                for (int i = 0; i < reading.getLength(); i++) {
+                    double value = switch (reading) {
+                        case GEAR -> random.nextInt(8) - 1;
+                        case RACE_POS -> 1 + random.nextInt(10);
+                        case OPPONENTS -> random.nextInt(4) == 0 ? random.nextDouble() * 200 : 200;
+                        case TRACK, FOCUS -> random.nextInt(20) == 0 ? -1 : random.nextDouble() * 200;
+                        case ANGLE, TRACK_POS -> random.nextGaussian() * (random.nextInt(10) == 0 ? 1e-5 : 0.3);
+                        default -> (random.nextDouble() - 0.2) * Math.pow(10, random.nextInt(5));
+                    };
+                    sb.append(' ').append(formatLikeTorcs(value));
+                }
+                sb.append(')');
+            }
+            messages.add(sb.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * Formatta un valore come lo stream C++ del server (precisione predefinita di 6 cifre significative,
+     * notazione esponenziale per esponenti minori di -4 o maggiori di 5).
+     *
+     * @param value valore da formattare
+     * @return testo del valore
+     */
+    static String formatLikeTorcs(double value) {
+        if (value == 0) {
+            return "0";
+        }
+        BigDecimal rounded = new BigDecimal(value).round(new MathContext(6)).stripTrailingZeros();
+        int exponent = rounded.precision() - rounded.scale() - 1;
+        if (exponent >= -4 && exponent < 6) {
+            return rounded.toPlainString();
+        }
+        String digits = rounded.unscaledValue().abs().toString();
+        StringBuilder sb = new StringBuilder();
+        if (rounded.signum() < 0) {
+            sb.append('-');
+        }
+        sb.append(digits.charAt(0));
+        if (digits.length() > 1) {
+            sb.append('.').append(digits, 1, digits.length());
+        }
+        sb.append('e').append(exponent < 0 ? '-' : '+');
+        int abs = Math.abs(exponent);
+        if (abs < 10) {
+            sb.append('0');
+        }
+        return sb.append(abs).toString();
+    }
+}
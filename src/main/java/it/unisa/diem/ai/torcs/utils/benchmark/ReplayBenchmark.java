@@ -0,0 +1,233 @@
+package it.unisa.diem.ai.torcs.utils.benchmark;
+
+import it.unisa.diem.ai.torcs.agent.Controller;
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+import it.unisa.diem.ai.torcs.io.CaptureReader;
+import it.unisa.diem.ai.torcs.io.CaptureWriter;
+import it.unisa.diem.ai.torcs.model.Action;
+import it.unisa.diem.ai.torcs.model.LazySensorModel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Benchmark a riga di comando che rigioca una cattura del traffico UDP (opzione
+ * {@code capture:file} del client, vedi {@link CaptureWriter}) attraverso un controller, senza
+ * simulatore e alla massima velocità.
+ * <p>
+ * Ogni messaggio dei sensori della cattura diventa un passo: il controller lo riceve come in
+ * {@code ClientSession} (stesso {@link LazySensorModel}, {@code reset()} a ogni
+ * {@code ***restart***}) e la sua azione viene confrontata con quella inviata nella corsa
+ * originale. Il benchmark riporta il throughput (passi/s), i percentili della latenza di
+ * {@code control()} e le azioni diverse dall'originale; con lo stesso controller e un
+ * comportamento deterministico le differenze devono essere zero. Per confronto riporta anche
+ * la latenza ricezione-invio misurata durante la cattura.
+ * <p>
+ * Con più passate la prima fa da riscaldamento e non entra nelle misure di latenza; il
+ * controller viene azzerato con {@code reset()} all'inizio di ogni passata e chiuso con
+ * {@code shutdown()} alla fine, come al termine di una sessione.
+ * <p>
+ * Uso: {@code java ... ReplayBenchmark <classeController> <cattura.bin> [passate]}
+ */
+public class ReplayBenchmark {
+
+    private static final byte[] IDENTIFIED = "***identified***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SHUTDOWN = "***shutdown***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESTART = "***restart***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INIT = "(init".getBytes(StandardCharsets.US_ASCII);
+
+    /** Differenza oltre la quale un comando è considerato diverso (le azioni viaggiano con 7 decimali) */
+    private static final double TOLERANCE = 1e-6;
+
+    /** Numero di passate di default */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * Passi estratti dalla cattura: posizione del messaggio dei sensori nel buffer del lettore,
+     * azione originale (null se la risposta non è stata registrata) e riavvio precedente.
+     */
+    private static final class Ticks {
+        int size;
+        int[] offsets = new int[1024];
+        int[] lengths = new int[1024];
+        Action[] expected = new Action[1024];
+        boolean[] restartBefore = new boolean[1024];
+        long[] originalLatencies = new long[1024];
+        int episodes = 1;
+
+        void add(int offset, int length, boolean restart) {
+            if (size == offsets.length) {
+                int capacity = size * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                expected = Arrays.copyOf(expected, capacity);
+                restartBefore = Arrays.copyOf(restartBefore, capacity);
+                originalLatencies = Arrays.copyOf(originalLatencies, capacity);
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            restartBefore[size] = restart;
+            originalLatencies[size] = -1;
+            size++;
+        }
+    }
+
+    /**
+     * Metodo principale del benchmark.
+     *
+     * @param args classe del controller, file di cattura e numero di passate (default 5)
+     * @throws IOException se la cattura non è leggibile
+     * @throws ReflectiveOperationException se il controller non può essere istanziato
+     */
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        if (args.length < 2) {
+            System.out.println("Uso: ReplayBenchmark <classeController> <cattura.bin> [passate]");
+            return;
+        }
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+        if (rounds <= 0) {
+            System.out.println("Il numero di passate deve essere positivo: " + rounds);
+            return;
+        }
+
+        CaptureReader reader = new CaptureReader(Path.of(args[1]));
+        Ticks ticks = new Ticks();
+        long duration = read(reader, ticks);
+        if (ticks.size == 0) {
+            System.out.println("Nessun messaggio dei sensori in " + args[1]);
+            return;
+        }
+        System.out.printf(Locale.US, "Cattura: %s (%d passi, %d episodi, %.1f s, %.1f passi/s)%n",
+                args[1], ticks.size, ticks.episodes, duration / 1e9, ticks.size / (duration / 1e9));
+
+        Controller driver = (Controller) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        driver.initAngles();
+        System.out.println("Controller: " + args[0] + ", passate: " + rounds);
+
+        byte[] data = reader.data();
+        LazySensorModel sensors = new LazySensorModel();
+        byte[] wire = new byte[Action.MAX_WIRE_LENGTH];
+        Action replayed = new Action();
+        int measuredRounds = rounds > 1 ? rounds - 1 : 1;
+        long[] latencies = new long[measuredRounds * ticks.size];
+        int samples = 0;
+        long measuredNanos = 0;
+
+        int compared = 0;
+        int diverged = 0;
+        int gearMismatches = 0;
+        double[] maxDifference = new double[4]; // accel, brake, clutch, steer
+
+        for (int round = 0; round < rounds; round++) {
+            if (round > 0) {
+                driver.reset();
+            }
+            boolean measured = round > 0 || rounds == 1;
+            long roundStart = System.nanoTime();
+            for (int i = 0; i < ticks.size; i++) {
+                if (ticks.restartBefore[i]) {
+                    driver.reset();
+                }
+                long start = System.nanoTime();
+                Action action = driver.control(sensors.reset(data, ticks.offsets[i], ticks.lengths[i]));
+                long latency = System.nanoTime() - start;
+                if (measured) {
+                    latencies[samples++] = latency;
+                }
+
+                // Il confronto avviene su ciò che sarebbe stato inviato al server
+                if (round == 0 && ticks.expected[i] != null) {
+                    replayed.readFrom(wire, 0, action.writeTo(wire, 0));
+                    Action original = ticks.expected[i];
+                    double[] differences = {
+                            Math.abs(replayed.accelerate - original.accelerate),
+                            Math.abs(replayed.brake - original.brake),
+                            Math.abs(replayed.clutch - original.clutch),
+                            Math.abs(replayed.steering - original.steering)};
+                    boolean different = replayed.gear != original.gear || replayed.restartRace != original.restartRace
+                            || replayed.focus != original.focus;
+                    for (int f = 0; f < differences.length; f++) {
+                        maxDifference[f] = Math.max(maxDifference[f], differences[f]);
+                        different |= differences[f] > TOLERANCE;
+                    }
+                    if (replayed.gear != original.gear) {
+                        gearMismatches++;
+                    }
+                    if (different) {
+                        diverged++;
+                    }
+                    compared++;
+                }
+            }
+            if (measured) {
+                measuredNanos += System.nanoTime() - roundStart;
+            }
+        }
+        driver.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf(Locale.US, "Throughput: %.0f passi/s (%d passi misurati)%n",
+                samples / (measuredNanos / 1e9), samples);
+        printLatencies("Latenza control()", latencies);
+
+        long[] original = Arrays.stream(ticks.originalLatencies, 0, ticks.size).filter(l -> l >= 0).sorted().toArray();
+        printLatencies("Latenza originale ricezione-invio", original);
+
+        System.out.printf(Locale.US, "Azioni diverse: %d su %d (%.2f%%), marce diverse: %d%n",
+                diverged, compared, compared == 0 ? 0 : 100.0 * diverged / compared, gearMismatches);
+        System.out.printf(Locale.US, "Differenza massima: accel %.6f brake %.6f clutch %.6f steer %.6f%n",
+                maxDifference[0], maxDifference[1], maxDifference[2], maxDifference[3]);
+    }
+
+    /**
+     * Estrae i passi dalla cattura: ogni messaggio dei sensori ricevuto viene associato alla
+     * prima azione inviata dopo di esso.
+     *
+     * @return durata della cattura (ns)
+     */
+    private static long read(CaptureReader reader, Ticks ticks) {
+        boolean restart = false;
+        boolean awaitingAction = false;
+        long receivedAt = 0;
+        long last = 0;
+        while (reader.next()) {
+            byte[] data = reader.data();
+            int offset = reader.offset();
+            int length = reader.length();
+            last = reader.timestampNanos();
+            if (reader.type() == CaptureWriter.RECEIVED) {
+                awaitingAction = false;
+                if (ByteMessageParser.contains(data, offset, length, SHUTDOWN)) {
+                    break;
+                }
+                if (ByteMessageParser.contains(data, offset, length, RESTART)) {
+                    restart = true;
+                    ticks.episodes++;
+                } else if (!ByteMessageParser.contains(data, offset, length, IDENTIFIED)) {
+                    ticks.add(offset, length, restart);
+                    restart = false;
+                    awaitingAction = true;
+                    receivedAt = reader.timestampNanos();
+                }
+            } else if (awaitingAction && !ByteMessageParser.contains(data, offset, length, INIT)) {
+                ticks.expected[ticks.size - 1] = new Action().readFrom(data, offset, length);
+                ticks.originalLatencies[ticks.size - 1] = reader.timestampNanos() - receivedAt;
+                awaitingAction = false;
+            }
+        }
+        if (restart) {
+            ticks.episodes--; // riavvio finale senza altri passi
+        }
+        return last;
+    }
+
+    private static void printLatencies(String label, long[] sorted) {
+        System.out.printf(Locale.US, "%s (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                label, TorcsServerStub.percentile(sorted, 50), TorcsServerStub.percentile(sorted, 90),
+                TorcsServerStub.percentile(sorted, 99), TorcsServerStub.percentile(sorted, 99.9),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+    }
+}
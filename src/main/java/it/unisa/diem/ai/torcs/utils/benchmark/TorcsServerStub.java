@@ -0,0 +1,413 @@
+package it.unisa.diem.ai.torcs.utils.benchmark;
+
+import it.unisa.diem.ai.torcs.io.ByteMessageParser;
+import it.unisa.diem.ai.torcs.model.Action;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server UDP che sostituisce TORCS per i test di carico e di latenza del client.
+ * <p>
+ * Parla il protocollo SCR: risponde a {@code init} con {@code ***identified***}, invia un
+ * messaggio dei sensori per tick e attende l'azione, chiude ogni episodio con
+ * {@code ***restart***} e l'ultimo con {@code ***shutdown***} (anche l'azione con
+ * {@code meta 1} chiude l'episodio). I messaggi vengono da un modello cinematico del circuito
+ * ({@link TrackModel}), che applica le azioni ricevute, oppure da una registrazione (un
+ * messaggio per riga, riletta ciclicamente).
+ * <p>
+ * Un solo thread serve {@code clients} porte consecutive, una per auto, come farebbero altrettanti
+ * server TORCS. Per ogni tick viene misurato il tempo tra l'invio dei sensori e la ricezione
+ * dell'azione; un'azione non arrivata entro {@code timeout} (o prima del tick successivo) conta
+ * come persa. Al termine vengono stampati i percentili della latenza per porta e complessivi.
+ * <p>
+ * Opzioni (chiave:valore): port:N (prima porta, default 3001), clients:N (default 1),
+ * rate:N (tick al secondo, default 50; 0 = al passo del client), ticks:N (tick per episodio,
+ * default 2000), episodes:N (default 1), timeout:N (ms di attesa dell'azione, default 10),
+ * trace:file (messaggi registrati al posto del modello).
+ * <p>
+ * Esempio: {@code TorcsServerStub clients:4 rate:0 ticks:10000} e poi
+ * {@code MultiClient ... cars:3001,3002,3003,3004}
+ */
+public class TorcsServerStub {
+
+    private static final byte[] IDENTIFIED = "***identified***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESTART = "***restart***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SHUTDOWN = "***shutdown***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INIT = "(init".getBytes(StandardCharsets.US_ASCII);
+
+    /** Attesa massima del messaggio di init dopo un restart (ms), poi l'auto è considerata chiusa */
+    private static final long REINIT_TIMEOUT_MS = 2000;
+
+    /** Angoli predefiniti dei sensori di bordo pista, se l'init non li specifica */
+    private static final float[] DEFAULT_ANGLES = {-90, -75, -60, -45, -30, -20, -15, -10, -5, 0, 5, 10, 15, 20, 30, 45, 60, 75, 90};
+
+    private enum State {
+        WAIT_INIT, RUNNING, DONE
+    }
+
+    /**
+     * Stato del server di una porta: cliente, episodio, tick in attesa di risposta e latenze.
+     */
+    private final class Car {
+        final int port;
+        final DatagramChannel channel;
+        final TrackModel model = new TrackModel();
+        SocketAddress client;
+        float[] angles = DEFAULT_ANGLES;
+        State state = State.WAIT_INIT;
+        long stateSince;
+        int episode;
+        int tick;
+        int traceIndex;
+        boolean awaiting;     // true se il tick corrente non ha ancora ricevuto risposta
+        long sentAt;          // istante di invio dei sensori (ns)
+        long nextTick;        // istante del prossimo tick (ns)
+        long[] latencies = new long[1024];
+        int replies;
+        int missed;
+
+        Car(int port, DatagramChannel channel) {
+            this.port = port;
+            this.channel = channel;
+        }
+
+        void record(long latency) {
+            if (replies == latencies.length) {
+                latencies = Arrays.copyOf(latencies, replies * 2);
+            }
+            latencies[replies++] = latency;
+        }
+    }
+
+    private final Car[] cars;
+    private final Selector selector;
+    private final long tickNanos;          // 0 = al passo del client
+    private final long timeoutNanos;
+    private final int ticksPerEpisode;
+    private final int episodes;
+    private final byte[][] trace;          // null = modello cinematico
+
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(8192);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(8192);
+    private final byte[] data = new byte[8192];
+    private final byte[] message = new byte[8192];
+    private final Action action = new Action();
+
+    /**
+     * Costruttore: apre una porta UDP per ogni auto.
+     *
+     * @param firstPort prima porta
+     * @param clients numero di auto (porte consecutive)
+     * @param rate tick al secondo (0 = al passo del client)
+     * @param timeoutMillis attesa dell'azione prima di considerarla persa (ms)
+     * @param ticksPerEpisode tick per episodio
+     * @param episodes numero di episodi
+     * @param trace messaggi registrati, oppure {@code null} per il modello cinematico
+     * @throws IOException se una porta non è disponibile
+     */
+    public TorcsServerStub(int firstPort, int clients, int rate, int timeoutMillis, int ticksPerEpisode,
+                           int episodes, List<String> trace) throws IOException {
+        this.selector = Selector.open();
+        this.tickNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.ticksPerEpisode = ticksPerEpisode;
+        this.episodes = episodes;
+        if (trace != null) {
+            this.trace = new byte[trace.size()][];
+            for (int i = 0; i < this.trace.length; i++) {
+                this.trace[i] = trace.get(i).getBytes(StandardCharsets.ISO_8859_1);
+            }
+        } else {
+            this.trace = null;
+        }
+        this.cars = new Car[clients];
+        long now = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(firstPort + i));
+            cars[i] = new Car(firstPort + i, channel);
+            cars[i].stateSince = now;
+            channel.register(selector, SelectionKey.OP_READ, cars[i]);
+        }
+    }
+
+    /**
+     * Metodo principale.
+     *
+     * @param args opzioni in formato chiave:valore (vedi descrizione della classe)
+     * @throws IOException se una porta non è disponibile o la registrazione non è leggibile
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 3001, clients = 1, rate = 50, ticks = 2000, episodes = 1, timeout = 10;
+        List<String> trace = null;
+        for (String arg : args) {
+            StringTokenizer st = new StringTokenizer(arg, ":");
+            String entity = st.nextToken();
+            String value = st.hasMoreTokens() ? st.nextToken() : "";
+            switch (entity) {
+                case "port" -> port = Integer.parseInt(value);
+                case "clients" -> clients = Integer.parseInt(value);
+                case "rate" -> rate = Integer.parseInt(value);
+                case "ticks" -> ticks = Integer.parseInt(value);
+                case "episodes" -> episodes = Integer.parseInt(value);
+                case "timeout" -> timeout = Integer.parseInt(value);
+                case "trace" -> {
+                    trace = Files.readAllLines(Path.of(value), StandardCharsets.ISO_8859_1);
+                    trace.removeIf(String::isBlank);
+                    if (trace.isEmpty()) {
+                        System.out.println("La registrazione " + value + " non contiene messaggi");
+                        System.exit(0);
+                    }
+                }
+                default -> {
+                    System.out.println(arg + " is not a valid option");
+                    System.exit(0);
+                }
+            }
+        }
+
+        TorcsServerStub server = new TorcsServerStub(port, clients, rate, timeout, ticks, episodes, trace);
+        System.out.println("Server in ascolto sulle porte " + port + "-" + (port + clients - 1)
+                + (rate > 0 ? " (" + rate + " tick/s)" : " (al passo del client)")
+                + (trace != null ? ", messaggi registrati: " + trace.size() : ", modello cinematico"));
+        server.run();
+        server.report();
+    }
+
+    /**
+     * Serve le auto finché tutte non hanno terminato gli episodi.
+     *
+     * @throws IOException in caso di errore sui canali
+     */
+    public void run() throws IOException {
+        while (true) {
+            long now = System.nanoTime();
+            long wake = Long.MAX_VALUE;
+            boolean active = false;
+            for (Car car : cars) {
+                if (car.state == State.DONE) {
+                    continue;
+                }
+                active = true;
+                if (car.state == State.RUNNING) {
+                    wake = Math.min(wake, car.awaiting && tickNanos == 0 ? car.sentAt + timeoutNanos : car.nextTick);
+                } else if (car.episode > 0) {
+                    wake = Math.min(wake, car.stateSince + TimeUnit.MILLISECONDS.toNanos(REINIT_TIMEOUT_MS));
+                }
+            }
+            if (!active) {
+                break;
+            }
+
+            // Attesa arrotondata al millisecondo successivo: niente attesa attiva, che sottrarrebbe
+            // CPU ai client sulla stessa macchina (un tick può partire fino a 1 ms dopo)
+            if (wake == Long.MAX_VALUE) {
+                selector.select();
+            } else if (wake - now > 0) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(wake - now) + 1);
+            } else {
+                selector.selectNow();
+            }
+            now = System.nanoTime();
+            for (SelectionKey key : selector.selectedKeys()) {
+                receive((Car) key.attachment(), now);
+            }
+            selector.selectedKeys().clear();
+
+            now = System.nanoTime();
+            for (Car car : cars) {
+                if (car.state == State.RUNNING) {
+                    if (tickNanos == 0 && car.awaiting && now - car.sentAt >= timeoutNanos) {
+                        tick(car, now); // azione persa: si procede come il server reale
+                    } else if (tickNanos > 0 && now - car.nextTick >= 0) {
+                        tick(car, now);
+                    }
+                } else if (car.state == State.WAIT_INIT && car.episode > 0
+                        && now - car.stateSince >= TimeUnit.MILLISECONDS.toNanos(REINIT_TIMEOUT_MS)) {
+                    car.state = State.DONE; // il client non ha chiesto un nuovo episodio
+                }
+            }
+        }
+        selector.close();
+        for (Car car : cars) {
+            car.channel.close();
+        }
+    }
+
+    /**
+     * Legge un datagramma destinato a un'auto e lo gestisce secondo lo stato.
+     */
+    private void receive(Car car, long now) throws IOException {
+        receiveBuffer.clear();
+        SocketAddress from = car.channel.receive(receiveBuffer);
+        if (from == null) {
+            return;
+        }
+        int length = receiveBuffer.position();
+        receiveBuffer.flip();
+        receiveBuffer.get(data, 0, length);
+
+        if (ByteMessageParser.contains(data, 0, length, INIT)) {
+            if (car.state == State.DONE) {
+                return;
+            }
+            car.client = from;
+            car.angles = parseAngles(data, length);
+            send(car, IDENTIFIED, IDENTIFIED.length);
+            if (car.state == State.WAIT_INIT) {
+                car.state = State.RUNNING;
+                car.stateSince = now;
+                car.tick = 0;
+                car.awaiting = false;
+                car.model.reset();
+                car.nextTick = now;
+                tick(car, now);
+            }
+            return;
+        }
+        if (car.state != State.RUNNING || !car.awaiting || !from.equals(car.client)) {
+            return; // azione in ritardo o di un client sconosciuto
+        }
+
+        car.record(now - car.sentAt);
+        car.awaiting = false;
+        action.readFrom(data, 0, length);
+        if (trace == null) {
+            car.model.step(tickNanos > 0 ? tickNanos / 1e9 : 0.02,
+                    action.accelerate, action.brake, action.steering, action.gear);
+        }
+        if (action.restartRace) {
+            endEpisode(car, now);
+        } else if (tickNanos == 0) {
+            tick(car, now);
+        }
+    }
+
+    /**
+     * Invia il messaggio dei sensori del tick successivo, oppure chiude l'episodio.
+     */
+    private void tick(Car car, long now) throws IOException {
+        if (car.awaiting) {
+            car.missed++;
+            car.awaiting = false;
+        }
+        if (car.tick == ticksPerEpisode) {
+            endEpisode(car, now);
+            return;
+        }
+        int length;
+        if (trace != null) {
+            byte[] recorded = trace[car.traceIndex];
+            car.traceIndex = (car.traceIndex + 1) % trace.length;
+            System.arraycopy(recorded, 0, message, 0, recorded.length);
+            length = recorded.length;
+        } else {
+            length = car.model.write(car.angles, message, 0);
+        }
+        car.tick++;
+        send(car, message, length);
+        car.sentAt = System.nanoTime();
+        car.awaiting = true;
+        if (tickNanos > 0) {
+            car.nextTick += tickNanos;
+            if (now - car.nextTick > tickNanos) {
+                car.nextTick = now + tickNanos; // in ritardo di più di un tick: si riallinea
+            }
+        }
+    }
+
+    /**
+     * Chiude l'episodio corrente con un restart, oppure con lo shutdown se era l'ultimo.
+     */
+    private void endEpisode(Car car, long now) throws IOException {
+        car.awaiting = false;
+        car.episode++;
+        car.stateSince = now;
+        if (car.episode < episodes) {
+            send(car, RESTART, RESTART.length);
+            car.state = State.WAIT_INIT;
+        } else {
+            send(car, SHUTDOWN, SHUTDOWN.length);
+            car.state = State.DONE;
+        }
+    }
+
+    private void send(Car car, byte[] msg, int length) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(msg, 0, length);
+        sendBuffer.flip();
+        car.channel.send(sendBuffer, car.client);
+    }
+
+    /**
+     * Estrae gli angoli dei sensori dal messaggio di init ({@code id(init a1 a2 ...)}).
+     */
+    private static float[] parseAngles(byte[] data, int length) {
+        String text = new String(data, 0, length, StandardCharsets.ISO_8859_1);
+        int start = text.indexOf("(init");
+        int end = text.indexOf(')', start);
+        StringTokenizer st = new StringTokenizer(text.substring(start + 5, end < 0 ? text.length() : end));
+        float[] angles = new float[st.countTokens()];
+        try {
+            for (int i = 0; i < angles.length; i++) {
+                angles[i] = Float.parseFloat(st.nextToken());
+            }
+        } catch (NumberFormatException e) {
+            return DEFAULT_ANGLES;
+        }
+        return angles.length == 0 ? DEFAULT_ANGLES : angles;
+    }
+
+    /**
+     * Stampa tick, azioni perse e percentili di latenza per porta e complessivi.
+     */
+    public void report() {
+        long[] all = new long[0];
+        int totalMissed = 0;
+        for (Car car : cars) {
+            long[] latencies = Arrays.copyOf(car.latencies, car.replies);
+            Arrays.sort(latencies);
+            print("porta " + car.port, latencies, car.missed);
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            totalMissed += car.missed;
+        }
+        if (cars.length > 1) {
+            Arrays.sort(all);
+            print("totale", all, totalMissed);
+        }
+    }
+
+    private static void print(String label, long[] sorted, int missed) {
+        System.out.printf(Locale.US, "%-11s risposte: %7d  perse: %5d  latenza (us) p50: %8.1f  p90: %8.1f  p99: %8.1f  p99.9: %8.1f  max: %8.1f%n",
+                label, sorted.length, missed, percentile(sorted, 50), percentile(sorted, 90),
+                percentile(sorted, 99), percentile(sorted, 99.9), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+    }
+
+    /**
+     * @return percentile (metodo nearest-rank) in microsecondi, 0 se non ci sono campioni
+     */
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1000.0;
+    }
+}
@@ -0,0 +1,233 @@
+package it.unisa.diem.ai.torcs.utils.benchmark;
+
+import it.unisa.diem.ai.torcs.utils.FixedDecimalFormatter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Modello cinematico di un'auto su un circuito ovale, usato da {@link TorcsServerStub} per
+ * generare messaggi dei sensori plausibili senza il simulatore.
+ * <p>
+ * Il circuito alterna due rettilinei e due curve a raggio costante; l'auto segue un modello a
+ * bicicletta senza slittamento (sterzo, acceleratore e freno dell'ultima azione ricevuta). I
+ * sensori di bordo pista vengono calcolati lanciando ogni raggio lungo la pista, curve comprese,
+ * fino a 200 m. Le convenzioni sono quelle di TORCS: {@code trackPos} positivo verso sinistra,
+ * {@code angle} positivo quando l'auto punta a destra dell'asse della pista, velocità in km/h,
+ * sensori esterni alla pista a -1.
+ */
+final class TrackModel {
+
+    /** Segmenti del circuito: lunghezza (m) e curvatura (1/m, positiva verso sinistra) */
+    private static final double[] SEGMENT_LENGTHS = {600, 300, 600, 300};
+    private static final double[] SEGMENT_CURVATURES = {0, Math.PI / 300, 0, Math.PI / 300};
+    private static final double TRACK_LENGTH = 1800;
+
+    /** Metà della larghezza della pista (m) */
+    private static final double HALF_WIDTH = 6;
+
+    /** Portata dei sensori di bordo pista (m) */
+    private static final double SENSOR_RANGE = 200;
+
+    private static final double WHEELBASE = 2.6;
+    private static final double STEER_LOCK = 0.366;
+    private static final double MAX_ACCELERATION = 8;
+    private static final double MAX_DECELERATION = 12;
+    private static final double WHEEL_RADIUS = 0.3179;
+    private static final double[] GEAR_RATIOS = {80, 0, 120, 80, 60, 48, 40, 34}; // indice = marcia + 1
+
+    /** Cifre decimali dei valori nei messaggi */
+    private static final int FRACTION_DIGITS = 4;
+
+    private static final byte[][] KEYS = keys("angle", "curLapTime", "damage", "distFromStart", "distRaced",
+            "fuel", "gear", "lastLapTime", "opponents", "racePos", "rpm", "speedX", "speedY", "speedZ",
+            "track", "trackPos", "wheelSpinVel", "z", "focus");
+
+    private double distFromStart;
+    private double distRaced;
+    private double lateral;      // spostamento dal centro (m, positivo a sinistra)
+    private double heading;      // angolo rispetto all'asse della pista (rad, positivo a sinistra)
+    private double speed;        // m/s
+    private int gear;
+    private double curLapTime;
+    private double lastLapTime;
+    private double fuel;
+
+    TrackModel() {
+        reset();
+    }
+
+    /**
+     * Riporta l'auto sulla linea di partenza, ferma.
+     */
+    void reset() {
+        distFromStart = 0;
+        distRaced = 0;
+        lateral = 0;
+        heading = 0;
+        speed = 0;
+        gear = 0;
+        curLapTime = 0;
+        lastLapTime = 0;
+        fuel = 94;
+    }
+
+    /**
+     * Avanza la simulazione di un passo con i comandi indicati.
+     *
+     * @param dt durata del passo (s)
+     * @param accel acceleratore (0..1)
+     * @param brake freno (0..1)
+     * @param steer sterzo (-1..1, positivo a sinistra)
+     * @param gear marcia (-1..6)
+     */
+    void step(double dt, double accel, double brake, double steer, int gear) {
+        this.gear = gear;
+        double direction = gear < 0 ? -1 : 1;
+        double force = gear == 0 ? 0 : direction * accel * MAX_ACCELERATION;
+        force -= Math.signum(speed) * (brake * MAX_DECELERATION + 0.0015 * speed * speed + 0.1);
+        if (Math.abs(lateral) > HALF_WIDTH) {
+            force -= Math.signum(speed) * 3; // fuori pista
+        }
+        double newSpeed = speed + force * dt;
+        speed = (speed != 0 && Math.signum(newSpeed) != Math.signum(speed)) ? 0 : newSpeed;
+
+        double ds = speed * dt;
+        heading += ds * Math.tan(steer * STEER_LOCK) / WHEELBASE - curvature(distFromStart) * ds * Math.cos(heading);
+        heading = Math.atan2(Math.sin(heading), Math.cos(heading));
+        lateral += ds * Math.sin(heading);
+        double advance = ds * Math.cos(heading);
+        distRaced += advance;
+        distFromStart += advance;
+        curLapTime += dt;
+        if (distFromStart >= TRACK_LENGTH) {
+            distFromStart -= TRACK_LENGTH;
+            lastLapTime = curLapTime;
+            curLapTime = 0;
+        } else if (distFromStart < 0) {
+            distFromStart += TRACK_LENGTH;
+        }
+        fuel = Math.max(0, fuel - Math.abs(ds) * 0.0003);
+    }
+
+    /**
+     * Scrive il messaggio dei sensori nel formato del server SCR.
+     *
+     * @param angles angoli dei sensori di bordo pista (gradi, negativi a destra)
+     * @param dest buffer di destinazione
+     * @param offset posizione di scrittura
+     * @return posizione successiva all'ultimo byte scritto
+     */
+    int write(float[] angles, byte[] dest, int offset) {
+        int pos = offset;
+        double speedKmh = speed * 3.6;
+        double rpm = Math.min(10000, Math.max(800, Math.abs(speedKmh) * GEAR_RATIOS[Math.max(-1, Math.min(6, gear)) + 1]));
+        pos = scalar(0, -heading, dest, pos);
+        pos = scalar(1, curLapTime, dest, pos);
+        pos = scalar(2, 0, dest, pos);
+        pos = scalar(3, distFromStart, dest, pos);
+        pos = scalar(4, distRaced, dest, pos);
+        pos = scalar(5, fuel, dest, pos);
+        pos = integer(6, gear, dest, pos);
+        pos = scalar(7, lastLapTime, dest, pos);
+        pos = open(8, dest, pos);
+        for (int i = 0; i < 36; i++) {
+            pos = value(SENSOR_RANGE, dest, pos);
+        }
+        dest[pos++] = ')';
+        pos = integer(9, 1, dest, pos);
+        pos = scalar(10, rpm, dest, pos);
+        pos = scalar(11, speedKmh, dest, pos);
+        pos = scalar(12, 0, dest, pos);
+        pos = scalar(13, 0, dest, pos);
+        pos = open(14, dest, pos);
+        boolean onTrack = Math.abs(lateral) <= HALF_WIDTH;
+        for (float angle : angles) {
+            pos = value(onTrack ? edgeDistance(Math.toRadians(angle)) : -1, dest, pos);
+        }
+        dest[pos++] = ')';
+        pos = scalar(15, lateral / HALF_WIDTH, dest, pos);
+        pos = open(16, dest, pos);
+        for (int i = 0; i < 4; i++) {
+            pos = value(speed / WHEEL_RADIUS, dest, pos);
+        }
+        dest[pos++] = ')';
+        pos = scalar(17, 0.345, dest, pos);
+        pos = open(18, dest, pos);
+        for (int i = 0; i < 5; i++) {
+            pos = value(-1, dest, pos);
+        }
+        dest[pos++] = ')';
+        return pos;
+    }
+
+    /**
+     * Distanza dal bordo della pista lungo un raggio, seguendo la curvatura (passi di 1 m).
+     *
+     * @param angle angolo del raggio rispetto all'asse dell'auto (rad, negativo a destra)
+     * @return distanza (m), al più {@link #SENSOR_RANGE}
+     */
+    private double edgeDistance(double angle) {
+        double s = distFromStart;
+        double y = lateral;
+        double theta = heading + angle;
+        for (int d = 1; d <= SENSOR_RANGE; d++) {
+            y += Math.sin(theta);
+            if (Math.abs(y) > HALF_WIDTH) {
+                return d - 1 + (HALF_WIDTH - Math.abs(y - Math.sin(theta))) / Math.abs(Math.sin(theta));
+            }
+            double cos = Math.cos(theta);
+            s += cos;
+            theta -= curvature(s) * cos;
+        }
+        return SENSOR_RANGE;
+    }
+
+    /**
+     * @param s distanza dalla partenza (m)
+     * @return curvatura della pista in quel punto
+     */
+    private static double curvature(double s) {
+        s = ((s % TRACK_LENGTH) + TRACK_LENGTH) % TRACK_LENGTH;
+        for (int i = 0; i < SEGMENT_LENGTHS.length; i++) {
+            if (s < SEGMENT_LENGTHS[i]) {
+                return SEGMENT_CURVATURES[i];
+            }
+            s -= SEGMENT_LENGTHS[i];
+        }
+        return 0;
+    }
+
+    private static int scalar(int key, double value, byte[] dest, int pos) {
+        pos = open(key, dest, pos);
+        pos = value(value, dest, pos);
+        dest[pos++] = ')';
+        return pos;
+    }
+
+    private static int integer(int key, int value, byte[] dest, int pos) {
+        pos = open(key, dest, pos);
+        dest[pos++] = ' ';
+        pos = FixedDecimalFormatter.formatLong(value, dest, pos);
+        dest[pos++] = ')';
+        return pos;
+    }
+
+    private static int open(int key, byte[] dest, int pos) {
+        dest[pos++] = '(';
+        System.arraycopy(KEYS[key], 0, dest, pos, KEYS[key].length);
+        return pos + KEYS[key].length;
+    }
+
+    private static int value(double value, byte[] dest, int pos) {
+        dest[pos++] = ' ';
+        return FixedDecimalFormatter.format(value, FRACTION_DIGITS, dest, pos);
+    }
+
+    private static byte[][] keys(String... names) {
+        byte[][] keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return keys;
+    }
+}
@@ -2,12 +2,13 @@ package it.unisa.diem.ai.torcs.utils.debugging;
 
 import javax.swing.*;
 import java.awt.*;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.util.*;
-import java.util.List;
 import it.unisa.diem.ai.torcs.model.*;
 
 /**
- * Classe per la visualizzazione di istogrammi multipli a partire da un dataset di Sample.
+ * Classe per la visualizzazione di istogrammi multipli a partire da un dataset.
  * Confronta le distribuzioni dei valori raw e normalizzati per ciascuna feature.
  */
 public class MultiHistogramFromSamples {
@@ -25,22 +26,19 @@ public class MultiHistogramFromSamples {
          * Costruisce un istogramma per una determinata feature.
          *
          * @param featureName nome della feature (per il titolo del pannello)
-         * @param samples lista di campioni da cui estrarre i valori
+         * @param dataset dataset da cui estrarre i valori
          * @param feature feature da visualizzare
          * @param binCount numero di intervalli dell’istogramma
          */
-        public HistogramPanel(String featureName, List<Sample> samples, SensorFeature feature, int binCount) {
+        public HistogramPanel(String featureName, Dataset dataset, SensorFeature feature, int binCount) {
             this.featureName = featureName;
             this.binCount = binCount;
             this.frequencies = new int[binCount];
 
-            List<Double> values = new ArrayList<>();
-            for (Sample s : samples) {
-                values.add(s.getFeature().getValues().get(feature.ordinal()));
-            }
+            double[] values = dataset.column(feature).toArray(ValueLayout.JAVA_DOUBLE);
 
-            this.min = values.stream().mapToDouble(d -> d).min().orElse(0);
-            this.max = values.stream().mapToDouble(d -> d).max().orElse(1);
+            this.min = Arrays.stream(values).min().orElse(0);
+            this.max = Arrays.stream(values).max().orElse(1);
             double binWidth = (max - min) / binCount;
 
             for (double val : values) {
@@ -103,13 +101,13 @@ public class MultiHistogramFromSamples {
     }
 
     /**
-     * Carica una lista di Sample da un file CSV.
+     * Carica un dataset da un file CSV.
      *
      * @param path percorso del file CSV
-     * @return lista di Sample
+     * @return dataset caricato
      */
-    public static List<Sample> loadSamples(String path) {
-        return Dataset.loadFromCSV(path).getSamples();
+    public static Dataset loadSamples(String path) {
+        return Dataset.loadFromCSV(path);
     }
 
     /**
@@ -124,8 +122,8 @@ public class MultiHistogramFromSamples {
         String label1 = "DATASET 1";
         String label2 = "DATASET 2";
 
-        List<Sample> samples1 = loadSamples(dataset1Path);
-        List<Sample> samples2 = loadSamples(dataset2Path);
+        Dataset samples1 = loadSamples(dataset1Path);
+        Dataset samples2 = loadSamples(dataset2Path);
 
         JFrame frame = new JFrame("Confronto distribuzioni " + label1 + " vs " + label2);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -158,17 +156,18 @@ public class MultiHistogramFromSamples {
         /**
          * Costruttore del pannello per la distribuzione delle label.
          *
-         * @param samples lista di Sample da cui estrarre le label
+         * @param dataset dataset da cui estrarre le label
          * @param title titolo del pannello
          */
-        public LabelDistributionPanel(List<Sample> samples, String title) {
+        public LabelDistributionPanel(Dataset dataset, String title) {
             this.title = title;
             labelCounts = new LinkedHashMap<>();
             for (it.unisa.diem.ai.torcs.model.Label l : it.unisa.diem.ai.torcs.model.Label.values()) {
                 labelCounts.put(l, 0);
             }
-            for (Sample s : samples) {
-                it.unisa.diem.ai.torcs.model.Label lbl = s.getLabel();
+            MemorySegment codes = dataset.labelColumn();
+            for (long i = 0; i < codes.byteSize(); i++) {
+                it.unisa.diem.ai.torcs.model.Label lbl = it.unisa.diem.ai.torcs.model.Label.fromCode(codes.get(ValueLayout.JAVA_BYTE, i));
                 labelCounts.put(lbl, labelCounts.get(lbl) + 1);
             }
             setPreferredSize(new Dimension(500, 200));
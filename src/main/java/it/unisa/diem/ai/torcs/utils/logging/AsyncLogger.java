@@ -0,0 +1,238 @@
+package it.unisa.diem.ai.torcs.utils.logging;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log asincrono per il ciclo di controllo (pacchetti {@code agent} e {@code io}).
+ * <p>
+ * Scrivere su {@code System.out} prende un lock e può bloccare per millisecondi; qui il thread
+ * chiamante si limita ad accodare il messaggio non formattato (testo costante più un argomento)
+ * in una coda circolare senza lock ({@link LogRingBuffer}); un thread demone la svuota e
+ * stampa le righe. Se la coda è piena il messaggio viene scartato e contato: il chiamante non si
+ * blocca mai e, per argomenti già esistenti (stringhe, enum), non alloca.
+ * <p>
+ * Ogni categoria ({@link #get(String)}) ha un filtro di livello globale
+ * ({@link #setLevel(LogLevel)}, oppure la proprietà di sistema {@code torcs.log.level}),
+ * un limite di messaggi al secondo ({@link #rateLimit(int)}) e un campionamento
+ * ({@link #sample(int)}: uno ogni N). I messaggi scartati dal limite o dal campionamento sono
+ * contati per categoria ({@link #getSuppressed()}); quelli persi per coda piena sono segnalati
+ * periodicamente dal thread di stampa.
+ */
+public final class AsyncLogger {
+
+    /** Capacità della coda condivisa da tutte le categorie */
+    static final int CAPACITY = 8192;
+
+    /** Durata della finestra del limite di messaggi */
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Pausa del thread di stampa quando la coda è vuota */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final LogRingBuffer BUFFER = new LogRingBuffer(CAPACITY);
+    private static final Map<String, AsyncLogger> LOGGERS = new ConcurrentHashMap<>();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final PrintStream OUT = System.out;
+
+    private static volatile LogLevel threshold = LogLevel.fromName(System.getProperty("torcs.log.level"), LogLevel.INFO);
+
+    static {
+        Thread drainer = new Thread(AsyncLogger::drainLoop, "async-logger");
+        drainer.setDaemon(true);
+        drainer.start();
+        // Alla chiusura della JVM vengono stampati i messaggi ancora in coda
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLogger::flush, "async-logger-flush"));
+    }
+
+    private final String category;
+    private volatile int maxPerWindow = Integer.MAX_VALUE;
+    private volatile int sampleEvery = 1;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong windowCount = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private AsyncLogger(String category) {
+        this.category = category;
+    }
+
+    /**
+     * Restituisce il logger di una categoria, creandolo alla prima richiesta.
+     *
+     * @param category nome della categoria (ad esempio {@code "agent.normal"})
+     * @return logger della categoria
+     */
+    public static AsyncLogger get(String category) {
+        return LOGGERS.computeIfAbsent(category, AsyncLogger::new);
+    }
+
+    /**
+     * Imposta il livello minimo dei messaggi stampati, per tutte le categorie.
+     *
+     * @param level livello minimo
+     */
+    public static void setLevel(LogLevel level) {
+        threshold = level;
+    }
+
+    /** @return livello minimo dei messaggi stampati */
+    public static LogLevel getLevel() {
+        return threshold;
+    }
+
+    /**
+     * Limita i messaggi della categoria a un numero massimo al secondo.
+     *
+     * @param perSecond messaggi al secondo (oltre vengono scartati)
+     * @return questo logger
+     */
+    public AsyncLogger rateLimit(int perSecond) {
+        if (perSecond <= 0) {
+            throw new IllegalArgumentException("Il limite deve essere positivo: " + perSecond);
+        }
+        maxPerWindow = perSecond;
+        return this;
+    }
+
+    /**
+     * Stampa solo un messaggio della categoria ogni {@code every}.
+     *
+     * @param every periodo di campionamento (1 = tutti)
+     * @return questo logger
+     */
+    public AsyncLogger sample(int every) {
+        if (every <= 0) {
+            throw new IllegalArgumentException("Il periodo di campionamento deve essere positivo: " + every);
+        }
+        sampleEvery = every;
+        return this;
+    }
+
+    /**
+     * @param level livello del messaggio
+     * @return true se i messaggi di quel livello superano il filtro globale
+     */
+    public boolean isEnabled(LogLevel level) {
+        return level.compareTo(threshold) >= 0 && level != LogLevel.OFF;
+    }
+
+    /** Accoda un messaggio di livello DEBUG (vedi {@link #log}). */
+    public void debug(String message, Object argument) {
+        log(LogLevel.DEBUG, message, argument);
+    }
+
+    /** Accoda un messaggio di livello INFO (vedi {@link #log}). */
+    public void info(String message, Object argument) {
+        log(LogLevel.INFO, message, argument);
+    }
+
+    /** Accoda un messaggio di livello WARN (vedi {@link #log}). */
+    public void warn(String message, Object argument) {
+        log(LogLevel.WARN, message, argument);
+    }
+
+    /**
+     * Accoda un messaggio senza bloccare. La riga stampata è {@code message} seguito dal
+     * testo di {@code argument}, se non nullo: la concatenazione avviene sul thread di stampa.
+     * L'argomento non deve essere modificato dopo la chiamata.
+     *
+     * @param level livello del messaggio
+     * @param message testo costante
+     * @param argument argomento facoltativo
+     */
+    public void log(LogLevel level, String message, Object argument) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (sampleEvery > 1 && sampleCounter.getAndIncrement() % sampleEvery != 0) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        long now = System.nanoTime();
+        if (maxPerWindow != Integer.MAX_VALUE && !acquire(now)) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        if (!BUFFER.offer(message, argument)) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    /**
+     * Limite a finestra fissa: al più {@code maxPerWindow} messaggi per finestra.
+     */
+    private boolean acquire(long now) {
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerWindow;
+    }
+
+    /** @return nome della categoria */
+    public String getCategory() {
+        return category;
+    }
+
+    /** @return messaggi della categoria scartati dal limite o dal campionamento */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /** @return messaggi di tutte le categorie persi perché la coda era piena */
+    public static long getDropped() {
+        return DROPPED.get();
+    }
+
+    /**
+     * Ciclo del thread di stampa: svuota la coda e, quando è vuota, attende brevemente.
+     */
+    private static void drainLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            if (drain() == 0) {
+                long dropped = DROPPED.get();
+                if (dropped != reportedDrops) {
+                    OUT.println("AsyncLogger: " + (dropped - reportedDrops) + " messages dropped (buffer full)");
+                    reportedDrops = dropped;
+                }
+                OUT.flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Stampa tutti i messaggi presenti in coda.
+     *
+     * @return numero di messaggi stampati
+     */
+    private static synchronized int drain() {
+        int count = 0;
+        LogRingBuffer.Entry entry;
+        while ((entry = BUFFER.peek()) != null) {
+            if (entry.argument == null) {
+                OUT.println(entry.message);
+            } else {
+                OUT.println(entry.message + entry.argument);
+            }
+            BUFFER.release(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Stampa subito i messaggi in coda (chiamato anche alla chiusura della JVM).
+     */
+    public static void flush() {
+        drain();
+        OUT.flush();
+    }
+}
@@ -0,0 +1,40 @@
+package it.unisa.diem.ai.torcs.utils.logging;
+
+/**
+ * Livelli di log, in ordine di gravità crescente.
+ */
+public enum LogLevel {
+
+    /** Dettagli per il debug (ad esempio ogni messaggio scambiato con il server) */
+    DEBUG,
+
+    /** Informazioni sull'andamento della guida */
+    INFO,
+
+    /** Situazioni anomale ma recuperabili (timeout, sforamenti) */
+    WARN,
+
+    /** Errori */
+    ERROR,
+
+    /** Nessun messaggio (solo come soglia) */
+    OFF;
+
+    /**
+     * Converte un nome (senza distinzione tra maiuscole e minuscole) nel livello corrispondente.
+     *
+     * @param name nome del livello
+     * @param defaultLevel livello restituito se il nome non è valido o è {@code null}
+     * @return livello corrispondente
+     */
+    public static LogLevel fromName(String name, LogLevel defaultLevel) {
+        if (name != null) {
+            for (LogLevel level : values()) {
+                if (level.name().equalsIgnoreCase(name.trim())) {
+                    return level;
+                }
+            }
+        }
+        return defaultLevel;
+    }
+}
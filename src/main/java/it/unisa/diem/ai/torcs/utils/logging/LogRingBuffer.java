@@ -0,0 +1,108 @@
+package it.unisa.diem.ai.torcs.utils.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coda circolare limitata e senza lock, con più produttori e un solo consumatore.
+ * <p>
+ * Gli elementi sono preallocati e riutilizzati: un produttore prenota una posizione con una
+ * {@code compareAndSet} sull'indice di coda, scrive i campi dell'elemento e lo pubblica
+ * aggiornandone il numero di sequenza (schema di D. Vyukov). Il consumatore legge l'elemento
+ * pubblicato e lo restituisce ai produttori. Se la coda è piena {@link #offer} fallisce subito:
+ * un produttore non attende mai.
+ */
+final class LogRingBuffer {
+
+    /**
+     * Elemento della coda: un messaggio di log non ancora formattato.
+     */
+    static final class Entry {
+        /** Numero di sequenza: indica se l'elemento è libero, pubblicato o in lettura */
+        volatile long sequence;
+        String message;
+        Object argument;
+
+        /** Azzera i riferimenti, per non trattenere oggetti dopo la stampa */
+        void clear() {
+            message = null;
+            argument = null;
+        }
+    }
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /** Prossima posizione da prenotare (produttori) */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Prossima posizione da leggere (solo consumatore) */
+    private long head;
+
+    /**
+     * Costruttore.
+     *
+     * @param capacity capacità minima (arrotondata alla potenza di 2 successiva)
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new Entry[size];
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            entries[i].sequence = i;
+        }
+    }
+
+    /**
+     * Accoda un messaggio; non si blocca mai.
+     *
+     * @return false se la coda è piena e il messaggio è stato scartato
+     */
+    boolean offer(String message, Object argument) {
+        long position = tail.get();
+        Entry entry;
+        while (true) {
+            entry = entries[(int) position & mask];
+            long difference = entry.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // piena: l'elemento non è ancora stato letto dal consumatore
+            } else {
+                position = tail.get(); // un altro produttore ha già preso la posizione
+            }
+        }
+        entry.message = message;
+        entry.argument = argument;
+        entry.sequence = position + 1; // pubblicazione
+        return true;
+    }
+
+    /**
+     * Restituisce il prossimo elemento pubblicato, da rilasciare con {@link #release} dopo l'uso.
+     * Va chiamato da un solo thread.
+     *
+     * @return elemento da leggere, oppure {@code null} se la coda è vuota
+     */
+    Entry peek() {
+        Entry entry = entries[(int) head & mask];
+        return entry.sequence == head + 1 ? entry : null;
+    }
+
+    /**
+     * Rilascia l'elemento restituito da {@link #peek}, rendendolo di nuovo disponibile ai produttori.
+     */
+    void release(Entry entry) {
+        entry.clear();
+        entry.sequence = head + entries.length;
+        head++;
+    }
+
+    /** @return capacità della coda */
+    int capacity() {
+        return entries.length;
+    }
+}
@@ -0,0 +1,134 @@
+package it.unisa.diem.ai.torcs.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Istogramma di latenze in nanosecondi a scala log-lineare (come HdrHistogram), senza lock.
+ * <p>
+ * I valori fino a 63 ns hanno un bucket ciascuno; oltre, ogni potenza di 2 è divisa in 32
+ * bucket di uguale ampiezza, quindi un percentile è noto con un errore relativo di al più
+ * 1/32 (circa 3%). Il numero di bucket è fisso (valori fino a circa 137 s, oltre vengono
+ * accumulati nell'ultimo bucket; il massimo resta esatto): registrare un valore costa un
+ * calcolo di indice e un incremento atomico, senza allocazioni, e più thread possono
+ * registrare in parallelo.
+ */
+public final class LatencyHistogram {
+
+    /** Bit della parte lineare: 2^6 = 64 bucket per i valori piccoli */
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    /** Esponente del bit più alto registrabile con precisione (2^37 ns, circa 137 s) */
+    private static final int MAX_MAGNITUDE = 36;
+    private static final long MAX_TRACKABLE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra una durata.
+     *
+     * @param nanos durata in nanosecondi (i valori negativi contano come 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(Math.min(value, MAX_TRACKABLE)));
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Un altro thread ha aggiornato il massimo: si riprova con il nuovo valore
+        }
+    }
+
+    /**
+     * Aggiunge i conteggi di un altro istogramma a questo.
+     *
+     * @param other istogramma da sommare
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+            // Come in record()
+        }
+    }
+
+    /**
+     * Azzera l'istogramma. I valori registrati in parallelo all'azzeramento possono andare persi.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /** @return numero di valori registrati */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** @return valore massimo registrato (ns), 0 se vuoto */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Restituisce un percentile (metodo nearest-rank), con la precisione dei bucket.
+     *
+     * @param percentile percentile richiesto (0..100)
+     * @return limite superiore del bucket che contiene il percentile (ns), al più il massimo; 0 se vuoto
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                // L'ultimo bucket raccoglie anche i valori fuori scala: il massimo è esatto
+                return i == BUCKETS - 1 ? max.get() : Math.min(lowestValue(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Indice del bucket di un valore: lineare sotto {@link #SUB_BUCKET_COUNT}, poi
+     * {@link #SUB_BUCKET_HALF} bucket per ogni potenza di 2.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Valore più piccolo del bucket indicato (inverso di {@link #index(long)}).
+     */
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        return (long) (index - shift * SUB_BUCKET_HALF) << shift;
+    }
+}
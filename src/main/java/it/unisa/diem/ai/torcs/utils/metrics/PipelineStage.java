@@ -0,0 +1,45 @@
+package it.unisa.diem.ai.torcs.utils.metrics;
+
+/**
+ * Fasi di un tick del ciclo di controllo misurate da {@link TickProfiler}.
+ */
+public enum PipelineStage {
+
+    /** Attesa e lettura del messaggio del server (include il tempo in cui il server non ha ancora inviato) */
+    RECEIVE("receive"),
+
+    /** Preparazione del modello dei sensori (la decodifica dei valori è su richiesta e cade in FEATURES) */
+    PARSE("parse"),
+
+    /** Estrazione delle feature dal modello dei sensori */
+    FEATURES("features"),
+
+    /** Normalizzazione Min-Max delle feature */
+    NORMALIZE("normalize"),
+
+    /** Ricerca dei vicini e classificazione KNN */
+    KNN("knn"),
+
+    /** Costruzione dell'azione a partire dalla classe predetta */
+    ACTION("action"),
+
+    /** Chiamata complessiva a {@code control()} del controller (comprende le quattro fasi precedenti) */
+    CONTROL("control"),
+
+    /** Serializzazione e invio dell'azione */
+    SEND("send"),
+
+    /** Tick completo, dalla ricezione del messaggio all'invio dell'azione (esclusa l'attesa) */
+    TICK("tick");
+
+    private final String label;
+
+    PipelineStage(String label) {
+        this.label = label;
+    }
+
+    /** @return nome breve usato nei riepiloghi */
+    public String getLabel() {
+        return label;
+    }
+}
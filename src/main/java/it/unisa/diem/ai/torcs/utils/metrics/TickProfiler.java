@@ -0,0 +1,117 @@
+package it.unisa.diem.ai.torcs.utils.metrics;
+
+import java.util.Locale;
+
+/**
+ * Misura la durata delle fasi del ciclo di controllo di un'auto ({@link PipelineStage}), con un
+ * {@link LatencyHistogram} per fase.
+ * <p>
+ * Le fasi si misurano a catena: {@link #record(PipelineStage, long)} registra il tempo trascorso
+ * dall'istante indicato e restituisce l'istante corrente, che fa da inizio della fase
+ * successiva; ogni fase costa quindi una sola lettura di {@link System#nanoTime()} e un
+ * incremento atomico, abbastanza poco da lasciare la misura sempre attiva.
+ * <p>
+ * A fine episodio {@link #endEpisode(long)} stampa i percentili dell'episodio e li somma al
+ * totale, stampato da {@link #shutdown()}.
+ */
+public final class TickProfiler {
+
+    private static final PipelineStage[] STAGES = PipelineStage.values();
+
+    private final String name;
+    private final LatencyHistogram[] episode = new LatencyHistogram[STAGES.length];
+    private final LatencyHistogram[] total = new LatencyHistogram[STAGES.length];
+
+    /**
+     * Costruttore.
+     *
+     * @param name nome dell'auto nei riepiloghi (ad esempio {@code SCR@3001})
+     */
+    public TickProfiler(String name) {
+        this.name = name;
+        for (int i = 0; i < STAGES.length; i++) {
+            episode[i] = new LatencyHistogram();
+            total[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Registra la durata di una fase iniziata all'istante indicato.
+     *
+     * @param stage fase conclusa
+     * @param start istante di inizio della fase ({@link System#nanoTime()})
+     * @return istante di fine della fase, da usare come inizio della successiva
+     */
+    public long record(PipelineStage stage, long start) {
+        long now = System.nanoTime();
+        episode[stage.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Registra una durata già misurata.
+     *
+     * @param stage fase
+     * @param nanos durata in nanosecondi
+     */
+    public void recordDuration(PipelineStage stage, long nanos) {
+        episode[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param stage fase
+     * @return istogramma dell'episodio corrente
+     */
+    public LatencyHistogram histogram(PipelineStage stage) {
+        return episode[stage.ordinal()];
+    }
+
+    /**
+     * Stampa il riepilogo dell'episodio, lo aggiunge al totale e azzera gli istogrammi
+     * dell'episodio.
+     *
+     * @param number numero dell'episodio (da 0)
+     */
+    public void endEpisode(long number) {
+        if (episode[PipelineStage.TICK.ordinal()].getCount() == 0) {
+            return;
+        }
+        System.out.print(summary("episode " + number, episode));
+        for (int i = 0; i < STAGES.length; i++) {
+            total[i].add(episode[i]);
+            episode[i].reset();
+        }
+    }
+
+    /**
+     * Chiude l'episodio in corso e stampa il riepilogo di tutti gli episodi.
+     */
+    public void shutdown() {
+        for (int i = 0; i < STAGES.length; i++) {
+            total[i].add(episode[i]);
+            episode[i].reset();
+        }
+        System.out.print(summary("total", total));
+    }
+
+    /**
+     * Riepilogo in una sola stringa, stampata con una sola chiamata per non mescolare le righe
+     * di auto diverse.
+     */
+    private String summary(String title, LatencyHistogram[] histograms) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Timing %s, %s (%d ticks, us):%n",
+                name, title, histograms[PipelineStage.TICK.ordinal()].getCount()));
+        for (PipelineStage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "  %-9s p50 %9.1f  p99 %9.1f  p99.9 %9.1f  max %9.1f%n",
+                    stage.getLabel(), histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMax() / 1000.0));
+        }
+        return sb.toString();
+    }
+}
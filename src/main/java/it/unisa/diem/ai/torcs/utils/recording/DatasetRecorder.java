@@ -0,0 +1,439 @@
+package it.unisa.diem.ai.torcs.utils.recording;
+
+import it.unisa.diem.ai.torcs.model.CsvRowFormatter;
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.Label;
+import it.unisa.diem.ai.torcs.model.SensorFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registrazione continua di campioni etichettati su file CSV, pensata per le sessioni di guida
+ * manuale.
+ * <p>
+ * Il thread di controllo consegna i campioni con {@link #record}, che copia le feature in una
+ * coda circolare senza lock ({@link SampleRingBuffer}) e ritorna subito: niente allocazioni,
+ * niente I/O e nessuna attesa, nemmeno a coda piena (il campione viene scartato e contato). Un
+ * thread dedicato svuota la coda, formatta le righe a blocchi e le scrive su file; la memoria
+ * occupata resta quella della coda, qualunque sia la durata della sessione.
+ * <p>
+ * Ogni flusso ({@code streams} nel costruttore) viene scritto in una serie di segmenti
+ * {@code <flusso>-<sessione>-<n>.csv} nella cartella indicata, ognuno con la propria
+ * intestazione e quindi caricabile da solo con {@code Dataset.loadFromCSV}. Un segmento viene
+ * chiuso e ne viene aperto uno nuovo quando supera la dimensione o la durata massima. Le righe
+ * formattate vengono scritte solo intere, al più ogni {@link #FLUSH_INTERVAL_MILLIS} ms, e i
+ * file vengono sincronizzati sul disco periodicamente: un arresto improvviso perde al più gli
+ * ultimi istanti di registrazione. Alla chiusura della JVM i campioni ancora in coda vengono
+ * scritti.
+ * <p>
+ * A registrazione chiusa, {@link #appendTo(int, Path)} accoda i segmenti di un flusso a un
+ * unico CSV (con una sola intestazione) e li elimina.
+ */
+public final class DatasetRecorder implements Closeable {
+
+    /** Dimensione massima di default di un segmento */
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L << 20;
+
+    /** Durata massima di default di un segmento */
+    public static final long DEFAULT_MAX_SEGMENT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /** Intervallo di default tra due sincronizzazioni sul disco */
+    public static final long DEFAULT_SYNC_MILLIS = 1000;
+
+    /** Capacità di default della coda (campioni) */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Intervallo massimo tra la registrazione di una riga e la sua scrittura su file */
+    public static final long FLUSH_INTERVAL_MILLIS = 200;
+
+    /** Pausa del thread di scrittura quando la coda è vuota */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Dimensione del buffer di scrittura di ogni flusso */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /** Intestazione dei segmenti, con fine riga */
+    private static final byte[] HEADER = new byte[CsvRowFormatter.headerLength() + LINE_SEPARATOR.length];
+
+    static {
+        int length = CsvRowFormatter.formatHeader(HEADER, 0);
+        System.arraycopy(LINE_SEPARATOR, 0, HEADER, length, LINE_SEPARATOR.length);
+    }
+
+    private final Path directory;
+    private final String session;
+    private final long maxSegmentBytes;
+    private final long maxSegmentNanos;
+    private final long syncNanos;
+
+    private final SampleRingBuffer buffer;
+    private final Stream[] streams;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private final Thread hook;
+
+    private volatile boolean closed;
+    private boolean failed;            // Errore di scrittura: i campioni vengono scartati (thread di scrittura)
+
+    /**
+     * Flusso di campioni scritto in una serie di segmenti; usato solo dal thread di scrittura.
+     */
+    private static final class Stream {
+        final String name;
+        final List<Path> segments = new ArrayList<>();
+        final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+        FileChannel channel;
+        long written;         // Byte scritti nel segmento corrente
+        long openedAt;        // Apertura del segmento corrente (System.nanoTime)
+        int sequence;         // Numero dell'ultimo segmento
+        boolean unsynced;     // Dati scritti dopo l'ultima sincronizzazione
+
+        Stream(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Crea un registratore con i limiti di default.
+     *
+     * @param directory cartella dei segmenti (viene creata se non esiste)
+     * @param streams nomi dei flussi, usati come prefisso dei file
+     * @throws IOException se la cartella non può essere creata
+     */
+    public DatasetRecorder(Path directory, String... streams) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SEGMENT_MILLIS, DEFAULT_SYNC_MILLIS, DEFAULT_CAPACITY, streams);
+    }
+
+    /**
+     * Crea un registratore e avvia il thread di scrittura.
+     *
+     * @param directory cartella dei segmenti (viene creata se non esiste)
+     * @param maxSegmentBytes dimensione oltre la quale il segmento viene chiuso
+     * @param maxSegmentMillis durata oltre la quale il segmento viene chiuso
+     * @param syncMillis intervallo tra due sincronizzazioni sul disco
+     * @param capacity numero di campioni che la coda può contenere
+     * @param streams nomi dei flussi, usati come prefisso dei file
+     * @throws IOException se la cartella non può essere creata
+     */
+    public DatasetRecorder(Path directory, long maxSegmentBytes, long maxSegmentMillis, long syncMillis, int capacity,
+                           String... streams) throws IOException {
+        if (maxSegmentBytes <= 0 || maxSegmentMillis <= 0 || syncMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Limiti della registrazione non validi");
+        }
+        if (streams.length == 0) {
+            throw new IllegalArgumentException("Nessun flusso da registrare");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.session = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentNanos = TimeUnit.MILLISECONDS.toNanos(maxSegmentMillis);
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(syncMillis);
+        this.buffer = new SampleRingBuffer(capacity, SensorFeature.values().length);
+        this.streams = new Stream[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            this.streams[i] = new Stream(streams[i]);
+        }
+
+        writer = new Thread(this::writeLoop, "dataset-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        // Alla chiusura della JVM vengono scritti i campioni ancora in coda
+        hook = new Thread(this::close, "dataset-recorder-flush");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * Accoda un campione senza bloccare; le feature vengono copiate, quindi il vettore può
+     * essere riutilizzato subito dopo la chiamata.
+     *
+     * @param stream indice del flusso (posizione nel costruttore)
+     * @param features feature del campione, nell'ordine di {@link SensorFeature}
+     * @param label etichetta del campione
+     * @return false se il campione è stato scartato (coda piena o registratore chiuso)
+     */
+    public boolean record(int stream, FeatureVector features, Label label) {
+        if (stream < 0 || stream >= streams.length) {
+            throw new IndexOutOfBoundsException("Flusso " + stream + " inesistente");
+        }
+        if (closed || !buffer.offer(stream, features, label)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** @return campioni scartati perché la coda era piena o il registratore chiuso */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Restituisce i segmenti scritti finora per un flusso. Va chiamato dopo {@link #close()}.
+     *
+     * @param stream indice del flusso
+     * @return percorsi dei segmenti, in ordine di scrittura
+     */
+    public List<Path> segments(int stream) {
+        return List.copyOf(streams[stream].segments);
+    }
+
+    /**
+     * Ciclo del thread di scrittura: svuota la coda, scrive i buffer pieni o più vecchi di
+     * {@link #FLUSH_INTERVAL_MILLIS}, sincronizza periodicamente e, quando la coda è vuota,
+     * attende brevemente. Alla chiusura scrive tutto e chiude i segmenti.
+     */
+    private void writeLoop() {
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+        long lastFlush = System.nanoTime();
+        long lastSync = lastFlush;
+        long reportedDrops = 0;
+        while (true) {
+            boolean closing = closed; // letto prima di svuotare: i campioni accodati prima della chiusura vengono scritti
+            int count = drain();
+            long now = System.nanoTime();
+            try {
+                if (closing || now - lastFlush >= flushNanos) {
+                    flushAll();
+                    lastFlush = now;
+                }
+                if (closing || now - lastSync >= syncNanos) {
+                    syncAll();
+                    lastSync = now;
+                }
+            } catch (IOException e) {
+                stop(e);
+            }
+            if (closing) {
+                break;
+            }
+            if (count == 0) {
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    System.out.println("DatasetRecorder: " + (drops - reportedDrops) + " samples dropped (buffer full)");
+                    reportedDrops = drops;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeSegments();
+    }
+
+    /**
+     * Formatta i campioni presenti in coda nei buffer dei rispettivi flussi.
+     *
+     * @return numero di campioni estratti dalla coda
+     */
+    private int drain() {
+        int count = 0;
+        long now = System.nanoTime();
+        SampleRingBuffer.Entry entry;
+        while ((entry = buffer.peek()) != null) {
+            if (!failed) {
+                try {
+                    append(streams[entry.stream], entry.values, entry.label, now);
+                } catch (IOException e) {
+                    stop(e);
+                }
+            }
+            buffer.release(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Aggiunge una riga al buffer di un flusso, nel formato di {@code Sample.toCSV()}, aprendo
+     * un nuovo segmento se quello corrente ha raggiunto i limiti.
+     */
+    private void append(Stream stream, double[] values, Label label, long now) throws IOException {
+        if (stream.channel == null || stream.written + stream.pending.position() >= maxSegmentBytes
+                || now - stream.openedAt >= maxSegmentNanos) {
+            rotate(stream, now);
+        }
+        if (stream.pending.remaining() < CsvRowFormatter.maxRowLength(values, values.length) + LINE_SEPARATOR.length) {
+            flush(stream);
+        }
+        byte[] array = stream.pending.array();
+        int pos = CsvRowFormatter.formatRow(values, values.length, label, CsvRowFormatter.ITALIAN_SEPARATOR,
+                array, stream.pending.position());
+        System.arraycopy(LINE_SEPARATOR, 0, array, pos, LINE_SEPARATOR.length);
+        stream.pending.position(pos + LINE_SEPARATOR.length);
+    }
+
+    /**
+     * Chiude il segmento corrente di un flusso (se c'è) e ne apre uno nuovo con l'intestazione.
+     */
+    private void rotate(Stream stream, long now) throws IOException {
+        if (stream.channel != null) {
+            flush(stream);
+            stream.channel.force(false);
+            stream.channel.close();
+            stream.channel = null;
+        }
+        while (stream.channel == null) {
+            Path path = directory.resolve(String.format(Locale.ROOT, "%s-%s-%03d.csv", stream.name, session, ++stream.sequence));
+            try {
+                stream.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                stream.segments.add(path);
+            } catch (FileAlreadyExistsException e) {
+                // Segmento di un'altra registrazione iniziata nello stesso secondo: si prova il numero successivo
+            }
+        }
+        stream.written = 0;
+        stream.openedAt = now;
+        stream.pending.put(HEADER);
+    }
+
+    /**
+     * Scrive sul segmento corrente le righe accumulate nel buffer di un flusso.
+     */
+    private void flush(Stream stream) throws IOException {
+        stream.pending.flip();
+        while (stream.pending.hasRemaining()) {
+            stream.written += stream.channel.write(stream.pending);
+        }
+        stream.pending.clear();
+        stream.unsynced = true;
+    }
+
+    private void flushAll() throws IOException {
+        for (Stream stream : streams) {
+            if (stream.channel != null && stream.pending.position() > 0) {
+                flush(stream);
+            }
+        }
+    }
+
+    private void syncAll() throws IOException {
+        for (Stream stream : streams) {
+            if (stream.channel != null && stream.unsynced) {
+                stream.channel.force(false);
+                stream.unsynced = false;
+            }
+        }
+    }
+
+    /**
+     * Interrompe la registrazione dopo un errore di scrittura: i campioni successivi vengono
+     * scartati, quelli già scritti restano nei segmenti.
+     */
+    private void stop(IOException e) {
+        if (!failed) {
+            System.out.println("Recording stopped: " + e.getMessage());
+            failed = true;
+            closeSegments();
+        }
+    }
+
+    private void closeSegments() {
+        for (Stream stream : streams) {
+            if (stream.channel != null) {
+                try {
+                    stream.channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                stream.channel = null;
+            }
+        }
+    }
+
+    /**
+     * Scrive i campioni ancora in coda, sincronizza e chiude i segmenti e ferma il thread di
+     * scrittura. I campioni registrati dopo la chiusura vengono scartati.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != hook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // JVM già in chiusura: l'hook è in esecuzione o lo sarà, e non farà nulla
+            }
+        }
+    }
+
+    /**
+     * Accoda i segmenti di un flusso a un file CSV e li elimina. L'intestazione viene scritta
+     * solo se il file è nuovo o vuoto, quindi sessioni successive producono un unico dataset
+     * valido. Va chiamato dopo {@link #close()}.
+     *
+     * @param stream indice del flusso
+     * @param target file CSV di destinazione
+     * @return numero di byte di dati (righe) accodati
+     * @throws IOException in caso di errore di lettura o scrittura
+     * @throws IllegalStateException se la registrazione non è stata chiusa
+     */
+    public long appendTo(int stream, Path target) throws IOException {
+        if (!closed || writer.isAlive()) {
+            throw new IllegalStateException("La registrazione è ancora in corso");
+        }
+        List<Path> segments = streams[stream].segments;
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long appended = 0;
+        boolean header = !Files.exists(target) || Files.size(target) == 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            if (header) {
+                ByteBuffer bytes = ByteBuffer.wrap(HEADER);
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+            }
+            for (Path segment : segments) {
+                try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    long position = Math.min(HEADER.length, in.size());
+                    long size = in.size();
+                    while (position < size) {
+                        long transferred = in.transferTo(position, size - position, out);
+                        position += transferred;
+                        appended += transferred;
+                    }
+                }
+            }
+            out.force(false);
+        }
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        segments.clear();
+        return appended;
+    }
+}
@@ -0,0 +1,118 @@
+package it.unisa.diem.ai.torcs.utils.recording;
+
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.Label;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coda circolare limitata e senza lock di campioni da registrare, con più produttori e un solo
+ * consumatore (stesso schema di {@code LogRingBuffer}).
+ * <p>
+ * Ogni elemento contiene un array di feature preallocato: un produttore prenota una posizione
+ * con una {@code compareAndSet}, copia i valori del campione nell'array e pubblica l'elemento
+ * aggiornandone il numero di sequenza. Accodare un campione non alloca e, se la coda è piena,
+ * fallisce subito invece di attendere.
+ */
+final class SampleRingBuffer {
+
+    /**
+     * Elemento della coda: un campione non ancora scritto su file.
+     */
+    static final class Entry {
+        /** Numero di sequenza: indica se l'elemento è libero, pubblicato o in lettura */
+        volatile long sequence;
+        int stream;
+        Label label;
+        final double[] values;
+
+        Entry(int dimensions) {
+            values = new double[dimensions];
+        }
+    }
+
+    private final Entry[] entries;
+    private final int mask;
+    private final int dimensions;
+
+    /** Prossima posizione da prenotare (produttori) */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Prossima posizione da leggere (solo consumatore) */
+    private long head;
+
+    /**
+     * Costruttore.
+     *
+     * @param capacity capacità minima (arrotondata alla potenza di 2 successiva)
+     * @param dimensions numero di feature di ogni campione
+     */
+    SampleRingBuffer(int capacity, int dimensions) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new Entry[size];
+        mask = size - 1;
+        this.dimensions = dimensions;
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(dimensions);
+            entries[i].sequence = i;
+        }
+    }
+
+    /**
+     * Accoda un campione copiandone i valori; non si blocca mai.
+     *
+     * @return false se la coda è piena e il campione è stato scartato
+     * @throws IllegalArgumentException se il numero di feature non è quello della coda
+     */
+    boolean offer(int stream, FeatureVector features, Label label) {
+        if (features.size() != dimensions) {
+            throw new IllegalArgumentException("Il campione ha " + features.size() + " feature, attese " + dimensions);
+        }
+        long position = tail.get();
+        Entry entry;
+        while (true) {
+            entry = entries[(int) position & mask];
+            long difference = entry.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // piena: l'elemento non è ancora stato scritto dal consumatore
+            } else {
+                position = tail.get(); // un altro produttore ha già preso la posizione
+            }
+        }
+        entry.stream = stream;
+        entry.label = label;
+        features.copyTo(entry.values, 0);
+        entry.sequence = position + 1; // pubblicazione
+        return true;
+    }
+
+    /**
+     * Restituisce il prossimo elemento pubblicato, da rilasciare con {@link #release} dopo l'uso.
+     * Va chiamato da un solo thread.
+     *
+     * @return elemento da leggere, oppure {@code null} se la coda è vuota
+     */
+    Entry peek() {
+        Entry entry = entries[(int) head & mask];
+        return entry.sequence == head + 1 ? entry : null;
+    }
+
+    /**
+     * Rilascia l'elemento restituito da {@link #peek}, rendendolo di nuovo disponibile ai produttori.
+     */
+    void release(Entry entry) {
+        entry.label = null;
+        entry.sequence = head + entries.length;
+        head++;
+    }
+
+    /** @return capacità della coda */
+    int capacity() {
+        return entries.length;
+    }
+}
@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script lancia più auto a guida autonoma (KNN) dallo stesso processo, una per server TORCS.
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Eseguo il client multi-auto di guida autonoma per TORCS..."
+
+# Esegui il programma Java (es. cars:3001/SCR,3002/SCR; altre opzioni come per il client singolo)
+java -cp src/classes it.unisa.diem.ai.torcs.io.MultiClient it.unisa.diem.ai.torcs.agent.AutonomousDriver host:localhost "$@"
@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script normalizza un dataset CSV grezzo da file a file, senza caricarlo in memoria (uscita CSV o binaria .dsb).
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Normalizzo il dataset..."
+
+# Esegui il programma Java (es. data/raw_dataset.csv data/dataset_normalizzato.csv)
+java -cp src/classes it.unisa.diem.ai.torcs.utils.DatasetNormalizerTool "$@"
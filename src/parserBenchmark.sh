@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script confronta il parser dei messaggi basato su stringhe con quello che lavora direttamente sui byte.
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Eseguo il benchmark dei parser dei messaggi..."
+
+# Esegui il programma Java (file dei messaggi e numero di messaggi sono opzionali)
+java -cp src/classes it.unisa.diem.ai.torcs.utils.benchmark.ParserBenchmark "$@"
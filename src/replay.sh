@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script rigioca una cattura del traffico UDP (opzione capture:file del client) attraverso un controller, senza simulatore.
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Rigioco la cattura del traffico..."
+
+# Esegui il programma Java (es. it.unisa.diem.ai.torcs.agent.AutonomousDriver gara.bin 5)
+java --add-modules jdk.incubator.vector -cp src/classes it.unisa.diem.ai.torcs.utils.benchmark.ReplayBenchmark "$@"
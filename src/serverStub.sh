@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Questo script avvia un server UDP che simula TORCS (protocollo SCR) per i test di carico e di latenza del client.
+
+# Vai nella root (se lo script è lanciato altrove)
+cd "$(dirname "$0")/.."
+
+echo "Avvio il server simulato di TORCS..."
+
+# Esegui il programma Java (es. clients:4 rate:50 ticks:2000 episodes:1 timeout:10 trace:messaggi.txt)
+java -cp src/classes it.unisa.diem.ai.torcs.utils.benchmark.TorcsServerStub "$@"
@@ -0,0 +1,125 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import it.unisa.diem.ai.torcs.model.Dataset;
+import it.unisa.diem.ai.torcs.model.FeatureVector;
+import it.unisa.diem.ai.torcs.model.Label;
+import it.unisa.diem.ai.torcs.model.Sample;
+import it.unisa.diem.ai.torcs.model.SensorFeature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Verifica che a regime le query k-NN di {@link NearestNeighbor} non allochino memoria,
+ * misurando i byte allocati dal thread corrente con
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ * <p>
+ * Le query vengono prima ripetute abbastanza a lungo da essere compilate dal JIT; la misura
+ * viene poi ripetuta per qualche giro e basta un giro senza allocazioni, così che una
+ * compilazione o una deottimizzazione occasionale non renda il test instabile. Una regressione
+ * alloca invece a ogni query, quindi in tutti i giri.
+ */
+class NearestNeighborAllocationTest {
+
+    private static final int ROWS = 2_000;
+    static final int QUERIES = 256;
+    private static final int WARMUP_CALLS = 30_000;
+    private static final int MEASURED_CALLS = 5_000;
+    private static final int ROUNDS = 5;
+    private static final int K = 5;
+
+    private static NearestNeighbor classifier;
+    private static double[][] queries;
+    private static Sample[] samples;
+
+    @BeforeAll
+    static void setUp() {
+        Random random = new Random(42);
+        classifier = new NearestNeighbor(randomDataset(random, ROWS));
+        queries = randomQueries(random, QUERIES);
+        samples = new Sample[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            samples[q] = new Sample(new FeatureVector(queries[q].clone()), Label.ACCELERA);
+        }
+    }
+
+    @Test
+    void classifyWithHeapDoesNotAllocate() {
+        NeighborHeap heap = new NeighborHeap(K);
+        assertEquals(0, steadyStateAllocatedBytes(q -> classifier.classify(queries[q], K, heap)),
+                "classify(double[], k, NeighborHeap) alloca memoria a regime");
+    }
+
+    @Test
+    void classifySampleDoesNotAllocate() {
+        assertEquals(0, steadyStateAllocatedBytes(q -> classifier.classify(samples[q], K)),
+                "classify(Sample, k) alloca memoria a regime");
+    }
+
+    /**
+     * @return dataset di punti casuali in [0, 1) con label casuali
+     */
+    static Dataset randomDataset(Random random, int rows) {
+        int dimensions = SensorFeature.values().length;
+        Label[] labels = Label.values();
+        Dataset dataset = new Dataset();
+        double[] row = new double[dimensions];
+        for (int i = 0; i < rows; i++) {
+            for (int d = 0; d < dimensions; d++) {
+                row[d] = random.nextDouble();
+            }
+            dataset.addRow(row, labels[random.nextInt(labels.length)]);
+        }
+        return dataset;
+    }
+
+    /**
+     * @return punti di query casuali in [0, 1)
+     */
+    static double[][] randomQueries(Random random, int count) {
+        double[][] queries = new double[count][SensorFeature.values().length];
+        for (double[] query : queries) {
+            for (int d = 0; d < query.length; d++) {
+                query[d] = random.nextDouble();
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Esegue le query fino alla compilazione e restituisce il minimo, fra {@link #ROUNDS} giri,
+     * dei byte allocati per {@link #MEASURED_CALLS} query. Salta il test se la JVM non misura
+     * le allocazioni per thread.
+     *
+     * @param query query da misurare, dato l'indice della query di prova (in [0, {@link #QUERIES}))
+     * @return byte allocati nel giro migliore
+     */
+    static long steadyStateAllocatedBytes(IntUnaryOperator query) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Misura delle allocazioni non supportata dalla JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long thread = Thread.currentThread().threadId();
+        int sink = 0;
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink += query.applyAsInt(i % QUERIES);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && best > 0; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                sink += query.applyAsInt(i % QUERIES);
+            }
+            best = Math.min(best, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        // Usa il risultato, così che il JIT non possa eliminare le query
+        assumeTrue(sink != Integer.MIN_VALUE);
+        return best;
+    }
+}
@@ -0,0 +1,41 @@
+package it.unisa.diem.ai.torcs.classifier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static it.unisa.diem.ai.torcs.classifier.NearestNeighborAllocationTest.QUERIES;
+import static it.unisa.diem.ai.torcs.classifier.NearestNeighborAllocationTest.randomDataset;
+import static it.unisa.diem.ai.torcs.classifier.NearestNeighborAllocationTest.randomQueries;
+import static it.unisa.diem.ai.torcs.classifier.NearestNeighborAllocationTest.steadyStateAllocatedBytes;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifica che a regime le query di {@link VectorNearestNeighbor} non allochino memoria, con
+ * la stessa misura di {@link NearestNeighborAllocationTest}. Le corsie del vettore di distanze
+ * vanno lette da un array: {@code DoubleVector.lane(int)} con indice variabile alloca.
+ */
+class VectorNearestNeighborAllocationTest {
+
+    /** Con dataset piccoli il JIT può eliminare le allocazioni di {@code lane(int)}: servono più righe */
+    private static final int ROWS = 20_000;
+    private static final int K = 5;
+
+    private static VectorNearestNeighbor classifier;
+    private static double[][] queries;
+
+    @BeforeAll
+    static void setUp() {
+        Random random = new Random(42);
+        classifier = new VectorNearestNeighbor(randomDataset(random, ROWS));
+        queries = randomQueries(random, QUERIES);
+    }
+
+    @Test
+    void classifyWithHeapDoesNotAllocate() {
+        NeighborHeap heap = new NeighborHeap(K);
+        assertEquals(0, steadyStateAllocatedBytes(q -> classifier.classify(queries[q], K, heap)),
+                "classify(double[], k, NeighborHeap) alloca memoria a regime");
+    }
+}